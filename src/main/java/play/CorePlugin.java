@@ -12,6 +12,7 @@ import play.classloading.ApplicationClasses.ApplicationClass;
 import play.classloading.enhancers.*;
 import play.exceptions.UnexpectedException;
 import play.libs.Crypto;
+import play.mvc.AutoETags;
 import play.mvc.Http.Header;
 import play.mvc.Http.Request;
 import play.mvc.Http.Response;
@@ -146,6 +147,16 @@ public class CorePlugin extends PlayPlugin {
             out.println(plugin.index + ":" + plugin.getClass().getName() + " [" + (Play.pluginCollection.isEnabled(plugin) ? "enabled" : "disabled") + "]");
         }
         out.println();
+        out.println("Plugin hooks:");
+        out.println("~~~~~~~~~~~~~");
+        for (Map.Entry<String, List<PlayPlugin>> hook : Play.pluginCollection.getPluginsByHook().entrySet()) {
+            List<String> names = new ArrayList<>();
+            for (PlayPlugin plugin : hook.getValue()) {
+                names.add(plugin.getClass().getSimpleName());
+            }
+            out.println(hook.getKey() + ": " + (names.isEmpty() ? "(none)" : StringUtils.join(names, ", ")));
+        }
+        out.println();
         out.println("Threads:");
         out.println("~~~~~~~~");
         try {
@@ -284,6 +295,11 @@ public class CorePlugin extends PlayPlugin {
         return root;
     }
 
+    @Override
+    public void onApplicationStart() {
+        AutoETags.clearValidators();
+    }
+
     protected Enhancer[] defaultEnhancers() {
         return new Enhancer[] {
             new PropertiesEnhancer(),
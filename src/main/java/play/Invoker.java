@@ -3,15 +3,18 @@ package play;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 
 import play.Play.Mode;
 import play.classloading.ApplicationClassloader;
@@ -22,6 +25,7 @@ import play.i18n.Lang;
 import play.libs.F;
 import play.libs.F.Promise;
 import play.utils.PThreadFactory;
+import play.utils.VirtualThreads;
 
 import com.jamonapi.Monitor;
 import com.jamonapi.MonitorFactory;
@@ -32,10 +36,16 @@ import com.jamonapi.MonitorFactory;
 public class Invoker {
 
     /**
-     * Main executor for requests invocations.
+     * Main executor for requests invocations. In virtual mode it only runs the timer of delayed invocations, which
+     * are then handed off to a virtual thread.
      */
     public static ScheduledThreadPoolExecutor executor = null;
 
+    /**
+     * Executor starting a virtual thread per invocation, null unless <code>play.pool.mode=virtual</code>.
+     */
+    public static ExecutorService virtualExecutor = null;
+
     /**
      * Run the code in a new thread took from a thread pool.
      * @param invocation The code to run
@@ -45,6 +55,9 @@ public class Invoker {
         Monitor monitor = MonitorFactory.getMonitor("Invoker queue size", "elmts.");
         monitor.add(executor.getQueue().size());
         invocation.waitInQueue = MonitorFactory.start("Waiting for execution");
+        if (virtualExecutor != null) {
+            return virtualExecutor.submit(invocation);
+        }
         return executor.submit(invocation);
     }
 
@@ -54,9 +67,17 @@ public class Invoker {
      * @param millis The time to wait before, in milliseconds
      * @return The future object, to know when the task is completed
      */
-    public static Future<?> invoke(Invocation invocation, long millis) {
+    public static Future<?> invoke(final Invocation invocation, long millis) {
         Monitor monitor = MonitorFactory.getMonitor("Invocation queue", "elmts.");
         monitor.add(executor.getQueue().size());
+        if (virtualExecutor != null) {
+            return executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    virtualExecutor.submit(invocation);
+                }
+            }, millis, TimeUnit.MILLISECONDS);
+        }
         return executor.schedule(invocation, millis, TimeUnit.MILLISECONDS);
     }
 
@@ -351,6 +372,30 @@ public class Invoker {
      * Init executor at load time.
      */
     static {
+        init();
+    }
+
+    /**
+     * Creates the executors according to <code>play.pool.mode</code>:
+     * <ul>
+     * <li><code>platform</code> (default): a fixed pool of <code>play.pool</code> threads</li>
+     * <li><code>virtual</code>: a new virtual thread per invocation (Java 21 or later), with a single platform thread
+     * scheduling the delayed invocations</li>
+     * </ul>
+     */
+    static void init() {
+        String mode = Play.configuration.getProperty("play.pool.mode", "platform");
+        virtualExecutor = null;
+        if ("virtual".equalsIgnoreCase(mode)) {
+            if (VirtualThreads.isSupported()) {
+                virtualExecutor = VirtualThreads.newThreadPerTaskExecutor("play");
+                executor = new ScheduledThreadPoolExecutor(1, new PThreadFactory("play-scheduler"), new ThreadPoolExecutor.AbortPolicy());
+                return;
+            }
+            Logger.warn("play.pool.mode=virtual requires Java 21 or later, falling back to a platform thread pool");
+        } else if (!"platform".equalsIgnoreCase(mode)) {
+            Logger.warn("Unknown play.pool.mode %s, falling back to a platform thread pool", mode);
+        }
         int core = Integer.parseInt(Play.configuration.getProperty("play.pool", Play.mode == Mode.DEV ? "1" : ((Runtime.getRuntime().availableProcessors() + 1) + "")));
         executor = new ScheduledThreadPoolExecutor(core, new PThreadFactory("play"), new ThreadPoolExecutor.AbortPolicy());
     }
@@ -394,11 +439,15 @@ public class Invoker {
 
     /**
      * Utility that track tasks completion in order to resume suspended requests.
+     * <p>
+     * Promises and CompletableFutures resume the invocation from their completion callback, as soon as they are
+     * redeemed. Only other kinds of futures are polled by a background thread.
      */
     static class WaitForTasksCompletion extends Thread {
 
-        static WaitForTasksCompletion instance;
-        Map<Future<?>, Invocation> queue;
+        private static volatile WaitForTasksCompletion instance;
+        private static final AtomicBoolean starting = new AtomicBoolean(false);
+        final Map<Future<?>, Invocation> queue;
 
         public WaitForTasksCompletion() {
             queue = new ConcurrentHashMap<>();
@@ -412,31 +461,51 @@ public class Invoker {
                 smartFuture.onRedeem(new F.Action<F.Promise<V>>() {
                     @Override
                     public void invoke(Promise<V> result) {
-                        executor.submit(invocation);
+                        Invoker.invoke(invocation);
                     }
                 });
+            } else if (task instanceof CompletableFuture) {
+                ((CompletableFuture<V>) task).whenComplete(new BiConsumer<V, Throwable>() {
+                    @Override
+                    public void accept(V result, Throwable error) {
+                        Invoker.invoke(invocation);
+                    }
+                });
+            } else if (task.isDone()) {
+                Invoker.invoke(invocation);
             } else {
-                synchronized (WaitForTasksCompletion.class) {
-                    if (instance == null) {
-                        instance = new WaitForTasksCompletion();
-                        Logger.warn("Start WaitForTasksCompletion");
-                        instance.start();
+                poller().queue.put(task, invocation);
+            }
+        }
+
+        private static WaitForTasksCompletion poller() {
+            WaitForTasksCompletion poller = instance;
+            if (poller == null) {
+                if (starting.compareAndSet(false, true)) {
+                    poller = new WaitForTasksCompletion();
+                    Logger.warn("Start WaitForTasksCompletion");
+                    poller.start();
+                    instance = poller;
+                } else {
+                    // Another thread is starting it
+                    while ((poller = instance) == null) {
+                        Thread.yield();
                     }
-                    instance.queue.put(task, invocation);
                 }
             }
+            return poller;
         }
 
         @Override
         public void run() {
             while (true) {
                 try {
-                    if (!queue.isEmpty()) {
-                        for (Future<?> task : new HashSet<>(queue.keySet())) {
-                            if (task.isDone()) {
-                                executor.submit(queue.get(task));
-                                queue.remove(task);
-                            }
+                    Iterator<Map.Entry<Future<?>, Invocation>> tasks = queue.entrySet().iterator();
+                    while (tasks.hasNext()) {
+                        Map.Entry<Future<?>, Invocation> task = tasks.next();
+                        if (task.getKey().isDone()) {
+                            tasks.remove();
+                            Invoker.invoke(task.getValue());
                         }
                     }
                     Thread.sleep(50);
@@ -0,0 +1,395 @@
+package play.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import play.Play;
+import play.exceptions.CacheException;
+
+/**
+ * A compact, schema-less binary format for the values most often cached: strings, boxed primitives, byte arrays,
+ * dates, UUIDs, big numbers (entity ids included) and the ArrayLists, HashMaps and HashSets made of them. Any other
+ * object is written with Java serialization, so every serializable value can still be cached.
+ *
+ * <p>Payloads above <code>cache.codec.compressThreshold</code> bytes (1024 by default, -1 to disable) are compressed
+ * with {@link LzCompressor} when it makes them smaller. Values written by {@link JavaSerializationCodec} are still
+ * read.</p>
+ */
+public class BinaryCacheCodec implements CacheCodec {
+
+    private static final byte PLAIN = 1;
+    private static final byte COMPRESSED = 2;
+    /**
+     * First byte of a Java serialization stream.
+     */
+    private static final byte JAVA_STREAM_MAGIC = (byte) 0xAC;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte SHORT = 8;
+    private static final byte BYTE = 9;
+    private static final byte CHARACTER = 10;
+    private static final byte BYTES = 11;
+    private static final byte LIST = 12;
+    private static final byte MAP = 13;
+    private static final byte SET = 14;
+    private static final byte DATE = 15;
+    private static final byte UUID_VALUE = 16;
+    private static final byte BIG_DECIMAL = 17;
+    private static final byte BIG_INTEGER = 18;
+    private static final byte SERIALIZED = 19;
+
+    private final JavaSerializationCodec java = new JavaSerializationCodec();
+    private final int compressThreshold;
+
+    public BinaryCacheCodec() {
+        this(Play.configuration == null ? 1024
+                : Integer.parseInt(Play.configuration.getProperty("cache.codec.compressThreshold", "1024")));
+    }
+
+    /**
+     * @param compressThreshold Size above which payloads are compressed, -1 to never compress
+     */
+    public BinaryCacheCodec(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Output out = new Output();
+        out.write(PLAIN);
+        write(value, out);
+        int length = out.size - 1;
+        if (compressThreshold >= 0 && length > compressThreshold) {
+            byte[] compressed = LzCompressor.compress(out.buffer, 1, length);
+            if (compressed.length + 6 < length) {
+                Output result = new Output(compressed.length + 6);
+                result.write(COMPRESSED);
+                result.writeVarInt(length);
+                result.write(compressed, 0, compressed.length);
+                return result.toByteArray();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] data) {
+        if (data.length == 0) {
+            throw new CacheException("Could not decode an empty value", null);
+        }
+        if (data[0] == JAVA_STREAM_MAGIC) {
+            return java.decode(data);
+        }
+        Input in = new Input(data, 1);
+        if (data[0] == COMPRESSED) {
+            int length = in.readVarInt();
+            in = new Input(LzCompressor.decompress(data, in.position, data.length - in.position, length), 0);
+        } else if (data[0] != PLAIN) {
+            throw new CacheException("Unknown cache value format " + data[0], null);
+        }
+        return read(in);
+    }
+
+    private void write(Object value, Output out) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String) {
+            out.write(STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Integer) {
+            out.write(INTEGER);
+            out.writeVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            out.writeVarLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            out.writeFixedLong(Double.doubleToLongBits((Double) value));
+        } else if (value instanceof Float) {
+            out.write(FLOAT);
+            out.writeVarInt(Float.floatToIntBits((Float) value));
+        } else if (value instanceof Short) {
+            out.write(SHORT);
+            out.writeVarLong((Short) value);
+        } else if (value instanceof Byte) {
+            out.write(BYTE);
+            out.write((Byte) value);
+        } else if (value instanceof Character) {
+            out.write(CHARACTER);
+            out.writeVarInt((Character) value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.write(BYTES);
+            out.writeVarInt(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else if (value.getClass() == Date.class) {
+            out.write(DATE);
+            out.writeVarLong(((Date) value).getTime());
+        } else if (value instanceof UUID) {
+            out.write(UUID_VALUE);
+            out.writeFixedLong(((UUID) value).getMostSignificantBits());
+            out.writeFixedLong(((UUID) value).getLeastSignificantBits());
+        } else if (value.getClass() == BigDecimal.class) {
+            out.write(BIG_DECIMAL);
+            out.writeString(value.toString());
+        } else if (value.getClass() == BigInteger.class) {
+            byte[] bytes = ((BigInteger) value).toByteArray();
+            out.write(BIG_INTEGER);
+            out.writeVarInt(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else if (value.getClass() == ArrayList.class) {
+            out.write(LIST);
+            writeElements((Collection<?>) value, out);
+        } else if (value.getClass() == HashSet.class || value.getClass() == LinkedHashSet.class) {
+            out.write(SET);
+            writeElements((Collection<?>) value, out);
+        } else if (value.getClass() == HashMap.class || value.getClass() == LinkedHashMap.class) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(MAP);
+            out.writeVarInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(entry.getKey(), out);
+                write(entry.getValue(), out);
+            }
+        } else {
+            // Also the types above when subclassed, to get the same class back
+            byte[] bytes = java.encode(value);
+            out.write(SERIALIZED);
+            out.writeVarInt(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private void writeElements(Collection<?> elements, Output out) {
+        out.writeVarInt(elements.size());
+        for (Object element : elements) {
+            write(element, out);
+        }
+    }
+
+    private Object read(Input in) {
+        byte type = in.read();
+        switch (type) {
+        case NULL:
+            return null;
+        case STRING:
+            return in.readString();
+        case INTEGER:
+            return (int) in.readVarLong();
+        case LONG:
+            return in.readVarLong();
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case DOUBLE:
+            return Double.longBitsToDouble(in.readFixedLong());
+        case FLOAT:
+            return Float.intBitsToFloat(in.readVarInt());
+        case SHORT:
+            return (short) in.readVarLong();
+        case BYTE:
+            return in.read();
+        case CHARACTER:
+            return (char) in.readVarInt();
+        case BYTES:
+            return in.readBytes(in.readVarInt());
+        case DATE:
+            return new Date(in.readVarLong());
+        case UUID_VALUE:
+            return new UUID(in.readFixedLong(), in.readFixedLong());
+        case BIG_DECIMAL:
+            return new BigDecimal(in.readString());
+        case BIG_INTEGER:
+            return new BigInteger(in.readBytes(in.readVarInt()));
+        case LIST: {
+            int size = in.readVarInt();
+            List<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(read(in));
+            }
+            return list;
+        }
+        case SET: {
+            int size = in.readVarInt();
+            Set<Object> set = new LinkedHashSet<>(capacity(size));
+            for (int i = 0; i < size; i++) {
+                set.add(read(in));
+            }
+            return set;
+        }
+        case MAP: {
+            int size = in.readVarInt();
+            Map<Object, Object> map = new LinkedHashMap<>(capacity(size));
+            for (int i = 0; i < size; i++) {
+                map.put(read(in), read(in));
+            }
+            return map;
+        }
+        case SERIALIZED: {
+            int length = in.readVarInt();
+            Object value = java.decode(in.buffer, in.position, length);
+            in.position += length;
+            return value;
+        }
+        default:
+            throw new CacheException("Unknown cache value type " + type, null);
+        }
+    }
+
+    private static int capacity(int size) {
+        return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+
+    private static final class Output {
+
+        byte[] buffer;
+        int size;
+
+        Output() {
+            this(256);
+        }
+
+        Output(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        private void ensure(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+
+        void write(byte b) {
+            ensure(1);
+            buffer[size++] = b;
+        }
+
+        void write(byte[] bytes, int offset, int length) {
+            ensure(length);
+            System.arraycopy(bytes, offset, buffer, size, length);
+            size += length;
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        /**
+         * Zig-zag encoded, so that small negative numbers are short too.
+         */
+        void writeVarLong(long value) {
+            ensure(10);
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buffer[size++] = (byte) zigzag;
+        }
+
+        void writeFixedLong(long value) {
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                buffer[size++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Input {
+
+        final byte[] buffer;
+        int position;
+
+        Input(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        byte read() {
+            return buffer[position++];
+        }
+
+        byte[] readBytes(int length) {
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        long readVarLong() {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        long readFixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value |= (long) (buffer[position++] & 0xFF) << (i * 8);
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = readVarInt();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
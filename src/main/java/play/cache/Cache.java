@@ -183,6 +183,53 @@ public abstract class Cache {
         return cacheImpl.get(key);
     }
 
+    /**
+     * Set several elements at once.
+     * @param values Map of keys &amp; values
+     * @param expiration Ex: 10s, 3mn, 8h
+     */
+    public static void setMulti(Map<String, ?> values, String expiration) {
+        for (Object value : values.values()) {
+            checkSerializable(value);
+        }
+        cacheImpl.setMulti(values, Time.parseDuration(expiration));
+    }
+
+    /**
+     * Set several elements at once and store them indefinitely.
+     * @param values Map of keys &amp; values
+     */
+    public static void setMulti(Map<String, ?> values) {
+        setMulti(values, null);
+    }
+
+    /**
+     * Increment several elements values (must be Numbers).
+     * @param keys List of keys
+     * @param by The incr value
+     * @return Map of keys &amp; new values
+     */
+    public static Map<String, Long> incrMulti(String[] keys, int by) {
+        return cacheImpl.incrMulti(keys, by);
+    }
+
+    /**
+     * Increment several elements values (must be Numbers) by 1.
+     * @param keys List of keys
+     * @return Map of keys &amp; new values
+     */
+    public static Map<String, Long> incrMulti(String... keys) {
+        return cacheImpl.incrMulti(keys, 1);
+    }
+
+    /**
+     * Delete several elements from the cache.
+     * @param keys List of keys
+     */
+    public static void deleteMulti(String... keys) {
+        cacheImpl.deleteMulti(keys);
+    }
+
     /**
      * Delete an element from the cache.
      * @param key The element key
@@ -224,6 +271,8 @@ public abstract class Cache {
 
     /**
      * Initialize the cache system.
+     * The local cache is EhCache, or {@link ShardedCacheImpl} with <code>cache.impl=sharded</code>. Memcached can be
+     * fronted by a {@link NearCacheImpl} with <code>cache.near=enabled</code>.
      */
     public static void init() {
         if(forcedCacheImpl != null) {
@@ -234,14 +283,24 @@ public abstract class Cache {
             try {
                 cacheImpl = MemcachedImpl.getInstance(true);
                 Logger.info("Connected to memcached");
+                if (Play.configuration.getProperty("cache.near", "disabled").equals("enabled")) {
+                    cacheImpl = NearCacheImpl.newInstance(cacheImpl);
+                }
             } catch (Exception e) {
                 Logger.error(e, "Error while connecting to memcached");
                 Logger.warn("Fallback to local cache");
-                cacheImpl = EhCacheImpl.newInstance();
+                cacheImpl = newLocalCache();
             }
         } else {
-            cacheImpl = EhCacheImpl.newInstance();
+            cacheImpl = newLocalCache();
+        }
+    }
+
+    private static CacheImpl newLocalCache() {
+        if ("sharded".equals(Play.configuration.getProperty("cache.impl", "ehcache"))) {
+            return ShardedCacheImpl.newInstance();
         }
+        return EhCacheImpl.newInstance();
     }
 
     /**
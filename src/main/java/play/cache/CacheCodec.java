@@ -0,0 +1,23 @@
+package play.cache;
+
+/**
+ * Turns cache values into bytes for the caches storing them out of the JVM.
+ * Selected with <code>cache.codec</code>: <code>java</code> (the default), <code>binary</code> or the name of a class
+ * implementing this interface with a public no-argument constructor.
+ * @see JavaSerializationCodec
+ * @see BinaryCacheCodec
+ */
+public interface CacheCodec {
+
+    /**
+     * @param value A value to cache, never null
+     * @return its bytes
+     */
+    public byte[] encode(Object value);
+
+    /**
+     * @param data Bytes produced by {@link #encode(Object)}
+     * @return the value
+     */
+    public Object decode(byte[] data);
+}
@@ -11,10 +11,29 @@ import java.lang.annotation.Target;
  * <p>If a time is not specified, the results will be cached for 1 hour by default.
  *
  * <p>Example: <code>@CacheFor("1h")</code>
+ *
+ * <p>A missing result is computed by a single request per key, the others wait for it. With a
+ * <code>staleWhileRevalidate</code> window, a result past its time is still served during the window while it is
+ * computed again in the background: <code>@CacheFor(value = "1min", staleWhileRevalidate = "10min")</code>
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface CacheFor {
     String value() default "1h";
     String id() default "";
+
+    /**
+     * How long a result is still served, while it is refreshed, once it is older than {@link #value()}.
+     */
+    String staleWhileRevalidate() default "";
+
+    /**
+     * Request headers whose values are part of the cache key, e.g. <code>Accept-Language</code>.
+     */
+    String[] headers() default {};
+
+    /**
+     * Session values that are part of the cache key, e.g. a user role.
+     */
+    String[] session() default {};
 }
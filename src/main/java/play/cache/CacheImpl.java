@@ -1,5 +1,6 @@
 package play.cache;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -29,6 +30,36 @@ public interface CacheImpl {
 
     public long decr(String key, int by);
 
+    /**
+     * Sets several elements at once. Implementations batch the writes where they can.
+     */
+    public default void setMulti(Map<String, ?> values, int expiration) {
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            set(entry.getKey(), entry.getValue(), expiration);
+        }
+    }
+
+    /**
+     * Deletes several elements at once. Implementations batch the deletes where they can.
+     */
+    public default void deleteMulti(String[] keys) {
+        for (String key : keys) {
+            delete(key);
+        }
+    }
+
+    /**
+     * Increments several counters at once. Implementations batch the increments where they can.
+     * @return the new value of each counter
+     */
+    public default Map<String, Long> incrMulti(String[] keys, int by) {
+        Map<String, Long> result = new HashMap<>(keys.length);
+        for (String key : keys) {
+            result.put(key, incr(key, by));
+        }
+        return result;
+    }
+
     public void clear();
 
     public void delete(String key);
@@ -1,6 +1,9 @@
 package play.cache;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Element;
@@ -84,9 +87,36 @@ public class EhCacheImpl implements CacheImpl {
 
     @Override
     public Map<String, Object> get(String[] keys) {
+        Map<Object, Element> elements = cache.getAll(Arrays.asList(keys));
         Map<String, Object> result = new HashMap<>(keys.length);
         for (String key : keys) {
-            result.put(key, get(key));
+            Element e = elements.get(key);
+            result.put(key, (e == null) ? null : e.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public void setMulti(Map<String, ?> values, int expiration) {
+        List<Element> elements = new ArrayList<>(values.size());
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            Element element = new Element(entry.getKey(), entry.getValue());
+            element.setTimeToLive(expiration);
+            elements.add(element);
+        }
+        cache.putAll(elements);
+    }
+
+    @Override
+    public void deleteMulti(String[] keys) {
+        cache.removeAll(Arrays.asList(keys));
+    }
+
+    @Override
+    public synchronized Map<String, Long> incrMulti(String[] keys, int by) {
+        Map<String, Long> result = new HashMap<>(keys.length);
+        for (String key : keys) {
+            result.put(key, incr(key, by));
         }
         return result;
     }
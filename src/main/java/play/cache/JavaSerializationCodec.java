@@ -0,0 +1,52 @@
+package play.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
+import play.Play;
+import play.exceptions.CacheException;
+
+/**
+ * Java serialization, resolving classes with the application classloader.
+ */
+public class JavaSerializationCodec implements CacheCodec {
+
+    @Override
+    public byte[] encode(Object value) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bos);
+            out.writeObject(value);
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new CacheException("Could not serialize " + value.getClass().getName(), e);
+        }
+    }
+
+    @Override
+    public Object decode(byte[] data) {
+        return decode(data, 0, data.length);
+    }
+
+    Object decode(byte[] data, int offset, int length) {
+        try {
+            return new ObjectInputStream(new ByteArrayInputStream(data, offset, length)) {
+
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    if (Play.classloader == null) {
+                        return super.resolveClass(desc);
+                    }
+                    return Class.forName(desc.getName(), false, Play.classloader);
+                }
+            }.readObject();
+        } catch (Exception e) {
+            throw new CacheException("Could not deserialize", e);
+        }
+    }
+}
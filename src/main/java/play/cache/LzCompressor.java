@@ -0,0 +1,143 @@
+package play.cache;
+
+import java.util.Arrays;
+
+/**
+ * Byte-oriented LZ77 compression in the LZ4 block format: fast, with a modest ratio, for cache values where the
+ * network matters more than the last percent.
+ */
+final class LzCompressor {
+
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 12;
+    private static final int MAX_OFFSET = 65535;
+    /**
+     * The block format ends with literals: no match starts in the last 12 bytes nor ends in the last 5.
+     */
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+
+    private LzCompressor() {
+    }
+
+    /**
+     * @return the compressed bytes, which can be longer than the input for incompressible data
+     */
+    static byte[] compress(byte[] src, int offset, int length) {
+        byte[] dest = new byte[length + length / 255 + 16];
+        int[] table = new int[1 << HASH_LOG];
+        Arrays.fill(table, -1);
+        int end = offset + length;
+        int matchLimit = end - LAST_LITERALS;
+        int limit = end - MF_LIMIT;
+        int anchor = offset;
+        int i = offset;
+        int d = 0;
+        while (i < limit) {
+            int sequence = readInt(src, i);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = table[hash];
+            table[hash] = i;
+            if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+                i++;
+                continue;
+            }
+            int matchLength = MIN_MATCH;
+            while (i + matchLength < matchLimit && src[ref + matchLength] == src[i + matchLength]) {
+                matchLength++;
+            }
+            d = writeSequence(src, anchor, i - anchor, i - ref, matchLength, dest, d);
+            i += matchLength;
+            anchor = i;
+        }
+        d = writeSequence(src, anchor, end - anchor, 0, 0, dest, d);
+        return Arrays.copyOf(dest, d);
+    }
+
+    /**
+     * @param length The length of the uncompressed data
+     */
+    static byte[] decompress(byte[] src, int offset, int srcLength, int length) {
+        byte[] dest = new byte[length];
+        int s = offset;
+        int end = offset + srcLength;
+        int d = 0;
+        while (s < end) {
+            int token = src[s++] & 0xFF;
+            int literals = token >>> 4;
+            if (literals == 15) {
+                int b;
+                do {
+                    b = src[s++] & 0xFF;
+                    literals += b;
+                } while (b == 255);
+            }
+            System.arraycopy(src, s, dest, d, literals);
+            s += literals;
+            d += literals;
+            if (s >= end) {
+                break;
+            }
+            int matchOffset = (src[s] & 0xFF) | ((src[s + 1] & 0xFF) << 8);
+            s += 2;
+            int matchLength = token & 0x0F;
+            if (matchLength == 15) {
+                int b;
+                do {
+                    b = src[s++] & 0xFF;
+                    matchLength += b;
+                } while (b == 255);
+            }
+            matchLength += MIN_MATCH;
+            int ref = d - matchOffset;
+            if (matchOffset >= matchLength) {
+                System.arraycopy(dest, ref, dest, d, matchLength);
+                d += matchLength;
+            } else {
+                // Overlapping match, e.g. a run of the same byte
+                for (int k = 0; k < matchLength; k++) {
+                    dest[d++] = dest[ref + k];
+                }
+            }
+        }
+        if (d != length) {
+            throw new IllegalArgumentException("Corrupted data: " + d + " bytes decompressed instead of " + length);
+        }
+        return dest;
+    }
+
+    private static int writeSequence(byte[] src, int literalStart, int literals, int matchOffset, int matchLength,
+            byte[] dest, int d) {
+        int tokenPosition = d++;
+        int token = Math.min(literals, 15) << 4;
+        if (literals >= 15) {
+            d = writeLength(literals - 15, dest, d);
+        }
+        System.arraycopy(src, literalStart, dest, d, literals);
+        d += literals;
+        if (matchLength > 0) {
+            dest[d++] = (byte) matchOffset;
+            dest[d++] = (byte) (matchOffset >>> 8);
+            int length = matchLength - MIN_MATCH;
+            token |= Math.min(length, 15);
+            if (length >= 15) {
+                d = writeLength(length - 15, dest, d);
+            }
+        }
+        dest[tokenPosition] = (byte) token;
+        return d;
+    }
+
+    private static int writeLength(int length, byte[] dest, int d) {
+        while (length >= 255) {
+            dest[d++] = (byte) 255;
+            length -= 255;
+        }
+        dest[d++] = (byte) length;
+        return d;
+    }
+
+    private static int readInt(byte[] src, int i) {
+        return (src[i] & 0xFF) | ((src[i + 1] & 0xFF) << 8) | ((src[i + 2] & 0xFF) << 16) | ((src[i + 3] & 0xFF) << 24);
+    }
+}
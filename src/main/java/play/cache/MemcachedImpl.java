@@ -1,13 +1,10 @@
 package play.cache;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.ObjectStreamClass;
 import java.net.InetSocketAddress;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
@@ -55,19 +52,13 @@ public class MemcachedImpl implements CacheImpl {
     }
 
     private MemcachedImpl() throws IOException {
+        final CacheCodec codec = newCodec();
         tc = new SerializingTranscoder() {
 
             @Override
             protected Object deserialize(byte[] data) {
                 try {
-                    return new ObjectInputStream(new ByteArrayInputStream(data)) {
-
-                        @Override
-                        protected Class<?> resolveClass(ObjectStreamClass desc)
-                                throws IOException, ClassNotFoundException {
-                            return Class.forName(desc.getName(), false, Play.classloader);
-                        }
-                    }.readObject();
+                    return codec.decode(data);
                 } catch (Exception e) {
                     Logger.error(e, "Could not deserialize");
                 }
@@ -77,18 +68,38 @@ public class MemcachedImpl implements CacheImpl {
             @Override
             protected byte[] serialize(Object object) {
                 try {
-                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                    new ObjectOutputStream(bos).writeObject(object);
-                    return bos.toByteArray();
-                } catch (IOException e) {
+                    return codec.encode(object);
+                } catch (Exception e) {
                     Logger.error(e, "Could not serialize");
                 }
                 return null;
             }
         };
+        if (codec instanceof BinaryCacheCodec) {
+            // Already compressed by the codec
+            tc.setCompressionThreshold(Integer.MAX_VALUE);
+        }
         initClient();
     }
 
+    /**
+     * @return the codec configured with <code>cache.codec</code>
+     */
+    static CacheCodec newCodec() {
+        String codec = Play.configuration.getProperty("cache.codec", "java");
+        if ("java".equals(codec)) {
+            return new JavaSerializationCodec();
+        }
+        if ("binary".equals(codec)) {
+            return new BinaryCacheCodec();
+        }
+        try {
+            return (CacheCodec) Class.forName(codec, true, Play.classloader).newInstance();
+        } catch (Exception e) {
+            throw new ConfigurationException("Bad configuration for cache.codec: " + codec + " (" + e + ")");
+        }
+    }
+
     public void initClient() throws IOException {
         System.setProperty("net.spy.log.LoggerImpl", "net.spy.memcached.compat.log.Log4JLogger");
         
@@ -175,6 +186,45 @@ public class MemcachedImpl implements CacheImpl {
         return client.decr(key, by, 0);
     }
 
+    /**
+     * Sends all the sets without waiting for any, so that they share the connection writes.
+     */
+    @Override
+    public void setMulti(Map<String, ?> values, int expiration) {
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            client.set(entry.getKey(), expiration, entry.getValue(), tc);
+        }
+    }
+
+    @Override
+    public void deleteMulti(String[] keys) {
+        for (String key : keys) {
+            client.delete(key);
+        }
+    }
+
+    /**
+     * Sends all the increments, then waits for their results at most one second in all.
+     */
+    @Override
+    public Map<String, Long> incrMulti(String[] keys, int by) {
+        Map<String, Future<Long>> futures = new LinkedHashMap<>(keys.length);
+        for (String key : keys) {
+            futures.put(key, client.asyncIncr(key, by, 0L, 0));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        Map<String, Long> result = new HashMap<>(keys.length);
+        for (Map.Entry<String, Future<Long>> future : futures.entrySet()) {
+            try {
+                result.put(future.getKey(), future.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (Exception e) {
+                future.getValue().cancel(false);
+                result.put(future.getKey(), -1L);
+            }
+        }
+        return result;
+    }
+
     @Override
     public void replace(String key, Object value, int expiration) {
         client.replace(key, expiration, value, tc);
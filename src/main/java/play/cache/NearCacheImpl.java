@@ -0,0 +1,340 @@
+package play.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import play.Play;
+import play.exceptions.CacheException;
+import play.exceptions.ConfigurationException;
+import play.libs.Time;
+
+/**
+ * An in-process tier in front of a remote cache, for keys read far more often than they change.
+ *
+ * <p>What is read from the remote cache, including the absence of a key, is kept locally for a short time
+ * (<code>cache.near.ttl</code>, 2s by default, at least 1s), in at most <code>cache.near.maxSize</code> bytes (16 MB
+ * by default). Concurrent misses on a key wait for a single remote get. Writes and deletes made through this node drop the local
+ * entry; those made by other nodes are seen once the local entry expires. The cached instances are shared by
+ * every caller, so they must not be modified.</p>
+ *
+ * Enabled with <code>cache.near=enabled</code> in front of memcached.
+ */
+public class NearCacheImpl implements CacheImpl {
+
+    /**
+     * Stands for a key missing from the remote cache.
+     */
+    private static final Object MISSING = new Object();
+
+    private static final int STRIPES = 64;
+
+    final CacheImpl remote;
+    private final ShardedCacheImpl local;
+    private final int ttl;
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Writes made through this node, counted by hash of the key, to tell whether a key was written while it was read.
+     */
+    private final AtomicLongArray invalidations = new AtomicLongArray(STRIPES);
+
+    /**
+     * @param remote  The cache to put a local tier in front of
+     * @param ttl     How long a value read from the remote cache is kept, in seconds
+     * @param maxSize Estimated size of the local tier in bytes
+     */
+    public NearCacheImpl(CacheImpl remote, int ttl, long maxSize) {
+        this.remote = remote;
+        this.ttl = ttl;
+        this.local = new ShardedCacheImpl(maxSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static NearCacheImpl newInstance(CacheImpl remote) {
+        int ttl = Time.parseDuration(Play.configuration.getProperty("cache.near.ttl", "2s"));
+        if (ttl <= 0) {
+            // Would never expire, and never see the writes of the other nodes
+            throw new ConfigurationException("Bad configuration for cache.near.ttl: must be at least 1s");
+        }
+        return new NearCacheImpl(remote, ttl, Long.parseLong(Play.configuration.getProperty("cache.near.maxSize", "16777216")));
+    }
+
+    @Override
+    public Object get(String key) {
+        Object value = local.get(key);
+        if (value != null) {
+            hits.increment();
+            return value == MISSING ? null : value;
+        }
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> pending = loading.putIfAbsent(key, load);
+        if (pending != null) {
+            coalesced.increment();
+            return await(pending);
+        }
+        misses.increment();
+        long stamp = invalidations.get(stripe(key));
+        try {
+            value = remote.get(key);
+            if (loading.remove(key, load)) {
+                keep(key, value, stamp);
+            }
+            load.complete(value);
+            return value;
+        } catch (Throwable t) {
+            // Errors too, or the threads waiting for this key would wait forever
+            load.completeExceptionally(t);
+            throw t;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> pending) {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while waiting for the cache", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new CacheException("Error while reading the cache", e.getCause());
+        }
+    }
+
+    @Override
+    public Map<String, Object> get(String[] keys) {
+        Map<String, Object> result = new HashMap<>(keys.length);
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            Object value = local.get(key);
+            if (value == null) {
+                missing.add(key);
+            } else {
+                hits.increment();
+                result.put(key, value == MISSING ? null : value);
+            }
+        }
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            long[] stamps = new long[missing.size()];
+            for (int i = 0; i < stamps.length; i++) {
+                stamps[i] = invalidations.get(stripe(missing.get(i)));
+            }
+            Map<String, Object> values = remote.get(missing.toArray(new String[missing.size()]));
+            for (int i = 0; i < stamps.length; i++) {
+                String key = missing.get(i);
+                Object value = values.get(key);
+                keep(key, value, stamps[i]);
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    private static int stripe(String key) {
+        return key.hashCode() & (STRIPES - 1);
+    }
+
+    /**
+     * Keeps locally what was read from the remote cache, unless the key was written since the stamp was taken.
+     */
+    private void keep(String key, Object value, long stamp) {
+        int stripe = stripe(key);
+        if (invalidations.get(stripe) != stamp) {
+            return;
+        }
+        local.set(key, value == null ? MISSING : value, ttl);
+        // The write may have run completely between the check and the set, its delete coming first
+        if (invalidations.get(stripe) != stamp) {
+            local.delete(key);
+        }
+    }
+
+    /**
+     * Drops the local entry of a key once it has been written, and keeps a remote get in progress from storing what
+     * it read.
+     */
+    private void invalidate(String key) {
+        invalidations.incrementAndGet(stripe(key));
+        loading.remove(key);
+        local.delete(key);
+    }
+
+    @Override
+    public void add(String key, Object value, int expiration) {
+        try {
+            remote.add(key, value, expiration);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public boolean safeAdd(String key, Object value, int expiration) {
+        try {
+            return remote.safeAdd(key, value, expiration);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void set(String key, Object value, int expiration) {
+        try {
+            remote.set(key, value, expiration);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public boolean safeSet(String key, Object value, int expiration) {
+        try {
+            return remote.safeSet(key, value, expiration);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void replace(String key, Object value, int expiration) {
+        try {
+            remote.replace(key, value, expiration);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public boolean safeReplace(String key, Object value, int expiration) {
+        try {
+            return remote.safeReplace(key, value, expiration);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public long incr(String key, int by) {
+        try {
+            return remote.incr(key, by);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public long decr(String key, int by) {
+        try {
+            return remote.decr(key, by);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void setMulti(Map<String, ?> values, int expiration) {
+        try {
+            remote.setMulti(values, expiration);
+        } finally {
+            for (String key : values.keySet()) {
+                invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public void deleteMulti(String[] keys) {
+        try {
+            remote.deleteMulti(keys);
+        } finally {
+            for (String key : keys) {
+                invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Long> incrMulti(String[] keys, int by) {
+        try {
+            return remote.incrMulti(keys, by);
+        } finally {
+            for (String key : keys) {
+                invalidate(key);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            remote.clear();
+        } finally {
+            for (int i = 0; i < STRIPES; i++) {
+                invalidations.incrementAndGet(i);
+            }
+            loading.clear();
+            local.clear();
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            remote.delete(key);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public boolean safeDelete(String key) {
+        try {
+            return remote.safeDelete(key);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void stop() {
+        local.stop();
+        remote.stop();
+    }
+
+    /**
+     * @return the number of gets answered by the local tier, absent keys included
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of keys read from the remote cache
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of gets that waited for the remote get of another thread
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
@@ -0,0 +1,727 @@
+package play.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
+
+import play.Logger;
+import play.Play;
+
+/**
+ * In-process cache built for many cores.
+ *
+ * <p>Keys are spread over shards, each one a ConcurrentHashMap. Reads never lock, and incr, decr, add and replace
+ * are compare-and-set loops on the entry, so counters don't serialize on a monitor. Each shard bounds its entries by
+ * their estimated size in bytes with a segmented LRU: new entries are probationary, entries read again are
+ * protected, and probationary entries are evicted first. Recording a read is skipped when the shard is busy.</p>
+ *
+ * <p>Expired entries are never returned. They are dropped in bulk by a timing wheel of one-second slots, advanced
+ * by the operations on the shard rather than by a thread.</p>
+ *
+ * Selected with <code>cache.impl=sharded</code>. Its size is <code>cache.sharded.maxSize</code> bytes (64 MB by
+ * default), values other than strings, arrays, numbers, dates and collections of those counting as 256 bytes. Each
+ * of the <code>cache.sharded.shards</code> shards (4 per core by default) gets an equal part of it, which is also the
+ * limit for a single entry: a heavier value is not kept, and its key reads as missing.
+ *
+ * Expiration is specified in seconds, 0 meaning never
+ */
+public class ShardedCacheImpl implements CacheImpl {
+
+    private static final int WHEEL_SLOTS = 256;
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int DEFAULT_WEIGHT = 256;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private static final AtomicReferenceFieldUpdater<Entry, Value> VALUE = AtomicReferenceFieldUpdater.newUpdater(Entry.class,
+            Value.class, "value");
+
+    private static ShardedCacheImpl uniqueInstance;
+
+    final Shard[] shards;
+    private final int shardMask;
+
+    /**
+     * @param maxSize    Estimated size of the cache in bytes, split evenly between the shards
+     * @param shardCount Number of independently locked shards, rounded up to a power of two
+     */
+    public ShardedCacheImpl(long maxSize, int shardCount) {
+        int count = 1;
+        while (count < shardCount) {
+            count <<= 1;
+        }
+        this.shards = new Shard[count];
+        this.shardMask = count - 1;
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(maxSize / count);
+        }
+    }
+
+    public static ShardedCacheImpl getInstance() {
+        return uniqueInstance;
+    }
+
+    public static ShardedCacheImpl newInstance() {
+        long maxSize = Long.parseLong(Play.configuration.getProperty("cache.sharded.maxSize", "67108864"));
+        int shards = Integer.parseInt(Play.configuration.getProperty("cache.sharded.shards",
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 4)));
+        uniqueInstance = new ShardedCacheImpl(maxSize, shards);
+        return uniqueInstance;
+    }
+
+    /**
+     * Current time in milliseconds.
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private Shard shard(String key) {
+        return shards[shardIndex(key)];
+    }
+
+    private int shardIndex(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & shardMask;
+    }
+
+    private Value newValue(String key, Object value, int expiration) {
+        long expiresAt = expiration > 0 ? now() + expiration * 1000L : 0;
+        return new Value(value, expiresAt, weigh(key, value));
+    }
+
+    @Override
+    public void add(String key, Object value, int expiration) {
+        Shard shard = shard(key);
+        Value newValue = newValue(key, value, expiration);
+        while (true) {
+            Entry entry = shard.map.get(key);
+            if (entry == null) {
+                entry = new Entry(key, newValue);
+                if (shard.map.putIfAbsent(key, entry) == null) {
+                    shard.afterWrite(entry, now());
+                    return;
+                }
+            } else if (entry.removed) {
+                shard.map.remove(key, entry);
+            } else {
+                Value current = entry.value;
+                if (!current.isExpired(now())) {
+                    return;
+                }
+                if (VALUE.compareAndSet(entry, current, newValue)) {
+                    shard.afterWrite(entry, now());
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void set(String key, Object value, int expiration) {
+        Shard shard = shard(key);
+        shard.afterWrite(put(shard, key, newValue(key, value, expiration)), now());
+    }
+
+    /**
+     * Writes the new value of a key in the map, the shard has to be told afterwards.
+     */
+    private static Entry put(Shard shard, String key, Value value) {
+        while (true) {
+            Entry entry = shard.map.get(key);
+            if (entry == null) {
+                entry = new Entry(key, value);
+                if (shard.map.putIfAbsent(key, entry) == null) {
+                    return entry;
+                }
+            } else if (entry.removed) {
+                shard.map.remove(key, entry);
+            } else {
+                entry.value = value;
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Writes all the values, then takes the lock of each shard once to record them.
+     */
+    @Override
+    public void setMulti(Map<String, ?> values, int expiration) {
+        List<List<Entry>> written = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            written.add(null);
+        }
+        for (Map.Entry<String, ?> value : values.entrySet()) {
+            String key = value.getKey();
+            int index = shardIndex(key);
+            List<Entry> entries = written.get(index);
+            if (entries == null) {
+                entries = new ArrayList<>();
+                written.set(index, entries);
+            }
+            entries.add(put(shards[index], key, newValue(key, value.getValue(), expiration)));
+        }
+        long now = now();
+        for (int i = 0; i < shards.length; i++) {
+            if (written.get(i) != null) {
+                shards[i].afterWrite(written.get(i), now);
+            }
+        }
+    }
+
+    @Override
+    public void replace(String key, Object value, int expiration) {
+        Shard shard = shard(key);
+        Value newValue = newValue(key, value, expiration);
+        while (true) {
+            Entry entry = shard.map.get(key);
+            if (entry == null || entry.removed) {
+                return;
+            }
+            Value current = entry.value;
+            if (current.isExpired(now())) {
+                return;
+            }
+            if (VALUE.compareAndSet(entry, current, newValue)) {
+                shard.afterWrite(entry, now());
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Object get(String key) {
+        Shard shard = shard(key);
+        Entry entry = shard.map.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long now = now();
+        Value value = entry.value;
+        if (value.isExpired(now)) {
+            return null;
+        }
+        shard.afterRead(entry, now);
+        return value.object;
+    }
+
+    @Override
+    public Map<String, Object> get(String[] keys) {
+        Map<String, Object> result = new HashMap<>(keys.length);
+        for (String key : keys) {
+            result.put(key, get(key));
+        }
+        return result;
+    }
+
+    @Override
+    public long incr(String key, int by) {
+        return addToCounter(key, by);
+    }
+
+    @Override
+    public long decr(String key, int by) {
+        return addToCounter(key, -(long) by);
+    }
+
+    /**
+     * Adds to a counter, keeping its expiration.
+     */
+    private long addToCounter(String key, long by) {
+        Entry entry = shard(key).map.get(key);
+        if (entry == null) {
+            return -1;
+        }
+        while (true) {
+            Value current = entry.value;
+            if (entry.removed || current.isExpired(now())) {
+                return -1;
+            }
+            long newValue = ((Number) current.object).longValue() + by;
+            if (VALUE.compareAndSet(entry, current, new Value(newValue, current.expiresAt, current.weight))) {
+                return newValue;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Shard shard : shards) {
+            shard.clear();
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        Shard shard = shard(key);
+        Entry entry = shard.map.remove(key);
+        if (entry != null) {
+            shard.afterRemove(entry);
+        }
+    }
+
+    @Override
+    public void deleteMulti(String[] keys) {
+        List<List<Entry>> removed = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            removed.add(null);
+        }
+        for (String key : keys) {
+            int index = shardIndex(key);
+            Entry entry = shards[index].map.remove(key);
+            if (entry != null) {
+                List<Entry> entries = removed.get(index);
+                if (entries == null) {
+                    entries = new ArrayList<>();
+                    removed.set(index, entries);
+                }
+                entries.add(entry);
+            }
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (removed.get(i) != null) {
+                shards[i].afterRemove(removed.get(i));
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Long> incrMulti(String[] keys, int by) {
+        // Counters don't lock
+        Map<String, Long> result = new HashMap<>(keys.length);
+        for (String key : keys) {
+            result.put(key, addToCounter(key, by));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean safeAdd(String key, Object value, int expiration) {
+        try {
+            add(key, value, expiration);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean safeDelete(String key) {
+        try {
+            delete(key);
+            return true;
+        } catch (Exception e) {
+            Logger.error(e.toString());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean safeReplace(String key, Object value, int expiration) {
+        try {
+            replace(key, value, expiration);
+            return true;
+        } catch (Exception e) {
+            Logger.error(e.toString());
+            return false;
+        }
+    }
+
+    @Override
+    public boolean safeSet(String key, Object value, int expiration) {
+        try {
+            set(key, value, expiration);
+            return true;
+        } catch (Exception e) {
+            Logger.error(e.toString());
+            return false;
+        }
+    }
+
+    @Override
+    public void stop() {
+        clear();
+    }
+
+    /**
+     * @return the number of entries, expired ones included until they are dropped
+     */
+    int count() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.map.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the estimated size of the entries in bytes
+     */
+    long size() {
+        long size = 0;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                size += shard.weight;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    static int weigh(String key, Object value) {
+        return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD + estimate(key, 0) + estimate(value, 0));
+    }
+
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        }
+        if (value instanceof char[]) {
+            return 16 + 2L * ((char[]) value).length;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Date) {
+            return 24;
+        }
+        if (depth < 2 && value instanceof Collection) {
+            long size = 48;
+            for (Object element : (Collection<?>) value) {
+                size += 16 + estimate(element, depth + 1);
+            }
+            return size;
+        }
+        if (depth < 2 && value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 32 + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        if (depth < 2 && value instanceof Object[]) {
+            long size = 16;
+            for (Object element : (Object[]) value) {
+                size += 8 + estimate(element, depth + 1);
+            }
+            return size;
+        }
+        return DEFAULT_WEIGHT;
+    }
+
+    /**
+     * A cached value, replaced as a whole on each write.
+     */
+    static final class Value {
+
+        final Object object;
+        final long expiresAt;
+        final int weight;
+
+        Value(Object object, long expiresAt, int weight) {
+            this.object = object;
+            this.expiresAt = expiresAt;
+            this.weight = weight;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && expiresAt <= now;
+        }
+    }
+
+    /**
+     * A key in a shard. The links are guarded by the shard lock.
+     */
+    static final class Entry {
+
+        final String key;
+        volatile Value value;
+        volatile boolean removed;
+
+        Entry prev;
+        Entry next;
+        Entry wheelPrev;
+        Entry wheelNext;
+        boolean linked;
+        boolean isProtected;
+        int weight;
+
+        Entry(String key, Value value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        static Entry sentinel() {
+            Entry sentinel = new Entry(null, null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            sentinel.wheelPrev = sentinel;
+            sentinel.wheelNext = sentinel;
+            return sentinel;
+        }
+    }
+
+    static final class Shard {
+
+        final ConcurrentHashMap<String, Entry> map = new ConcurrentHashMap<>();
+        final ReentrantLock lock = new ReentrantLock();
+        final long maxWeight;
+        final long maxProtectedWeight;
+        final Entry probation = Entry.sentinel();
+        final Entry protectedEntries = Entry.sentinel();
+        final Entry[] wheel = new Entry[WHEEL_SLOTS];
+        long weight;
+        long protectedWeight;
+        long wheelSecond;
+
+        Shard(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.maxProtectedWeight = maxWeight * PROTECTED_PERCENT / 100;
+            for (int i = 0; i < WHEEL_SLOTS; i++) {
+                wheel[i] = Entry.sentinel();
+            }
+        }
+
+        void afterWrite(Entry entry, long now) {
+            lock.lock();
+            try {
+                written(entry);
+                expire(now);
+                evict();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void afterWrite(List<Entry> entries, long now) {
+            lock.lock();
+            try {
+                for (Entry entry : entries) {
+                    written(entry);
+                }
+                expire(now);
+                evict();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void written(Entry entry) {
+            if (entry.removed) {
+                return;
+            }
+            Value value = entry.value;
+            if (value.weight > maxWeight) {
+                // Would evict everything else in the shard and still not fit
+                remove(entry);
+                return;
+            }
+            if (!entry.linked) {
+                entry.linked = true;
+                entry.weight = value.weight;
+                weight += value.weight;
+                append(probation, entry);
+            } else {
+                weight += value.weight - entry.weight;
+                if (entry.isProtected) {
+                    protectedWeight += value.weight - entry.weight;
+                }
+                entry.weight = value.weight;
+                access(entry);
+            }
+            schedule(entry, value.expiresAt);
+        }
+
+        void afterRead(Entry entry, long now) {
+            // Losing a few reads only makes the eviction order less precise
+            if (lock.tryLock()) {
+                try {
+                    if (entry.linked && !entry.removed) {
+                        access(entry);
+                    }
+                    expire(now);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        void afterRemove(Entry entry) {
+            lock.lock();
+            try {
+                entry.removed = true;
+                unlink(entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void afterRemove(List<Entry> entries) {
+            lock.lock();
+            try {
+                for (Entry entry : entries) {
+                    entry.removed = true;
+                    unlink(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                // Walk the lists rather than the map: an entry deleted from the map but not yet unlinked must not
+                // be unlinked later from lists that no longer hold it
+                for (Entry slot : wheel) {
+                    for (Entry entry = slot.wheelNext; entry != slot; ) {
+                        Entry next = entry.wheelNext;
+                        entry.wheelPrev = entry.wheelNext = null;
+                        entry = next;
+                    }
+                    slot.wheelPrev = slot.wheelNext = slot;
+                }
+                clear(probation);
+                clear(protectedEntries);
+                // Written but not recorded yet
+                for (Entry entry : map.values()) {
+                    entry.removed = true;
+                    map.remove(entry.key, entry);
+                }
+                weight = 0;
+                protectedWeight = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear(Entry list) {
+            for (Entry entry = list.next; entry != list; ) {
+                Entry next = entry.next;
+                entry.removed = true;
+                entry.linked = false;
+                entry.isProtected = false;
+                entry.prev = entry.next = null;
+                map.remove(entry.key, entry);
+                entry = next;
+            }
+            list.prev = list.next = list;
+        }
+
+        private void access(Entry entry) {
+            if (entry.isProtected) {
+                moveToEnd(protectedEntries, entry);
+                return;
+            }
+            moveToEnd(protectedEntries, entry);
+            entry.isProtected = true;
+            protectedWeight += entry.weight;
+            while (protectedWeight > maxProtectedWeight && protectedEntries.next != entry) {
+                Entry demoted = protectedEntries.next;
+                demoted.isProtected = false;
+                protectedWeight -= demoted.weight;
+                moveToEnd(probation, demoted);
+            }
+        }
+
+        private void evict() {
+            while (weight > maxWeight) {
+                Entry victim = probation.next != probation ? probation.next : protectedEntries.next;
+                if (victim == protectedEntries) {
+                    return;
+                }
+                remove(victim);
+            }
+        }
+
+        private void expire(long now) {
+            long second = now / 1000;
+            if (wheelSecond == 0 || second - wheelSecond >= WHEEL_SLOTS) {
+                // First call, or idle for a whole turn of the wheel
+                for (Entry slot : wheel) {
+                    expire(slot, now);
+                }
+                wheelSecond = second;
+                return;
+            }
+            while (wheelSecond < second) {
+                wheelSecond++;
+                expire(wheel[(int) (wheelSecond & (WHEEL_SLOTS - 1))], now);
+            }
+        }
+
+        private void expire(Entry slot, long now) {
+            Entry entry = slot.wheelNext;
+            while (entry != slot) {
+                Entry next = entry.wheelNext;
+                if (entry.value.isExpired(now)) {
+                    remove(entry);
+                }
+                entry = next;
+            }
+        }
+
+        private void schedule(Entry entry, long expiresAt) {
+            if (entry.wheelNext != null) {
+                entry.wheelPrev.wheelNext = entry.wheelNext;
+                entry.wheelNext.wheelPrev = entry.wheelPrev;
+                entry.wheelPrev = entry.wheelNext = null;
+            }
+            if (expiresAt == 0) {
+                return;
+            }
+            // The slot of the second the entry expires in, checked once per turn of the wheel until then
+            Entry slot = wheel[(int) (((expiresAt + 999) / 1000) & (WHEEL_SLOTS - 1))];
+            entry.wheelPrev = slot.wheelPrev;
+            entry.wheelNext = slot;
+            slot.wheelPrev.wheelNext = entry;
+            slot.wheelPrev = entry;
+        }
+
+        private void remove(Entry entry) {
+            entry.removed = true;
+            map.remove(entry.key, entry);
+            unlink(entry);
+        }
+
+        private void unlink(Entry entry) {
+            if (!entry.linked) {
+                return;
+            }
+            entry.linked = false;
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+            entry.prev = entry.next = null;
+            schedule(entry, 0);
+            weight -= entry.weight;
+            if (entry.isProtected) {
+                protectedWeight -= entry.weight;
+                entry.isProtected = false;
+            }
+        }
+
+        private static void append(Entry list, Entry entry) {
+            entry.prev = list.prev;
+            entry.next = list;
+            list.prev.next = entry;
+            list.prev = entry;
+        }
+
+        private static void moveToEnd(Entry list, Entry entry) {
+            entry.prev.next = entry.next;
+            entry.next.prev = entry.prev;
+            append(list, entry);
+        }
+    }
+}
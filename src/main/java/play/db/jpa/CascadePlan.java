@@ -0,0 +1,148 @@
+package play.db.jpa;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.CascadeType;
+import javax.persistence.ManyToMany;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
+
+import play.Play;
+import play.classloading.ApplicationClassloaderState;
+
+/**
+ * The fields of an entity class that a save cascades to, with handles to read them.
+ * <p>
+ * Plans are computed the first time an entity class is saved and dropped as soon as the application classes are
+ * reloaded, so a save only reads the relations that cascade instead of scanning the class hierarchy.
+ */
+final class CascadePlan {
+
+    private static volatile Generation generation = new Generation(null);
+
+    final CascadeField[] fields;
+
+    private CascadePlan(Class<?> entityClass) {
+        List<CascadeField> cascading = new ArrayList<>();
+        Class<?> clazz = entityClass;
+        while (clazz != null && !clazz.equals(JPABase.class)) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (!Modifier.isTransient(field.getModifiers()) && cascades(field)) {
+                    cascading.add(new CascadeField(field));
+                }
+            }
+            clazz = clazz.getSuperclass();
+        }
+        this.fields = cascading.toArray(new CascadeField[cascading.size()]);
+    }
+
+    /**
+     * @return the plan of an entity class
+     */
+    static CascadePlan of(Class<?> entityClass) {
+        Generation current = currentGeneration();
+        CascadePlan plan = current.plans.get(entityClass);
+        if (plan == null) {
+            plan = new CascadePlan(entityClass);
+            CascadePlan existing = current.plans.putIfAbsent(entityClass, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    private static Generation currentGeneration() {
+        ApplicationClassloaderState state = Play.classloader == null ? null : Play.classloader.currentState;
+        Generation current = generation;
+        if (current.state != state) {
+            // The application classes have been reloaded
+            current = new Generation(state);
+            generation = current;
+        }
+        return current;
+    }
+
+    private static boolean cascades(Field field) {
+        boolean doCascade = false;
+        if (field.isAnnotationPresent(OneToOne.class)) {
+            doCascade = cascadeAll(field.getAnnotation(OneToOne.class).cascade());
+        }
+        if (field.isAnnotationPresent(OneToMany.class)) {
+            doCascade = cascadeAll(field.getAnnotation(OneToMany.class).cascade());
+        }
+        if (field.isAnnotationPresent(ManyToOne.class)) {
+            doCascade = cascadeAll(field.getAnnotation(ManyToOne.class).cascade());
+        }
+        if (field.isAnnotationPresent(ManyToMany.class)) {
+            doCascade = cascadeAll(field.getAnnotation(ManyToMany.class).cascade());
+        }
+        return doCascade;
+    }
+
+    private static boolean cascadeAll(CascadeType[] types) {
+        for (CascadeType cascadeType : types) {
+            if (cascadeType == CascadeType.ALL || cascadeType == CascadeType.PERSIST) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A relation a save cascades to.
+     */
+    static final class CascadeField {
+
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+        final Field field;
+        private final MethodHandle getter;
+
+        CascadeField(Field field) {
+            field.setAccessible(true);
+            this.field = field;
+            this.getter = getter(field);
+        }
+
+        private static MethodHandle getter(Field field) {
+            try {
+                return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                // Not accessible through a method handle, stick to reflection
+                return null;
+            }
+        }
+
+        Object get(Object entity) throws Exception {
+            if (getter == null) {
+                return field.get(entity);
+            }
+            try {
+                return (Object) getter.invokeExact(entity);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    private static final class Generation {
+        private final ApplicationClassloaderState state;
+        private final Map<Class<?>, CascadePlan> plans = new ConcurrentHashMap<>();
+
+        private Generation(ApplicationClassloaderState state) {
+            this.state = state;
+        }
+    }
+}
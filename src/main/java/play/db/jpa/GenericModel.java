@@ -14,6 +14,7 @@ import play.data.binding.Binder;
 import play.data.binding.BindingAnnotations;
 import play.data.binding.ParamNode;
 import play.data.validation.Validation;
+import play.db.Configuration;
 import play.exceptions.UnexpectedException;
 import play.mvc.Scope.Params;
 
@@ -233,6 +234,40 @@ public class GenericModel extends JPABase {
         return (T) this;
     }
 
+    /**
+     * store (ie insert or update) many entities, flushing them in batches of <code>jpa.batchSize</code> (50 by
+     * default). Each flushed batch is detached from the persistence context, except the last one. Setting
+     * <code>jpa.batchSize</code> also sends the flushed statements in JDBC batches.
+     *
+     * @return the number of saved entities
+     */
+    public static int saveAll(Iterable<? extends JPABase> entities) {
+        // Iterated once only, it may be a cursor
+        Iterator<? extends JPABase> iterator = entities.iterator();
+        if (!iterator.hasNext()) {
+            return 0;
+        }
+        JPABase first = iterator.next();
+        String dbName = JPA.getDBName(first.getClass());
+        return JPABase.saveAll(first, iterator, Integer.parseInt(new Configuration(dbName).getProperty("jpa.batchSize", "50")));
+    }
+
+    /**
+     * store (ie insert or update) many entities, flushing and detaching them every <code>batchSize</code> entities.
+     *
+     * @return the number of saved entities
+     */
+    public static int saveAll(Iterable<? extends JPABase> entities, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        Iterator<? extends JPABase> iterator = entities.iterator();
+        if (!iterator.hasNext()) {
+            return 0;
+        }
+        return JPABase.saveAll(iterator.next(), iterator, batchSize);
+    }
+
     /**
      * store (ie insert) the entity.
      */
@@ -5,6 +5,7 @@ import play.Play;
 import play.Invoker.*;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.HashMap;
 import java.util.Map;
 
 import javax.persistence.*;
@@ -31,6 +32,10 @@ public class JPA {
         public EntityManager entityManager;
         public boolean readonly = true;
         public boolean autoCommit = false;
+        /**
+         * Queries reused within this context, by JPQL.
+         */
+        final Map<String, Query> queries = new HashMap<>();
     }
 
     public static boolean isInitialized(){
@@ -17,8 +17,6 @@ import play.exceptions.UnexpectedException;
 import javax.persistence.*;
 
 import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -41,8 +39,83 @@ public class JPABase implements Serializable, play.db.Model {
         } finally {
             avoidCascadeSaveLoops.get().clear();
         }
+        flush(em(dbName));
+        avoidCascadeSaveLoops.set(new HashSet<JPABase>());
+        try {
+            saveAndCascade(false);
+        } finally {
+            avoidCascadeSaveLoops.get().clear();
+        }
+    }
+
+    /**
+     * Saves entities in batches. Instead of a flush per entity, the persistence contexts are flushed every
+     * <code>batchSize</code> entities, so that the statements go to the database in JDBC batches of
+     * <code>hibernate.jdbc.batch_size</code>, and the flushed entities are detached so that memory use stays flat.
+     *
+     * @return the number of saved entities
+     */
+    static int saveAll(JPABase first, Iterator<? extends JPABase> rest, int batchSize) {
+        Map<String, EntityManager> managers = new HashMap<>();
+        List<JPABase> batch = new ArrayList<>(batchSize);
+        int count = 0;
+        avoidCascadeSaveLoops.set(new HashSet<JPABase>());
+        try {
+            for (JPABase entity = first; entity != null; entity = rest.hasNext() ? rest.next() : null) {
+                String dbName = JPA.getDBName(entity.getClass());
+                EntityManager em = managers.get(dbName);
+                if (em == null) {
+                    em = em(dbName);
+                    managers.put(dbName, em);
+                }
+                if (!em.contains(entity)) {
+                    em.persist(entity);
+                    PlayPlugin.postEvent("JPASupport.objectPersisted", entity);
+                }
+                if (entity.cascades()) {
+                    entity.saveAndCascade(true);
+                } else {
+                    // Nothing to walk through
+                    entity.willBeSaved = true;
+                    PlayPlugin.postEvent("JPASupport.objectUpdated", entity);
+                }
+                batch.add(entity);
+                count++;
+                if (batch.size() >= batchSize) {
+                    flush(managers, batch, true);
+                }
+            }
+            flush(managers, batch, false);
+        } finally {
+            avoidCascadeSaveLoops.get().clear();
+        }
+        return count;
+    }
+
+    private static void flush(Map<String, EntityManager> managers, List<JPABase> batch, boolean detach) {
+        for (EntityManager em : managers.values()) {
+            flush(em);
+        }
+        avoidCascadeSaveLoops.get().clear();
+        for (JPABase entity : batch) {
+            if (entity.cascades()) {
+                entity.saveAndCascade(false);
+            } else {
+                entity.willBeSaved = false;
+            }
+        }
+        avoidCascadeSaveLoops.get().clear();
+        if (detach) {
+            for (JPABase entity : batch) {
+                managers.get(JPA.getDBName(entity.getClass())).detach(entity);
+            }
+        }
+        batch.clear();
+    }
+
+    private static void flush(EntityManager em) {
         try {
-            em(dbName).flush();
+            em.flush();
         } catch (PersistenceException e) {
             if (e.getCause() instanceof GenericJDBCException) {
                 throw new PersistenceException(((GenericJDBCException) e.getCause()).getSQL(), e);
@@ -50,12 +123,10 @@ public class JPABase implements Serializable, play.db.Model {
                 throw e;
             }
         }
-        avoidCascadeSaveLoops.set(new HashSet<JPABase>());
-        try {
-            saveAndCascade(false);
-        } finally {
-            avoidCascadeSaveLoops.get().clear();
-        }
+    }
+
+    private boolean cascades() {
+        return CascadePlan.of(getClass()).fields.length > 0;
     }
 
     @Override
@@ -70,15 +141,7 @@ public class JPABase implements Serializable, play.db.Model {
                 avoidCascadeSaveLoops.get().clear();
             }
             em(dbName).remove(this);
-            try {
-                em(dbName).flush();
-            } catch (PersistenceException e) {
-                if (e.getCause() instanceof GenericJDBCException) {
-                    throw new PersistenceException(((GenericJDBCException) e.getCause()).getSQL(), e);
-                } else {
-                    throw e;
-                }
-            }
+            flush(em(dbName));
             avoidCascadeSaveLoops.set(new HashSet<JPABase>());
             try {
                 saveAndCascade(false);
@@ -114,70 +177,45 @@ public class JPABase implements Serializable, play.db.Model {
         }
         // Cascade save
         try {
-            Set<Field> fields = new HashSet<>();
-            Class clazz = this.getClass();
-            while (!clazz.equals(JPABase.class)) {
-                Collections.addAll(fields, clazz.getDeclaredFields());
-                clazz = clazz.getSuperclass();
-            }
-            for (Field field : fields) {
-                field.setAccessible(true);
-                if (Modifier.isTransient(field.getModifiers())) {
-                    continue;
-                }
-                boolean doCascade = false;
-                if (field.isAnnotationPresent(OneToOne.class)) {
-                    doCascade = cascadeAll(field.getAnnotation(OneToOne.class).cascade());
-                }
-                if (field.isAnnotationPresent(OneToMany.class)) {
-                    doCascade = cascadeAll(field.getAnnotation(OneToMany.class).cascade());
-                }
-                if (field.isAnnotationPresent(ManyToOne.class)) {
-                    doCascade = cascadeAll(field.getAnnotation(ManyToOne.class).cascade());
-                }
-                if (field.isAnnotationPresent(ManyToMany.class)) {
-                    doCascade = cascadeAll(field.getAnnotation(ManyToMany.class).cascade());
-                }
-                if (doCascade) {
-                    Object value = field.get(this);
-                    if (value != null) {
-                        if (value instanceof PersistentMap) {
-                            if (((PersistentMap) value).wasInitialized()) {
+            for (CascadePlan.CascadeField field : CascadePlan.of(this.getClass()).fields) {
+                Object value = field.get(this);
+                if (value != null) {
+                    if (value instanceof PersistentMap) {
+                        if (((PersistentMap) value).wasInitialized()) {
 
-                                cascadeOrphans(this, (PersistentCollection) value, willBeSaved);
+                            cascadeOrphans(this, (PersistentCollection) value, willBeSaved);
 
-                                for (Object o : ((Map) value).values()) {
-                                    saveAndCascadeIfJPABase(o, willBeSaved);
-                                }
+                            for (Object o : ((Map) value).values()) {
+                                saveAndCascadeIfJPABase(o, willBeSaved);
                             }
-                        } else if (value instanceof PersistentCollection) {
-                            PersistentCollection col = (PersistentCollection) value;
-                            if (((PersistentCollection) value).wasInitialized()) {
-
-                                cascadeOrphans(this, (PersistentCollection) value, willBeSaved);
+                        }
+                    } else if (value instanceof PersistentCollection) {
+                        PersistentCollection col = (PersistentCollection) value;
+                        if (((PersistentCollection) value).wasInitialized()) {
 
-                                for (Object o : (Collection) value) {
-                                    saveAndCascadeIfJPABase(o, willBeSaved);
-                                }
-                            } else {
-                                cascadeOrphans(this, col, willBeSaved);
+                            cascadeOrphans(this, (PersistentCollection) value, willBeSaved);
 
-                                for (Object o : (Collection) value) {
-                                    saveAndCascadeIfJPABase(o, willBeSaved);
-                                }
-                            }
-                        } else if (value instanceof Collection) {
                             for (Object o : (Collection) value) {
                                 saveAndCascadeIfJPABase(o, willBeSaved);
                             }
-                        } else if (value instanceof HibernateProxy && value instanceof JPABase) {
-                            if (!((HibernateProxy) value).getHibernateLazyInitializer().isUninitialized()) {
-                                ((JPABase) ((HibernateProxy) value).getHibernateLazyInitializer().getImplementation())
-                                        .saveAndCascade(willBeSaved);
+                        } else {
+                            cascadeOrphans(this, col, willBeSaved);
+
+                            for (Object o : (Collection) value) {
+                                saveAndCascadeIfJPABase(o, willBeSaved);
                             }
-                        } else if (value instanceof JPABase) {
-                            ((JPABase) value).saveAndCascade(willBeSaved);
                         }
+                    } else if (value instanceof Collection) {
+                        for (Object o : (Collection) value) {
+                            saveAndCascadeIfJPABase(o, willBeSaved);
+                        }
+                    } else if (value instanceof HibernateProxy && value instanceof JPABase) {
+                        if (!((HibernateProxy) value).getHibernateLazyInitializer().isUninitialized()) {
+                            ((JPABase) ((HibernateProxy) value).getHibernateLazyInitializer().getImplementation())
+                                    .saveAndCascade(willBeSaved);
+                        }
+                    } else if (value instanceof JPABase) {
+                        ((JPABase) value).saveAndCascade(willBeSaved);
                     }
                 }
             }
@@ -218,15 +256,6 @@ public class JPABase implements Serializable, play.db.Model {
         }
     }
 
-    private static boolean cascadeAll(CascadeType[] types) {
-        for (CascadeType cascadeType : types) {
-            if (cascadeType == CascadeType.ALL || cascadeType == CascadeType.PERSIST) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Retrieve the current entityManager
      *
@@ -177,6 +177,10 @@ public class JPAPlugin extends PlayPlugin {
             properties.put("javax.persistence.transaction", "RESOURCE_LOCAL");
             properties.put("javax.persistence.provider", "org.hibernate.ejb.HibernatePersistence");
             properties.put("hibernate.dialect", getDefaultDialect(dbConfig, dbConfig.getProperty("db.driver")));
+            if (!properties.containsKey("hibernate.jdbc.batch_size") && dbConfig.getProperty("jpa.batchSize") != null) {
+                // Statements flushed together, by GenericModel.saveAll in particular, are sent in JDBC batches
+                properties.put("hibernate.jdbc.batch_size", dbConfig.getProperty("jpa.batchSize"));
+            }
             
             if (dbConfig.getProperty("jpa.debugSQL", "false").equals("true")) {
                 org.apache.log4j.Logger.getLogger("org.hibernate.SQL").setLevel(Level.ALL);
@@ -2,6 +2,8 @@ package play.db.jpa;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
@@ -15,6 +17,24 @@ import play.mvc.Scope.Params;
 
 public class JPQL {
 
+    /**
+     * The JPQL built for each finder, count and delete query, at most <code>jpa.queryCache.size</code> of them.
+     */
+    private final Map<QueryKey, String> queries = new ConcurrentHashMap<>();
+    private final int maxCachedQueries;
+    /**
+     * With <code>jpa.reuseQueries=true</code>, the queries run at once (findBy, findOneBy, count and delete) are
+     * created once per transaction and only bound again afterwards.
+     */
+    private final boolean reuseQueries;
+
+    public JPQL() {
+        maxCachedQueries = Play.configuration == null ? 1000
+                : Integer.parseInt(Play.configuration.getProperty("jpa.queryCache.size", "1000"));
+        reuseQueries = Play.configuration != null
+                && Boolean.parseBoolean(Play.configuration.getProperty("jpa.reuseQueries", "false"));
+    }
+
     public EntityManager em(String dbName) {
         return JPA.em(dbName);
     }
@@ -37,7 +57,7 @@ public class JPQL {
 
     public long count(String dbName, String entity, String query, Object[] params) {
         return Long.parseLong(
-                bindParameters(em(dbName).createQuery(
+                bindParameters(createQuery(dbName,
                 createCountQuery(dbName, entity, entity, query, params)), params).getSingleResult().toString());
     }
 
@@ -62,7 +82,7 @@ public class JPQL {
     }
 
     public <T extends JPABase> List<T> findBy(String dbName, String entity, String query, Object[] params) {
-        Query q = em(dbName).createQuery(
+        Query q = createQuery(dbName,
                 createFindByQuery(dbName, entity, entity, query, params));
         return bindParameters(q, params).getResultList();
     }
@@ -73,10 +93,8 @@ public class JPQL {
 
 
     public JPAQuery find(String dbName, String entity, String query, Object[] params) {
-        Query q = em(dbName).createQuery(
-                createFindByQuery(dbName, entity, entity, query, params));
-        return new JPAQuery(
-                createFindByQuery(dbName, entity, entity, query, params), bindParameters(q, params));
+        String jpql = createFindByQuery(dbName, entity, entity, query, params);
+        return new JPAQuery(jpql, bindParameters(em(dbName).createQuery(jpql), params));
     }
 
     public JPAQuery find(String entity) {
@@ -102,7 +120,7 @@ public class JPQL {
     }
 
     public int delete(String dbName, String entity, String query, Object[] params) {
-        Query q = em(dbName).createQuery(
+        Query q = createQuery(dbName,
                 createDeleteQuery(entity, entity, query, params));
         return bindParameters(q, params).executeUpdate();
     }
@@ -123,7 +141,7 @@ public class JPQL {
     }
 
     public JPABase findOneBy(String dbName, String entity, String query, Object[] params) {
-        Query q = em(dbName).createQuery(
+        Query q = createQuery(dbName,
                 createFindByQuery(dbName, entity, entity, query, params));
         List results = bindParameters(q, params).getResultList();
         if (results.size() == 0) {
@@ -149,6 +167,15 @@ public class JPQL {
     }
 
     public String createFindByQuery(String dbName, String entityName, String entityClass, String query, Object... params) {
+        QueryKey key = new QueryKey('f', dbName, entityName, query, params);
+        String jpql = queries.get(key);
+        if (jpql == null) {
+            jpql = cache(key, buildFindByQuery(dbName, entityName, query, params));
+        }
+        return jpql;
+    }
+
+    private String buildFindByQuery(String dbName, String entityName, String query, Object... params) {
         if (query == null || query.trim().length() == 0) {
             return "from " + entityName;
         }
@@ -174,6 +201,15 @@ public class JPQL {
     }
 
     public String createDeleteQuery(String entityName, String entityClass, String query, Object... params) {
+        QueryKey key = new QueryKey('d', null, entityName, query, params);
+        String jpql = queries.get(key);
+        if (jpql == null) {
+            jpql = cache(key, buildDeleteQuery(entityName, query, params));
+        }
+        return jpql;
+    }
+
+    private String buildDeleteQuery(String entityName, String query, Object... params) {
         if (query == null) {
             return "delete from " + entityName;
         }
@@ -193,6 +229,15 @@ public class JPQL {
     }
 
     public String createCountQuery(String dbName, String entityName, String entityClass, String query, Object... params) {
+        QueryKey key = new QueryKey('c', dbName, entityName, query, params);
+        String jpql = queries.get(key);
+        if (jpql == null) {
+            jpql = cache(key, buildCountQuery(dbName, entityName, query, params));
+        }
+        return jpql;
+    }
+
+    private String buildCountQuery(String dbName, String entityName, String query, Object... params) {
         if (query.trim().toLowerCase().startsWith("select ")) {
             return query;
         }
@@ -217,6 +262,33 @@ public class JPQL {
         return "select count(*) from " + entityName + " e where " + query;
     }
 
+    private String cache(QueryKey key, String jpql) {
+        if (maxCachedQueries > 0) {
+            if (queries.size() >= maxCachedQueries) {
+                // Probably queries built with their values, start again with the ones used from now on
+                queries.clear();
+            }
+            queries.put(key, jpql);
+        }
+        return jpql;
+    }
+
+    /**
+     * @return a query for this JPQL, the one already created in the current transaction if queries are reused
+     */
+    Query createQuery(String dbName, String jpql) {
+        JPA.JPAContext context = reuseQueries ? JPA.get(dbName) : null;
+        if (context == null) {
+            return em(dbName).createQuery(jpql);
+        }
+        Query q = context.queries.get(jpql);
+        if (q == null) {
+            q = em(dbName).createQuery(jpql);
+            context.queries.put(jpql, q);
+        }
+        return q;
+    }
+
     @SuppressWarnings("unchecked")
     public Query bindParameters(Query q, Object... params) {
         if (params == null) {
@@ -324,4 +396,49 @@ public class JPQL {
         return prop;
     }
     public static JPQL instance = null;
+
+    /**
+     * What the JPQL built from a query depends on: the kind of query, the entity, the query and whether there are no
+     * parameters, a single one or more.
+     */
+    private static final class QueryKey {
+
+        private final char kind;
+        private final String dbName;
+        private final String entityName;
+        private final String query;
+        private final int params;
+        private final int hash;
+
+        QueryKey(char kind, String dbName, String entityName, String query, Object[] params) {
+            this.kind = kind;
+            this.dbName = dbName;
+            this.entityName = entityName;
+            this.query = query;
+            this.params = params == null ? -1 : params.length == 1 ? 1 : 0;
+            int h = kind;
+            h = 31 * h + (dbName == null ? 0 : dbName.hashCode());
+            h = 31 * h + (entityName == null ? 0 : entityName.hashCode());
+            h = 31 * h + (query == null ? 0 : query.hashCode());
+            this.hash = 31 * h + this.params;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey other = (QueryKey) o;
+            return hash == other.hash && kind == other.kind && params == other.params && Objects.equals(query, other.query)
+                    && Objects.equals(entityName, other.entityName) && Objects.equals(dbName, other.dbName);
+        }
+    }
 }
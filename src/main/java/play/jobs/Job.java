@@ -66,7 +66,7 @@ public class Job<V> extends Invoker.Invocation implements Callable<V> {
      */
     public Promise<V> now() {
         Promise<V> smartFuture = new Promise<>();
-        JobsPlugin.executor.submit(getJobCallingCallable(smartFuture));
+        JobsPlugin.submit(getJobCallingCallable(smartFuture));
         return smartFuture;
     }
 
@@ -107,7 +107,7 @@ public class Job<V> extends Invoker.Invocation implements Callable<V> {
      */
     public Promise<V> in(int seconds) {
         Promise<V> smartFuture = new Promise<>();
-        JobsPlugin.executor.schedule(getJobCallingCallable(smartFuture), seconds, TimeUnit.SECONDS);
+        JobsPlugin.schedule(getJobCallingCallable(smartFuture), seconds, TimeUnit.SECONDS);
         return smartFuture;
     }
 
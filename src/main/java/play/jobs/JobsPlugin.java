@@ -8,12 +8,14 @@ import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import play.Invoker;
 import play.Logger;
 import play.Play;
 import play.PlayPlugin;
@@ -138,7 +140,7 @@ public class JobsPlugin extends PlayPlugin {
                         // start running job now in the background
                         @SuppressWarnings("unchecked")
                         Callable<Job> callable = (Callable<Job>) job;
-                        executor.submit(callable);
+                        submit(callable);
                     } catch (InstantiationException | IllegalAccessException ex) {
                         throw new UnexpectedException("Cannot instantiate Job " + clazz.getName(), ex);
                     }
@@ -266,7 +268,35 @@ public class JobsPlugin extends PlayPlugin {
         List<Callable<?>> currentActions = afterInvocationActions.get();
         afterInvocationActions.set(null);
         for (Callable<?> callable : currentActions) {
-            executor.submit(callable);
+            submit(callable);
+        }
+    }
+
+    /**
+     * Runs a job as soon as possible: on a virtual thread when <code>play.pool.mode=virtual</code>, in the jobs pool
+     * otherwise.
+     */
+    static <V> Future<V> submit(Callable<V> callable) {
+        if (Invoker.virtualExecutor != null) {
+            return Invoker.virtualExecutor.submit(callable);
+        }
+        return executor.submit(callable);
+    }
+
+    /**
+     * Runs a job after a delay. In virtual mode the jobs pool only waits for the delay, the job itself runs on a
+     * virtual thread.
+     */
+    static <V> void schedule(final Callable<V> callable, long delay, TimeUnit unit) {
+        if (Invoker.virtualExecutor != null) {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    Invoker.virtualExecutor.submit(callable);
+                }
+            }, delay, unit);
+        } else {
+            executor.schedule(callable, delay, unit);
         }
     }
 
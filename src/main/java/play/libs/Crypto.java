@@ -1,7 +1,12 @@
 package play.libs;
 
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.codec.binary.Base64;
 
@@ -11,6 +16,7 @@ import javax.crypto.spec.SecretKeySpec;
 
 import play.Play;
 import play.exceptions.UnexpectedException;
+import play.mvc.CookieDataCodec;
 
 /**
  * Cryptography utils
@@ -37,6 +43,20 @@ public class Crypto {
 
     static final char[] HEX_CHARS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
 
+    /**
+     * Mac and Cipher instances of the current thread, by key
+     */
+    private static final ThreadLocal<Map<SecretKeySpec, Mac>> macs = new ThreadLocal<>();
+    private static final ThreadLocal<Map<SecretKeySpec, Cipher>> encryptors = new ThreadLocal<>();
+    private static final ThreadLocal<Map<SecretKeySpec, Cipher>> decryptors = new ThreadLocal<>();
+
+    /**
+     * Keys kept per thread, the cache is emptied beyond
+     */
+    private static final int MAX_KEYS = 16;
+
+    private static volatile Secrets secrets = new Secrets(null, null);
+
     /**
      * Sign a message using the application secret key (HMAC-SHA1)
      */
@@ -51,15 +71,24 @@ public class Crypto {
      * @return The signed message (in hexadecimal)
      */
     public static String sign(String message, byte[] key) {
+        return sign(message, key, "HmacSHA1");
+    }
+
+    /**
+     * Sign a message with a key
+     * @param message The message to sign
+     * @param key The key to use
+     * @param algorithm The MAC algorithm, as HmacSHA1 or HmacSHA256
+     * @return The signed message (in hexadecimal)
+     */
+    public static String sign(String message, byte[] key, String algorithm) {
 
         if (key.length == 0) {
             return message;
         }
 
         try {
-            Mac mac = Mac.getInstance("HmacSHA1");
-            SecretKeySpec signingKey = new SecretKeySpec(key, "HmacSHA1");
-            mac.init(signingKey);
+            Mac mac = mac(new SecretKeySpec(key, algorithm));
             byte[] messageBytes = message.getBytes("utf-8");
             byte[] result = mac.doFinal(messageBytes);
             int len = result.length;
@@ -78,6 +107,114 @@ public class Crypto {
 
     }
 
+    /**
+     * Sign cookie data, as the session, with the application secret and the <code>application.signature</code>
+     * algorithm (HmacSHA1 by default, or HmacSHA256)
+     * @param data The data to sign
+     * @return The signature (in hexadecimal)
+     */
+    public static String signCookie(String data) {
+        return sign(data, secrets().current, Play.configuration.getProperty("application.signature", "HmacSHA1"));
+    }
+
+    /**
+     * Check the signature of cookie data with the application secret, then with the secrets it replaces, listed in
+     * <code>application.secret.previous</code>. Signatures made with the algorithm in
+     * <code>application.signature.previous</code> are also accepted, so that switching from HmacSHA1 to HmacSHA256
+     * does not reset the sessions. Remove it once the older sessions have expired.
+     * @param data The signed data
+     * @param signature Its signature
+     * @return Whether the signature is valid
+     */
+    public static boolean verifyCookie(String data, String signature) {
+        String algorithm = Play.configuration.getProperty("application.signature", "HmacSHA1");
+        if (verifyCookie(data, signature, algorithm)) {
+            return true;
+        }
+        String previous = Play.configuration.getProperty("application.signature.previous");
+        return previous != null && !previous.equals(algorithm) && verifyCookie(data, signature, previous);
+    }
+
+    private static boolean verifyCookie(String data, String signature, String algorithm) {
+        Secrets keys = secrets();
+        if (CookieDataCodec.safeEquals(signature, sign(data, keys.current, algorithm))) {
+            return true;
+        }
+        for (byte[] key : keys.previous) {
+            if (CookieDataCodec.safeEquals(signature, sign(data, key, algorithm))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Secrets secrets() {
+        Secrets current = secrets;
+        String previous = Play.configuration.getProperty("application.secret.previous", "");
+        if (!Play.secretKey.equals(current.secret) || !previous.equals(current.previousSecrets)) {
+            current = new Secrets(Play.secretKey, previous);
+            secrets = current;
+        }
+        return current;
+    }
+
+    private static Mac mac(SecretKeySpec key) throws Exception {
+        Map<SecretKeySpec, Mac> cached = cache(macs);
+        Mac mac = cached.get(key);
+        if (mac == null) {
+            mac = Mac.getInstance(key.getAlgorithm());
+            mac.init(key);
+            cached.put(key, mac);
+        }
+        return mac;
+    }
+
+    private static Cipher cipher(ThreadLocal<Map<SecretKeySpec, Cipher>> ciphers, int mode, SecretKeySpec key)
+            throws Exception {
+        Map<SecretKeySpec, Cipher> cached = cache(ciphers);
+        Cipher cipher = cached.get(key);
+        if (cipher == null) {
+            cipher = Cipher.getInstance(key.getAlgorithm());
+            cipher.init(mode, key);
+            cached.put(key, cipher);
+        }
+        return cipher;
+    }
+
+    private static <T> Map<SecretKeySpec, T> cache(ThreadLocal<Map<SecretKeySpec, T>> local) {
+        Map<SecretKeySpec, T> cached = local.get();
+        if (cached == null) {
+            cached = new HashMap<>();
+            local.set(cached);
+        } else if (cached.size() >= MAX_KEYS) {
+            cached.clear();
+        }
+        return cached;
+    }
+
+    /**
+     * The application secret and the previous ones, as keys
+     */
+    private static class Secrets {
+        final String secret;
+        final String previousSecrets;
+        final byte[] current;
+        final List<byte[]> previous = new ArrayList<>();
+
+        Secrets(String secret, String previousSecrets) {
+            this.secret = secret;
+            this.previousSecrets = previousSecrets;
+            this.current = secret == null ? new byte[0] : secret.getBytes();
+            if (previousSecrets != null) {
+                for (String previousSecret : previousSecrets.split("[\\s,]+")) {
+                    if (!previousSecret.isEmpty()) {
+                        previous.add(previousSecret.getBytes());
+                    }
+                }
+            }
+        }
+    }
+
     /**
         * Create a password hash using the default hashing algorithm
         * @param input The password
@@ -124,9 +261,14 @@ public class Crypto {
         try {
             byte[] raw = privateKey.getBytes();
             SecretKeySpec skeySpec = new SecretKeySpec(raw, "AES");
-            Cipher cipher = Cipher.getInstance("AES");
-            cipher.init(Cipher.ENCRYPT_MODE, skeySpec);
-            return Codec.byteToHexString(cipher.doFinal(value.getBytes()));
+            Cipher cipher = cipher(encryptors, Cipher.ENCRYPT_MODE, skeySpec);
+            try {
+                return Codec.byteToHexString(cipher.doFinal(value.getBytes()));
+            } catch (GeneralSecurityException e) {
+                // Not in a known state anymore
+                encryptors.get().remove(skeySpec);
+                throw e;
+            }
         } catch (Exception ex) {
             throw new UnexpectedException(ex);
         }
@@ -151,9 +293,14 @@ public class Crypto {
         try {
             byte[] raw = privateKey.getBytes();
             SecretKeySpec skeySpec = new SecretKeySpec(raw, "AES");
-            Cipher cipher = Cipher.getInstance("AES");
-            cipher.init(Cipher.DECRYPT_MODE, skeySpec);
-            return new String(cipher.doFinal(Codec.hexStringToByte(value)));
+            Cipher cipher = cipher(decryptors, Cipher.DECRYPT_MODE, skeySpec);
+            try {
+                return new String(cipher.doFinal(Codec.hexStringToByte(value)));
+            } catch (GeneralSecurityException e) {
+                // Not in a known state anymore
+                decryptors.get().remove(skeySpec);
+                throw e;
+            }
         } catch (Exception ex) {
             throw new UnexpectedException(ex);
         }
@@ -78,7 +78,7 @@ public class F {
             return result;
         }
         protected List<F.Action<Promise<V>>> callbacks = new ArrayList<>();
-        protected boolean invoked = false;
+        protected volatile boolean invoked = false;
         protected V result = null;
         protected Throwable exception = null;
 
@@ -108,12 +108,16 @@ public class F {
         }
 
         public void onRedeem(F.Action<Promise<V>> callback) {
+            boolean alreadyInvoked;
             synchronized (this) {
-                if (!invoked) {
+                // Decide under the lock, otherwise a promise redeemed right after the callback was registered
+                // would call it twice
+                alreadyInvoked = invoked;
+                if (!alreadyInvoked) {
                     callbacks.add(callback);
                 }
             }
-            if (invoked) {
+            if (alreadyInvoked) {
                 callback.invoke(this);
             }
         }
@@ -17,6 +17,10 @@ public class MimeTypes {
 
     private static Properties mimetypes = null;
     private static Pattern extPattern;
+    private static volatile String[] compressibleTypes = null;
+    private static final String DEFAULT_COMPRESSIBLE_TYPES = "text/*,application/json,application/javascript,application/x-javascript,"
+            + "application/xml,application/xhtml+xml,application/rss+xml,application/atom+xml,image/svg+xml,"
+            + "application/vnd.ms-fontobject,application/x-font-ttf,font/ttf,font/otf";
 
     static {
         extPattern = Pattern.compile("^.*\\.([^.]+)$");
@@ -95,6 +99,39 @@ public class MimeTypes {
         }
     }
 
+    /**
+     * check whether a content of this type is worth compressing: text and text-like formats are, images, archives or
+     * videos are already compressed. The list can be overridden with <code>http.compression.mimeTypes</code>, a
+     * comma separated list of types, <em>text/*</em> standing for all the text types.
+     * @param contentType the content-type, with or without parameters
+     */
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String mimeType = contentType;
+        int semicolon = mimeType.indexOf(';');
+        if (semicolon > -1) {
+            mimeType = mimeType.substring(0, semicolon);
+        }
+        mimeType = mimeType.trim().toLowerCase();
+        for (String compressible : compressibleTypes()) {
+            if (compressible.endsWith("/*") ? mimeType.startsWith(compressible.substring(0, compressible.length() - 1)) : mimeType.equals(compressible)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] compressibleTypes() {
+        String[] types = compressibleTypes;
+        if (types == null) {
+            types = Play.configuration.getProperty("http.compression.mimeTypes", DEFAULT_COMPRESSIBLE_TYPES).toLowerCase().split("\\s*,\\s*");
+            compressibleTypes = types;
+        }
+        return types;
+    }
+
     private static String getCurrentCharset() {
         String charset;
         Http.Response currentResponse = Http.Response.current();
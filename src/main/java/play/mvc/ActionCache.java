@@ -0,0 +1,263 @@
+package play.mvc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import play.Invoker;
+import play.Invoker.InvocationContext;
+import play.Logger;
+import play.Play;
+import play.cache.Cache;
+import play.cache.CacheFor;
+import play.libs.Time;
+import play.mvc.results.RenderTemplate;
+import play.mvc.results.Result;
+
+/**
+ * Reads and writes the results of the actions annotated with {@link CacheFor}.
+ *
+ * <p>When a result is missing, a single request per key and per node runs the action, the others wait for its
+ * result (for at most <code>play.cache.waitFor</code>, 10s by default, before running the action themselves). When
+ * a stale-while-revalidate window is set, a result past its freshness is still served during the window while a
+ * single background invocation runs the action again. A refresh only counts as the computation of its key once it
+ * runs: requests missing the key while it waits in the queue run the action rather than wait behind it.</p>
+ */
+class ActionCache {
+
+    /**
+     * Result being computed for a key, by a request or by a running background refresh.
+     */
+    private static final Map<String, CompletableFuture<Result>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Keys with a background refresh scheduled or running.
+     */
+    private static final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The computation led by the current thread, if any.
+     */
+    private static final ThreadLocal<CompletableFuture<Result>> leading = new ThreadLocal<>();
+
+    /**
+     * A cached result that can be served after it is stale.
+     */
+    static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final Result result;
+        final long freshUntil;
+
+        Entry(Result result, long freshUntil) {
+            this.result = result;
+            this.freshUntil = freshUntil;
+        }
+    }
+
+    private ActionCache() {
+    }
+
+    /**
+     * @return the <code>id</code> of the annotation, or the URL of the request, followed by the selected headers and
+     *         session values
+     */
+    static String key(CacheFor cacheFor, Http.Request request) {
+        StringBuilder key = new StringBuilder();
+        if (cacheFor.id().isEmpty()) {
+            key.append("urlcache:").append(request.url).append(request.querystring);
+        } else {
+            key.append(cacheFor.id());
+        }
+        for (String name : cacheFor.headers()) {
+            Http.Header header = request.headers.get(name.toLowerCase());
+            key.append("|h:").append(name).append('=').append(header == null ? "" : header.value());
+        }
+        if (cacheFor.session().length > 0) {
+            Scope.Session session = Scope.Session.current();
+            for (String name : cacheFor.session()) {
+                String value = session == null ? null : session.get(name);
+                key.append("|s:").append(name).append('=').append(value == null ? "" : value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the cached result, possibly stale, or the result of the request computing it, or null if the current
+     *         request must run the action
+     */
+    static Result get(String key, Http.Request request) {
+        if (leading.get() != null) {
+            // Refreshing in the background
+            return null;
+        }
+        Object cached = Cache.get(key);
+        if (cached instanceof Entry) {
+            Entry entry = (Entry) cached;
+            if (System.currentTimeMillis() >= entry.freshUntil) {
+                refresh(key, request);
+            }
+            return entry.result;
+        }
+        if (cached instanceof Result) {
+            return (Result) cached;
+        }
+        CompletableFuture<Result> computation = new CompletableFuture<>();
+        CompletableFuture<Result> pending = inFlight.putIfAbsent(key, computation);
+        if (pending == null) {
+            leading.set(computation);
+            return null;
+        }
+        try {
+            return pending.get(Time.parseDuration(Play.configuration.getProperty("play.cache.waitFor", "10s")),
+                    TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    static void set(String key, CacheFor cacheFor, Result result) {
+        if (result instanceof RenderTemplate) {
+            // A streamed template must be rendered before being cached
+            ((RenderTemplate) result).getContent();
+        }
+        if (cacheFor.staleWhileRevalidate().isEmpty()) {
+            Cache.set(key, result, cacheFor.value());
+        } else {
+            int fresh = Time.parseDuration(cacheFor.value());
+            int stale = Time.parseDuration(cacheFor.staleWhileRevalidate());
+            Cache.set(key, new Entry(result, System.currentTimeMillis() + fresh * 1000L), (fresh + stale) + "s");
+        }
+        CompletableFuture<Result> computation = leading.get();
+        if (computation != null) {
+            computation.complete(result);
+        }
+    }
+
+    /**
+     * Ends the computation led by the current thread, whether or not it produced a result.
+     */
+    static void release(String key) {
+        CompletableFuture<Result> computation = leading.get();
+        if (computation != null) {
+            leading.remove();
+            inFlight.remove(key, computation);
+            computation.complete(null);
+        }
+    }
+
+    private static void refresh(String key, Http.Request request) {
+        if (refreshing.add(key)) {
+            try {
+                Invoker.invoke(new Refresh(key, copy(request)));
+            } catch (RuntimeException e) {
+                refreshing.remove(key);
+                Logger.error(e, "Could not schedule the refresh of %s", key);
+            }
+        }
+    }
+
+    /**
+     * @return a request for the same action, without a body, that is not shared with the current invocation
+     */
+    @SuppressWarnings("deprecation")
+    private static Http.Request copy(Http.Request request) {
+        Http.Request copy = new Http.Request();
+        copy.remoteAddress = request.remoteAddress;
+        copy.method = request.method;
+        copy.path = request.path;
+        copy.querystring = request.querystring;
+        copy.contentType = request.contentType;
+        copy.encoding = request.encoding;
+        copy.body = new ByteArrayInputStream(new byte[0]);
+        copy.url = request.url;
+        copy.host = request.host;
+        copy.isLoopback = request.isLoopback;
+        copy.port = request.port;
+        copy.domain = request.domain;
+        copy.secure = request.secure;
+        copy.headers = new HashMap<>(request.headers);
+        copy.cookies = new HashMap<>(request.cookies);
+        copy.user = request.user;
+        copy.password = request.password;
+        copy.format = request.format;
+        copy.action = request.action;
+        copy.routeArgs = request.routeArgs == null ? null : new HashMap<>(request.routeArgs);
+        return copy;
+    }
+
+    /**
+     * Runs an action again to replace its stale result. What it renders is not sent anywhere.
+     */
+    static class Refresh extends Invoker.Invocation {
+
+        final String key;
+        final Http.Request request;
+        final Http.Response response;
+
+        Refresh(String key, Http.Request request) {
+            this.key = key;
+            this.request = request;
+            this.response = new Http.Response();
+            this.response.out = new ByteArrayOutputStream();
+        }
+
+        @Override
+        public InvocationContext getInvocationContext() {
+            ActionInvoker.resolve(request, response);
+            return new InvocationContext(Http.invocationType, request.invokedMethod.getAnnotations(),
+                    request.invokedMethod.getDeclaringClass().getAnnotations());
+        }
+
+        @Override
+        public void execute() throws Exception {
+            if (lead()) {
+                ActionInvoker.invoke(request, response);
+            }
+        }
+
+        /**
+         * @return false if a request computes the result already, or stored a fresh one while the refresh was queued
+         */
+        boolean lead() {
+            Object cached = Cache.get(key);
+            if (cached instanceof Entry && System.currentTimeMillis() < ((Entry) cached).freshUntil) {
+                return false;
+            }
+            CompletableFuture<Result> computation = new CompletableFuture<>();
+            if (inFlight.putIfAbsent(key, computation) != null) {
+                return false;
+            }
+            leading.set(computation);
+            return true;
+        }
+
+        @Override
+        public void onException(Throwable e) {
+            Logger.error(e, "Could not refresh the cached result of %s", key);
+        }
+
+        @Override
+        public void _finally() {
+            try {
+                super._finally();
+            } finally {
+                release(key);
+                refreshing.remove(key);
+            }
+        }
+    }
+}
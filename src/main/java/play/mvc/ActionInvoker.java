@@ -7,7 +7,6 @@ import org.apache.commons.javaflow.bytecode.StackRecorder;
 import play.Invoker.Suspend;
 import play.Logger;
 import play.Play;
-import play.cache.Cache;
 import play.cache.CacheFor;
 import play.classloading.enhancers.ControllersEnhancer;
 import play.classloading.enhancers.ControllersEnhancer.ControllerInstrumentation;
@@ -22,12 +21,13 @@ import play.exceptions.ActionNotFoundException;
 import play.exceptions.JavaExecutionException;
 import play.exceptions.PlayException;
 import play.exceptions.UnexpectedException;
+import play.libs.F;
 import play.mvc.Http.Request;
 import play.mvc.Router.Route;
 import play.mvc.results.NoResult;
 import play.mvc.results.NotFound;
+import play.mvc.results.RenderTemplate;
 import play.mvc.results.Result;
-import play.utils.Java;
 import play.utils.Utils;
 
 import java.io.ByteArrayInputStream;
@@ -37,7 +37,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.Future;
@@ -119,14 +118,14 @@ public class ActionInvoker {
 
             // 2. Easy debugging ...
             if (Play.mode == Play.Mode.DEV) {
-                Controller.class.getDeclaredField("params").set(null, Scope.Params.current());
-                Controller.class.getDeclaredField("request").set(null, Http.Request.current());
-                Controller.class.getDeclaredField("response").set(null, Http.Response.current());
-                Controller.class.getDeclaredField("session").set(null, Scope.Session.current());
-                Controller.class.getDeclaredField("flash").set(null, Scope.Flash.current());
-                Controller.class.getDeclaredField("renderArgs").set(null, Scope.RenderArgs.current());
-                Controller.class.getDeclaredField("routeArgs").set(null, Scope.RouteArgs.current());
-                Controller.class.getDeclaredField("validation").set(null, Validation.current());
+                Controller.params = Scope.Params.current();
+                Controller.request = Http.Request.current();
+                Controller.response = Http.Response.current();
+                Controller.session = Scope.Session.current();
+                Controller.flash = Scope.Flash.current();
+                Controller.renderArgs = Scope.RenderArgs.current();
+                Controller.routeArgs = Scope.RouteArgs.current();
+                Controller.validation = Validation.current();
             }
 
             ControllerInstrumentation.stopActionCall();
@@ -135,6 +134,7 @@ public class ActionInvoker {
             // Monitoring
             monitor = MonitorFactory.start(request.action + "()");
 
+            CacheFor cacheFor = null;
             String cacheKey = null;
             Result actionResult = null;
 
@@ -143,15 +143,16 @@ public class ActionInvoker {
                 // @Before
                 handleBefores(request);
 
+                // Answer 304 before running the action if its validator allows it
+                AutoETags.validate(request, response);
+
                 // Action
 
                 // Check the cache (only for GET or HEAD)
                 if ((request.method.equals("GET") || request.method.equals("HEAD")) && actionMethod.isAnnotationPresent(CacheFor.class)) {
-                    cacheKey = actionMethod.getAnnotation(CacheFor.class).id();
-                    if ("".equals(cacheKey)) {
-                        cacheKey = "urlcache:" + request.url + request.querystring;
-                    }
-                    actionResult = (Result) Cache.get(cacheKey);
+                    cacheFor = actionMethod.getAnnotation(CacheFor.class);
+                    cacheKey = ActionCache.key(cacheFor, request);
+                    actionResult = ActionCache.get(cacheKey, request);
                 }
 
                 if (actionResult == null) {
@@ -162,11 +163,15 @@ public class ActionInvoker {
                 actionResult = result;
                 // Cache it if needed
                 if (cacheKey != null) {
-                    Cache.set(cacheKey, actionResult, actionMethod.getAnnotation(CacheFor.class).value());
+                    ActionCache.set(cacheKey, cacheFor, actionResult);
                 }
             } catch (JavaExecutionException e) {
                 invokeControllerCatchMethods(e.getCause());
                 throw e;
+            } finally {
+                if (cacheKey != null) {
+                    ActionCache.release(cacheKey);
+                }
             }
 
             // @After
@@ -185,12 +190,16 @@ public class ActionInvoker {
         } catch (Result result) {
             Play.pluginCollection.onActionInvocationResult(result);
 
-            // OK there is a result to apply
-            // Save session & flash scope now
-            Scope.Session.current().save();
-            Scope.Flash.current().save();
+            if (result instanceof RenderTemplate && ((RenderTemplate) result).isStreamed()) {
+                applyStreamed(request, response, (RenderTemplate) result);
+            } else {
+                // OK there is a result to apply
+                // Save session & flash scope now
+                Scope.Session.current().save();
+                Scope.Flash.current().save();
 
-            result.apply(request, response);
+                result.apply(request, response);
+            }
 
             Play.pluginCollection.afterActionInvocation();
 
@@ -215,34 +224,44 @@ public class ActionInvoker {
         }
     }
 
+    /**
+     * Renders a streamed template into the response. The template can still write to the session and the flash, e.g.
+     * through #{authenticityToken}, so they are saved once it is rendered, or just before the headers are sent if the
+     * response is committed while rendering. Rendering errors go through the @Finally methods like errors of the
+     * action.
+     */
+    static void applyStreamed(Http.Request request, Http.Response response, RenderTemplate result) {
+        response.beforeCommit(new F.Action<Http.Response>() {
+            @Override
+            public void invoke(Http.Response committed) {
+                Scope.Session.current().save();
+                Scope.Flash.current().save();
+            }
+        });
+        try {
+            result.apply(request, response);
+            response.commit();
+        } catch (PlayException e) {
+            handleFinallies(request, e);
+            throw e;
+        } catch (RuntimeException e) {
+            handleFinallies(request, e);
+            throw new UnexpectedException(e);
+        }
+    }
+
     private static void invokeControllerCatchMethods(Throwable throwable) throws Exception {
         // @Catch
         Object[] args = new Object[] {throwable};
-        List<Method> catches = Java.findAllAnnotatedMethods(Controller.getControllerClass(), Catch.class);
+        ControllerPlan.Interceptor[] catches = ControllerPlan.of(Controller.getControllerClass()).catches();
         ControllerInstrumentation.stopActionCall();
-        for (Method mCatch : catches) {
-            Class[] exceptions = mCatch.getAnnotation(Catch.class).value();
-            if (exceptions.length == 0) {
-                exceptions = new Class[]{Exception.class};
-            }
-            for (Class exception : exceptions) {
-                if (exception.isInstance(args[0])) {
-                    mCatch.setAccessible(true);
-                    inferResult(invokeControllerMethod(mCatch, args));
-                    break;
-                }
+        for (ControllerPlan.Interceptor mCatch : catches) {
+            if (mCatch.catches(throwable)) {
+                inferResult(invokeControllerMethod(mCatch.call, args));
             }
         }
     }
 
-    private static boolean isActionMethod(Method method) {
-        return !method.isAnnotationPresent(Before.class) &&
-                !method.isAnnotationPresent(After.class) &&
-                !method.isAnnotationPresent(Finally.class) &&
-                !method.isAnnotationPresent(Catch.class) &&
-                !method.isAnnotationPresent(Util.class);
-    }
-
     /**
      * Find the first public method of a controller class
      *
@@ -257,7 +276,7 @@ public class ActionInvoker {
             for (Method m : clazz.getDeclaredMethods()) {
                 if (m.getName().equalsIgnoreCase(name) && Modifier.isPublic(m.getModifiers())) {
                     // Check that it is not an interceptor
-                    if (isActionMethod(m)) {
+                    if (ControllerPlan.isAction(m)) {
                         return m;
                     }
                 }
@@ -268,70 +287,18 @@ public class ActionInvoker {
     }
 
     private static void handleBefores(Http.Request request) throws Exception {
-        List<Method> befores = Java.findAllAnnotatedMethods(Controller.getControllerClass(), Before.class);
+        ControllerPlan.Interceptor[] befores = ControllerPlan.of(Controller.getControllerClass()).befores(request.action);
         ControllerInstrumentation.stopActionCall();
-        for (Method before : befores) {
-            String[] unless = before.getAnnotation(Before.class).unless();
-            String[] only = before.getAnnotation(Before.class).only();
-            boolean skip = false;
-            for (String un : only) {
-                if (!un.contains(".")) {
-                    un = before.getDeclaringClass().getName().substring(12).replace("$", "") + "." + un;
-                }
-                if (un.equals(request.action)) {
-                    skip = false;
-                    break;
-                } else {
-                    skip = true;
-                }
-            }
-            for (String un : unless) {
-                if (!un.contains(".")) {
-                    un = before.getDeclaringClass().getName().substring(12).replace("$", "") + "." + un;
-                }
-                if (un.equals(request.action)) {
-                    skip = true;
-                    break;
-                }
-            }
-            if (!skip) {
-                before.setAccessible(true);
-                inferResult(invokeControllerMethod(before));
-            }
+        for (ControllerPlan.Interceptor before : befores) {
+            inferResult(invokeControllerMethod(before.call, null));
         }
     }
 
     private static void handleAfters(Http.Request request) throws Exception {
-        List<Method> afters = Java.findAllAnnotatedMethods(Controller.getControllerClass(), After.class);
+        ControllerPlan.Interceptor[] afters = ControllerPlan.of(Controller.getControllerClass()).afters(request.action);
         ControllerInstrumentation.stopActionCall();
-        for (Method after : afters) {
-            String[] unless = after.getAnnotation(After.class).unless();
-            String[] only = after.getAnnotation(After.class).only();
-            boolean skip = false;
-            for (String un : only) {
-                if (!un.contains(".")) {
-                    un = after.getDeclaringClass().getName().substring(12) + "." + un;
-                }
-                if (un.equals(request.action)) {
-                    skip = false;
-                    break;
-                } else {
-                    skip = true;
-                }
-            }
-            for (String un : unless) {
-                if (!un.contains(".")) {
-                    un = after.getDeclaringClass().getName().substring(12) + "." + un;
-                }
-                if (un.equals(request.action)) {
-                    skip = true;
-                    break;
-                }
-            }
-            if (!skip) {
-                after.setAccessible(true);
-                inferResult(invokeControllerMethod(after));
-            }
+        for (ControllerPlan.Interceptor after : afters) {
+            inferResult(invokeControllerMethod(after.call, null));
         }
     }
 
@@ -354,46 +321,18 @@ public class ActionInvoker {
         }
 
         try {
-            List<Method> allFinally = Java.findAllAnnotatedMethods(Controller.getControllerClass(), Finally.class);
+            ControllerPlan.Interceptor[] allFinally = ControllerPlan.of(Controller.getControllerClass()).finallies(request.action);
             ControllerInstrumentation.stopActionCall();
-            for (Method aFinally : allFinally) {
-                String[] unless = aFinally.getAnnotation(Finally.class).unless();
-                String[] only = aFinally.getAnnotation(Finally.class).only();
-                boolean skip = false;
-                for (String un : only) {
-                    if (!un.contains(".")) {
-                        un = aFinally.getDeclaringClass().getName().substring(12) + "." + un;
-                    }
-                    if (un.equals(request.action)) {
-                        skip = false;
-                        break;
-                    } else {
-                        skip = true;
-                    }
-                }
-                for (String un : unless) {
-                    if (!un.contains(".")) {
-                        un = aFinally.getDeclaringClass().getName().substring(12) + "." + un;
-                    }
-                    if (un.equals(request.action)) {
-                        skip = true;
-                        break;
-                    }
-                }
-                if (!skip) {
-                    aFinally.setAccessible(true);
-
-                    // check if method accepts Throwable as only parameter
-                    Class[] parameterTypes = aFinally.getParameterTypes();
-                    if (parameterTypes.length == 1 && parameterTypes[0] == Throwable.class) {
-                        // invoking @Finally method with caughtException as
-                        // parameter
-                        invokeControllerMethod(aFinally, new Object[] { caughtException });
-                    } else {
-                        // invoke @Finally-method the regular way without
-                        // caughtException
-                        invokeControllerMethod(aFinally, null);
-                    }
+            for (ControllerPlan.Interceptor aFinally : allFinally) {
+                // check if method accepts Throwable as only parameter
+                if (aFinally.takesThrowable) {
+                    // invoking @Finally method with caughtException as
+                    // parameter
+                    invokeControllerMethod(aFinally.call, new Object[] { caughtException });
+                } else {
+                    // invoke @Finally-method the regular way without
+                    // caughtException
+                    invokeControllerMethod(aFinally.call, null);
                 }
             }
         } catch (PlayException e) {
@@ -437,22 +376,22 @@ public class ActionInvoker {
     }
 
     public static Object invokeControllerMethod(Method method, Object[] forceArgs) throws Exception {
-        boolean isStatic = Modifier.isStatic(method.getModifiers());
-        String declaringClassName = method.getDeclaringClass().getName();
-        boolean isProbablyScala = declaringClassName.contains("$");
+        return invokeControllerMethod(ControllerPlan.call(method), forceArgs);
+    }
 
+    static Object invokeControllerMethod(ControllerPlan.MethodCall call, Object[] forceArgs) throws Exception {
         Http.Request request = Http.Request.current();
 
-        if (!isStatic && request.controllerInstance == null) {
+        if (!call.isStatic && request.controllerInstance == null) {
             request.controllerInstance = request.controllerClass.newInstance();
         }
 
-        Object[] args = forceArgs != null ? forceArgs : getActionMethodArgs(method, request.controllerInstance);
+        Object[] args = forceArgs != null ? forceArgs : getActionMethodArgs(call, request.controllerInstance);
 
-        if (isProbablyScala) {
+        if (call.isProbablyScala) {
             try {
                 Object scalaInstance = request.controllerClass.getDeclaredField("MODULE$").get(null);
-                if (declaringClassName.endsWith("$class")) {
+                if (call.isTraitMethod) {
                     args[0] = scalaInstance; // Scala trait method
                 } else {
                     request.controllerInstance = (Controller) scalaInstance; // Scala
@@ -464,15 +403,19 @@ public class ActionInvoker {
             }
         }
 
-        return invoke(method, request.controllerInstance, args);
+        return invoke(call, request.controllerInstance, args);
     }
 
     static Object invoke(Method method, Object instance, Object ... realArgs) throws Exception {
+        return invoke(ControllerPlan.call(method), instance, realArgs);
+    }
+
+    private static Object invoke(ControllerPlan.MethodCall call, Object instance, Object[] realArgs) throws Exception {
         try {
-            if (isActionMethod(method)) {
-                return invokeWithContinuation(method, instance, realArgs);
+            if (call.isAction) {
+                return invokeWithContinuation(call, instance, realArgs);
             } else {
-                return method.invoke(instance, realArgs);
+                return call.invoke(instance, realArgs);
             }
         } catch (InvocationTargetException ex) {
             Throwable originalThrowable = ex.getTargetException();
@@ -498,7 +441,7 @@ public class ActionInvoker {
     public static final String CONTINUATIONS_STORE_VALIDATIONS = "__CONTINUATIONS_STORE_VALIDATIONS";
     static final String CONTINUATIONS_STORE_VALIDATIONPLUGIN_KEYS = "__CONTINUATIONS_STORE_VALIDATIONPLUGIN_KEYS";
 
-    static Object invokeWithContinuation(Method method, Object instance, Object[] realArgs) throws Exception {
+    static Object invokeWithContinuation(ControllerPlan.MethodCall call, Object instance, Object[] realArgs) throws Exception {
         // Callback case
         if (Http.Request.current().args.containsKey(A)) {
 
@@ -507,6 +450,7 @@ public class ActionInvoker {
             Future f = (Future) Http.Request.current().args.get(F);
             Scope.RenderArgs renderArgs = (Scope.RenderArgs) Request.current().args.remove(ActionInvoker.CONTINUATIONS_STORE_RENDER_ARGS);
             Scope.RenderArgs.current.set(renderArgs);
+            Method method;
             if (f == null) {
                 method = instance.getClass().getDeclaredMethod("invoke");
                 method.setAccessible(true);
@@ -534,11 +478,11 @@ public class ActionInvoker {
 
             // Execute code
             //TODO   Controller.action()
-            result = method.invoke(instance, realArgs);
+            result = call.invoke(instance, realArgs);
 
             if (pStackRecorder.isCapturing) {
                 if (pStackRecorder.isEmpty()) {
-                    throw new IllegalStateException("stack corruption. Is " + method + " instrumented for javaflow?");
+                    throw new IllegalStateException("stack corruption. Is " + call.method + " instrumented for javaflow?");
                 }
                 Object trigger = pStackRecorder.value;
                 Continuation nextContinuation = new Continuation(pStackRecorder);
@@ -586,7 +530,7 @@ public class ActionInvoker {
                             new Exception("class " + controller + " does not extend play.mvc.Controller"));
                 }
             }
-            actionMethod = findActionMethod(action, controllerClass);
+            actionMethod = ControllerPlan.of(controllerClass).action(action);
             if (actionMethod == null) {
                 throw new ActionNotFoundException(fullAction,
                         new Exception("No method public static void " + action + "() was found in class " + controller));
@@ -600,8 +544,14 @@ public class ActionInvoker {
     }
 
     public static Object[] getActionMethodArgs(Method method, Object o) throws Exception {
-        String[] paramsNames = Java.parameterNames(method);
-        if (paramsNames == null && method.getParameterTypes().length > 0) {
+        return getActionMethodArgs(ControllerPlan.call(method), o);
+    }
+
+    private static Object[] getActionMethodArgs(ControllerPlan.MethodCall call, Object o) throws Exception {
+        Method method = call.method;
+        Class<?>[] parameterTypes = call.parameterTypes;
+        String[] paramsNames = call.parameterNames();
+        if (paramsNames == null && parameterTypes.length > 0) {
             throw new UnexpectedException("Parameter names not found for method " + method);
         }
 
@@ -613,10 +563,10 @@ public class ActionInvoker {
             return rArgs;
         }
 
-        rArgs = new Object[method.getParameterTypes().length];
-        for (int i = 0; i < method.getParameterTypes().length; i++) {
+        rArgs = new Object[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
 
-            Class<?> type = method.getParameterTypes()[i];
+            Class<?> type = parameterTypes[i];
             Map<String, String[]> params = new HashMap<>();
 
             // In case of simple params, we don't want to parse the body.
@@ -625,12 +575,14 @@ public class ActionInvoker {
             } else {
                 params.putAll(Scope.Params.current().all());
             }
-            Logger.trace("getActionMethodArgs name [" + paramsNames[i] + "] annotation ["
-                    + Utils.join(method.getParameterAnnotations()[i], " ") + "]");
+            if (Logger.isTraceEnabled()) {
+                Logger.trace("getActionMethodArgs name [" + paramsNames[i] + "] annotation ["
+                        + Utils.join(call.parameterAnnotations[i], " ") + "]");
+            }
 
             RootParamNode root = ParamNode.convert(params);
-            rArgs[i] = Binder.bind(root, paramsNames[i], method.getParameterTypes()[i], method.getGenericParameterTypes()[i],
-                    method.getParameterAnnotations()[i], new Binder.MethodAndParamInfo(o, method, i + 1));
+            rArgs[i] = Binder.bind(root, paramsNames[i], type, call.genericParameterTypes[i],
+                    call.parameterAnnotations[i], new Binder.MethodAndParamInfo(o, method, i + 1));
         }
 
         CachedBoundActionMethodArgs.current().storeActionMethodArgs(method, rArgs);
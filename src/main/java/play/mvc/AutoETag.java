@@ -0,0 +1,26 @@
+package play.mvc;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets a strong ETag, the hash of the body, on the responses of this action and answers 304 Not Modified when it
+ * matches the If-None-Match header of the request.
+ *
+ * <p>Example: <code>@AutoETag(validator = "lastUpdate")</code>
+ *
+ * <p>Responses of any action can also be hashed by content type, with <code>http.autoETag=application/json</code>.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AutoETag {
+
+    /**
+     * Static method of the controller, called with the same parameters as the action before it runs, whose result
+     * changes whenever the response does (e.g. the latest update date of what is shown). When set, the ETag is
+     * derived from this value and a matching request is answered without running the action.
+     */
+    String validator() default "";
+}
@@ -0,0 +1,194 @@
+package play.mvc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import play.Play;
+import play.exceptions.UnexpectedException;
+import play.libs.Codec;
+import play.mvc.results.NotModified;
+
+/**
+ * Conditional GET for dynamic responses, see {@link AutoETag}.
+ *
+ * <p>The server keeps the body of a response that gets an automatic ETag in memory until it is complete, hashes it,
+ * and sends a 304 without the body when the ETag matches.</p>
+ */
+public class AutoETags {
+
+    private static final Map<Method, Method> validators = new ConcurrentHashMap<>();
+
+    private static volatile String configuredTypes = "";
+    private static volatile Set<String> contentTypes = Collections.emptySet();
+
+    private AutoETags() {
+    }
+
+    /**
+     * @return whether the body of this response must be hashed into an ETag
+     */
+    public static boolean applies(Http.Request request, Http.Response response) {
+        if (request.invokedMethod == null || response.status == null || response.status != Http.StatusCode.OK
+                || response.direct != null || response.chunked
+                || !("GET".equals(request.method) || "HEAD".equals(request.method))
+                || response.getHeader("ETag") != null) {
+            return false;
+        }
+        if (!"true".equals(Play.configuration.getProperty("http.useETag", "true"))) {
+            return false;
+        }
+        if (request.invokedMethod.isAnnotationPresent(AutoETag.class)) {
+            return true;
+        }
+        return response.contentType != null && contentTypes().contains(mediaType(response.contentType));
+    }
+
+    private static Set<String> contentTypes() {
+        String types = Play.configuration.getProperty("http.autoETag", "");
+        if (!types.equals(configuredTypes)) {
+            Set<String> parsed = new HashSet<>();
+            for (String type : types.split(",")) {
+                if (!type.trim().isEmpty()) {
+                    parsed.add(type.trim().toLowerCase());
+                }
+            }
+            contentTypes = parsed;
+            configuredTypes = types;
+        }
+        return contentTypes;
+    }
+
+    private static String mediaType(String contentType) {
+        int semicolon = contentType.indexOf(';');
+        return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim().toLowerCase();
+    }
+
+    /**
+     * Sets the ETag of a complete response that {@link #applies(Http.Request, Http.Response)}, and turns it into a
+     * 304 without a body when the request already has it.
+     */
+    public static void apply(Http.Request request, Http.Response response) {
+        if (!applies(request, response)) {
+            return;
+        }
+        String etag = etag(response.out);
+        response.setHeader("ETag", etag);
+        if (matches(request, etag)) {
+            response.status = Http.StatusCode.NOT_MODIFIED;
+            response.out.reset();
+        }
+    }
+
+    /**
+     * @return the strong ETag of a body
+     */
+    static String etag(ByteArrayOutputStream body) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            // Straight from the buffers of the body, without a copy
+            body.writeTo(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    digest.update((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    digest.update(b, off, len);
+                }
+            });
+            return "\"" + Codec.byteToHexString(digest.digest()) + "\"";
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new UnexpectedException(e);
+        }
+    }
+
+    /**
+     * @return whether the If-None-Match header of the request, compared weakly, lists this ETag
+     */
+    static boolean matches(Http.Request request, String etag) {
+        Http.Header header = request.headers.get("if-none-match");
+        if (header == null) {
+            return false;
+        }
+        String opaque = opaque(etag);
+        for (String value : header.values) {
+            for (String candidate : value.split(",")) {
+                candidate = candidate.trim();
+                if ("*".equals(candidate) || opaque(candidate).equals(opaque)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String opaque(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /**
+     * Calls the validator of the action, if any, sets the ETag it gives and answers 304 when it matches.
+     */
+    static void validate(Http.Request request, Http.Response response) throws Exception {
+        AutoETag autoETag = request.invokedMethod.getAnnotation(AutoETag.class);
+        if (autoETag == null || autoETag.validator().isEmpty()) {
+            return;
+        }
+        Object version = ActionInvoker.invokeControllerMethod(validator(request, autoETag.validator()));
+        if (version == null) {
+            return;
+        }
+        String etag = "W/\"" + Codec.hexMD5(request.action + "|" + request.format + "|" + version) + "\"";
+        if (matches(request, etag)) {
+            throw new NotModified(etag);
+        }
+        response.setHeader("ETag", etag);
+    }
+
+    /**
+     * @return the static method of the controller, or of one of its superclasses, named after the validator and taking
+     *         the same parameters as the action
+     */
+    private static Method validator(Http.Request request, String name) {
+        Method validator = validators.get(request.invokedMethod);
+        if (validator == null) {
+            Class<?>[] parameterTypes = request.invokedMethod.getParameterTypes();
+            Class<?> clazz = request.controllerClass;
+            while (clazz != null && validator == null) {
+                try {
+                    Method method = clazz.getDeclaredMethod(name, parameterTypes);
+                    if (Modifier.isStatic(method.getModifiers())) {
+                        validator = method;
+                    }
+                } catch (NoSuchMethodException e) {
+                    // Look in the superclass
+                }
+                clazz = clazz.getSuperclass();
+            }
+            if (validator == null) {
+                throw new UnexpectedException(String.format("No static method %s with the parameters of %s in %s",
+                        name, request.action, request.controllerClass.getName()));
+            }
+            validators.put(request.invokedMethod, validator);
+        }
+        return validator;
+    }
+
+    /**
+     * Forgets the validators found so far, which belong to the classes of the previous start of the application.
+     */
+    public static void clearValidators() {
+        validators.clear();
+    }
+}
@@ -0,0 +1,372 @@
+package play.mvc;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang.ClassUtils;
+
+import play.Play;
+import play.classloading.ApplicationClassloaderState;
+import play.utils.Java;
+
+/**
+ * What the {@link ActionInvoker} needs to know about a controller class: its action methods, its interceptors,
+ * already filtered for each action, and method handles to call them.
+ * <p>
+ * Plans are computed the first time a controller class is used and dropped as soon as the application classes are
+ * reloaded, so the request path does not scan the class with reflection.
+ */
+class ControllerPlan {
+
+    private static volatile Generation generation = new Generation(null);
+
+    final Class<?> controllerClass;
+    private final Interceptor[] befores;
+    private final Interceptor[] afters;
+    private final Interceptor[] finallies;
+    private final Interceptor[] catches;
+    private final Map<String, Interceptor[]> beforesByAction = new ConcurrentHashMap<>();
+    private final Map<String, Interceptor[]> aftersByAction = new ConcurrentHashMap<>();
+    private final Map<String, Interceptor[]> finalliesByAction = new ConcurrentHashMap<>();
+    private final Map<String, Method> actions = new ConcurrentHashMap<>();
+
+    private ControllerPlan(Class<?> controllerClass) {
+        this.controllerClass = controllerClass;
+        this.befores = interceptors(controllerClass, Before.class);
+        this.afters = interceptors(controllerClass, After.class);
+        this.finallies = interceptors(controllerClass, Finally.class);
+        this.catches = interceptors(controllerClass, Catch.class);
+    }
+
+    /**
+     * @return the plan of a controller class
+     */
+    static ControllerPlan of(Class<?> controllerClass) {
+        Generation current = currentGeneration();
+        ControllerPlan plan = current.plans.get(controllerClass);
+        if (plan == null) {
+            plan = new ControllerPlan(controllerClass);
+            ControllerPlan existing = current.plans.putIfAbsent(controllerClass, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * @return how to call a controller method (action, interceptor or any other public method)
+     */
+    static MethodCall call(Method method) {
+        Generation current = currentGeneration();
+        MethodCall call = current.calls.get(method);
+        if (call == null) {
+            call = new MethodCall(method);
+            MethodCall existing = current.calls.putIfAbsent(method, call);
+            if (existing != null) {
+                call = existing;
+            }
+        }
+        return call;
+    }
+
+    private static Generation currentGeneration() {
+        ApplicationClassloaderState state = Play.classloader == null ? null : Play.classloader.currentState;
+        Generation current = generation;
+        if (current.state != state) {
+            // The application classes have been reloaded
+            current = new Generation(state);
+            generation = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return the action method of this name, ignoring case, or null if there is none
+     */
+    Method action(String name) {
+        String key = name.toLowerCase();
+        Method method = actions.get(key);
+        if (method == null) {
+            // Unknown names are not kept, they may come from the client
+            method = ActionInvoker.findActionMethod(name, controllerClass);
+            if (method != null) {
+                actions.put(key, method);
+            }
+        }
+        return method;
+    }
+
+    /**
+     * @return whether a public controller method is an action, rather than an interceptor or a utility
+     */
+    static boolean isAction(Method method) {
+        return !method.isAnnotationPresent(Before.class) && !method.isAnnotationPresent(After.class)
+                && !method.isAnnotationPresent(Finally.class) && !method.isAnnotationPresent(Catch.class)
+                && !method.isAnnotationPresent(Util.class);
+    }
+
+    Interceptor[] befores(String action) {
+        return filter(befores, beforesByAction, action);
+    }
+
+    Interceptor[] afters(String action) {
+        return filter(afters, aftersByAction, action);
+    }
+
+    Interceptor[] finallies(String action) {
+        return filter(finallies, finalliesByAction, action);
+    }
+
+    Interceptor[] catches() {
+        return catches;
+    }
+
+    private static Interceptor[] filter(Interceptor[] all, Map<String, Interceptor[]> byAction, String action) {
+        if (all.length == 0) {
+            return all;
+        }
+        if (action == null) {
+            return filter(all, null);
+        }
+        Interceptor[] filtered = byAction.get(action);
+        if (filtered == null) {
+            filtered = filter(all, action);
+            byAction.put(action, filtered);
+        }
+        return filtered;
+    }
+
+    private static Interceptor[] filter(Interceptor[] all, String action) {
+        List<Interceptor> filtered = new ArrayList<>(all.length);
+        for (Interceptor interceptor : all) {
+            if (interceptor.appliesTo(action)) {
+                filtered.add(interceptor);
+            }
+        }
+        return filtered.toArray(new Interceptor[filtered.size()]);
+    }
+
+    private static Interceptor[] interceptors(Class<?> controllerClass, Class<? extends Annotation> annotationType) {
+        List<Method> methods = Java.findAllAnnotatedMethods(controllerClass, annotationType);
+        Interceptor[] interceptors = new Interceptor[methods.size()];
+        for (int i = 0; i < interceptors.length; i++) {
+            interceptors[i] = new Interceptor(methods.get(i), annotationType);
+        }
+        return interceptors;
+    }
+
+    /**
+     * A @Before, @After, @Finally or @Catch method.
+     */
+    static final class Interceptor {
+
+        final Method method;
+        final MethodCall call;
+        private final String[] only;
+        private final String[] unless;
+        /**
+         * Exceptions handled by a @Catch method.
+         */
+        final Class<?>[] exceptions;
+        /**
+         * Whether a @Finally method receives the caught exception.
+         */
+        final boolean takesThrowable;
+
+        Interceptor(Method method, Class<? extends Annotation> annotationType) {
+            this.method = method;
+            method.setAccessible(true);
+            this.call = call(method);
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            this.takesThrowable = parameterTypes.length == 1 && parameterTypes[0] == Throwable.class;
+            // @Before historically strips the '$' of Scala controller names, the others don't
+            String controllerName = method.getDeclaringClass().getName().substring(12);
+            if (annotationType == Before.class) {
+                Before before = method.getAnnotation(Before.class);
+                controllerName = controllerName.replace("$", "");
+                this.only = qualify(before.only(), controllerName);
+                this.unless = qualify(before.unless(), controllerName);
+                this.exceptions = null;
+            } else if (annotationType == After.class) {
+                After after = method.getAnnotation(After.class);
+                this.only = qualify(after.only(), controllerName);
+                this.unless = qualify(after.unless(), controllerName);
+                this.exceptions = null;
+            } else if (annotationType == Finally.class) {
+                Finally aFinally = method.getAnnotation(Finally.class);
+                this.only = qualify(aFinally.only(), controllerName);
+                this.unless = qualify(aFinally.unless(), controllerName);
+                this.exceptions = null;
+            } else {
+                Class<?>[] value = method.getAnnotation(Catch.class).value();
+                this.only = new String[0];
+                this.unless = new String[0];
+                this.exceptions = value.length == 0 ? new Class<?>[] { Exception.class } : value;
+            }
+        }
+
+        private static String[] qualify(String[] actions, String controllerName) {
+            String[] qualified = new String[actions.length];
+            for (int i = 0; i < actions.length; i++) {
+                qualified[i] = actions[i].contains(".") ? actions[i] : controllerName + "." + actions[i];
+            }
+            return qualified;
+        }
+
+        boolean appliesTo(String action) {
+            boolean skip = false;
+            for (String un : only) {
+                if (un.equals(action)) {
+                    skip = false;
+                    break;
+                }
+                skip = true;
+            }
+            for (String un : unless) {
+                if (un.equals(action)) {
+                    skip = true;
+                    break;
+                }
+            }
+            return !skip;
+        }
+
+        /**
+         * @return true if this @Catch method handles the given exception
+         */
+        boolean catches(Throwable throwable) {
+            for (Class<?> exception : exceptions) {
+                if (exception.isInstance(throwable)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A controller method with everything needed to call it: a method handle taking the instance and an array of
+     * arguments, and the reflective metadata the invoker used to recompute on each request.
+     */
+    static final class MethodCall {
+
+        private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+        private static final Object[] NO_ARGS = new Object[0];
+
+        final Method method;
+        final boolean isStatic;
+        final boolean isProbablyScala;
+        final boolean isTraitMethod;
+        final boolean isAction;
+        final Class<?>[] parameterTypes;
+        final Type[] genericParameterTypes;
+        final Annotation[][] parameterAnnotations;
+        /**
+         * The parameter types, primitives boxed, that the method handle takes without conversion.
+         */
+        private final Class<?>[] exactTypes;
+        private final MethodHandle handle;
+        private volatile String[] parameterNames;
+
+        MethodCall(Method method) {
+            this.method = method;
+            this.isStatic = Modifier.isStatic(method.getModifiers());
+            String declaringClassName = method.getDeclaringClass().getName();
+            this.isProbablyScala = declaringClassName.contains("$");
+            this.isTraitMethod = declaringClassName.endsWith("$class");
+            this.isAction = isAction(method);
+            this.parameterTypes = method.getParameterTypes();
+            this.exactTypes = new Class<?>[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                exactTypes[i] = parameterTypes[i].isPrimitive() ? ClassUtils.primitiveToWrapper(parameterTypes[i]) : parameterTypes[i];
+            }
+            this.genericParameterTypes = method.getGenericParameterTypes();
+            this.parameterAnnotations = method.getParameterAnnotations();
+            this.handle = handle(method);
+        }
+
+        private static MethodHandle handle(Method method) {
+            try {
+                if (!method.isAccessible()) {
+                    method.setAccessible(true);
+                }
+                MethodHandle handle = MethodHandles.lookup().unreflect(method);
+                int parameterCount = method.getParameterTypes().length;
+                if (Modifier.isStatic(method.getModifiers())) {
+                    handle = handle.asType(handle.type().generic()).asSpreader(Object[].class, parameterCount);
+                    handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                } else {
+                    handle = handle.asType(handle.type().generic()).asSpreader(Object[].class, parameterCount);
+                }
+                return handle.asType(INVOKER_TYPE);
+            } catch (Exception e) {
+                // Not accessible through a method handle, stick to reflection
+                return null;
+            }
+        }
+
+        /**
+         * Calls the method. Exceptions thrown by the method itself are wrapped in an InvocationTargetException, as
+         * with {@link Method#invoke(Object, Object...)}, arguments of the wrong type throw an
+         * IllegalArgumentException.
+         */
+        Object invoke(Object instance, Object[] args) throws Exception {
+            if (args == null) {
+                args = NO_ARGS;
+            }
+            if (handle == null || !takesExactly(args)) {
+                // Reflection widens primitives, and reports mismatches rather than blaming the method
+                return method.invoke(instance, args);
+            }
+            try {
+                return (Object) handle.invokeExact(instance, args);
+            } catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+
+        private boolean takesExactly(Object[] args) {
+            if (args.length != exactTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < args.length; i++) {
+                Object arg = args[i];
+                if (arg == null ? parameterTypes[i].isPrimitive()
+                        : parameterTypes[i].isPrimitive() ? arg.getClass() != exactTypes[i] : !exactTypes[i].isInstance(arg)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String[] parameterNames() throws Exception {
+            String[] names = parameterNames;
+            if (names == null) {
+                names = Java.parameterNames(method);
+                parameterNames = names;
+            }
+            return names;
+        }
+    }
+
+    private static final class Generation {
+        private final ApplicationClassloaderState state;
+        private final Map<Class<?>, ControllerPlan> plans = new ConcurrentHashMap<>();
+        private final Map<Method, MethodCall> calls = new ConcurrentHashMap<>();
+
+        private Generation(ApplicationClassloaderState state) {
+            this.state = state;
+        }
+    }
+}
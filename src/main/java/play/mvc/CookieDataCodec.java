@@ -1,18 +1,32 @@
 package play.mvc;
 
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
-import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.Base64;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import play.Play;
+
 /**
  * Provides operations around the encoding and decoding of Cookie data.
+ * <p>
+ * Data is encoded as <code>key=value</code> pairs separated by <code>&amp;</code>, with keys and values encoded as
+ * {@link java.net.URLEncoder} does in UTF-8. With <code>application.session.format=binary</code>, it is encoded as
+ * <code>~</code> followed by the base64url of the length prefixed UTF-8 keys and values instead, which is shorter
+ * for data that would need a lot of escaping. Both formats are always decoded.
  */
 public class CookieDataCodec {
 
-    /** 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char BINARY = '~';
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
      * Cookie session parser for cookie created by version 1.2.5 or before.
      * <p>We need it to support old Play 1.2.5 session data encoding so that the cookie data doesn't become invalid when
      * applications are upgraded to a newer version of Play</p>
@@ -25,10 +39,24 @@ public class CookieDataCodec {
      * @throws UnsupportedEncodingException
      */
     public static void decode(Map<String, String> map, String data) throws UnsupportedEncodingException {
+        decode(map, (CharSequence) data);
+    }
+
+    /**
+     * @param map  the map to decode data into.
+     * @param data the data to decode.
+     * @throws UnsupportedEncodingException
+     */
+    public static void decode(Map<String, String> map, CharSequence data) throws UnsupportedEncodingException {
+        int length = data.length();
+        if (length > 0 && data.charAt(0) == BINARY) {
+            decodeBinary(map, data);
+            return;
+        }
         // support old Play 1.2.5 session data encoding so that the cookie data doesn't become invalid when
         // applications are upgraded to a newer version of Play
-        if (data.startsWith("%00") && data.contains("%3A") && data.endsWith("%00")) {
-            String sessionData = URLDecoder.decode(data, "utf-8");
+        if (startsWith(data, 0, "%00") && contains(data, "%3A") && startsWith(data, length - 3, "%00")) {
+            String sessionData = decode(data, 0, length);
             Matcher matcher = oldCookieSessionParser.matcher(sessionData);
             while (matcher.find()) {
                 map.put(matcher.group(1), matcher.group(2));
@@ -36,12 +64,20 @@ public class CookieDataCodec {
             return;
         }
 
-        String[] keyValues = data.split("&");
-        for (String keyValue : keyValues) {
-            String[] split = keyValue.split("=", 2);
-            if (split.length == 2) {
-                map.put(URLDecoder.decode(split[0], "utf-8"), URLDecoder.decode(split[1], "utf-8"));
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            int equals = -1;
+            while (end < length && data.charAt(end) != '&') {
+                if (equals < 0 && data.charAt(end) == '=') {
+                    equals = end;
+                }
+                end++;
             }
+            if (equals >= 0) {
+                map.put(decode(data, start, equals), decode(data, equals + 1, end));
+            }
+            start = end + 1;
         }
     }
 
@@ -51,20 +87,181 @@ public class CookieDataCodec {
      * @throws UnsupportedEncodingException
      */
     public static String encode(Map<String, String> map) throws UnsupportedEncodingException {
+        if ("binary".equals(Play.configuration.getProperty("application.session.format"))) {
+            return encodeBinary(map);
+        }
         StringBuilder data = new StringBuilder();
-        String separator = "";
         for (Map.Entry<String, String> entry : map.entrySet()) {
             if (entry.getValue() != null) {
-                data.append(separator)
-                        .append(URLEncoder.encode(entry.getKey(), "utf-8"))
-                        .append("=")
-                        .append(URLEncoder.encode(entry.getValue(), "utf-8"));
-                separator = "&";
+                if (data.length() > 0) {
+                    data.append('&');
+                }
+                encode(data, entry.getKey());
+                data.append('=');
+                encode(data, entry.getValue());
             }
         }
         return data.toString();
     }
 
+    /**
+     * Appends a string encoded as {@link java.net.URLEncoder} does in UTF-8.
+     */
+    private static void encode(StringBuilder out, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-'
+                    || c == '*' || c == '_') {
+                out.append(c);
+            } else if (c == ' ') {
+                out.append('+');
+            } else if (c < 0x80) {
+                escape(out, c);
+            } else if (c < 0x800) {
+                escape(out, 0xc0 | (c >> 6));
+                escape(out, 0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                escape(out, 0xf0 | (codePoint >> 18));
+                escape(out, 0x80 | ((codePoint >> 12) & 0x3f));
+                escape(out, 0x80 | ((codePoint >> 6) & 0x3f));
+                escape(out, 0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // Not encodable, replaced
+                escape(out, '?');
+            } else {
+                escape(out, 0xe0 | (c >> 12));
+                escape(out, 0x80 | ((c >> 6) & 0x3f));
+                escape(out, 0x80 | (c & 0x3f));
+            }
+        }
+    }
+
+    private static void escape(StringBuilder out, int b) {
+        out.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+    }
+
+    /**
+     * Decodes a part of the data as {@link java.net.URLDecoder} does in UTF-8.
+     */
+    private static String decode(CharSequence data, int start, int end) {
+        StringBuilder out = null;
+        byte[] bytes = null;
+        int i = start;
+        while (i < end) {
+            char c = data.charAt(i);
+            if (c != '+' && c != '%') {
+                if (out != null) {
+                    out.append(c);
+                }
+                i++;
+                continue;
+            }
+            if (out == null) {
+                out = new StringBuilder(end - start);
+                out.append(data, start, i);
+            }
+            if (c == '+') {
+                out.append(' ');
+                i++;
+                continue;
+            }
+            if (bytes == null) {
+                bytes = new byte[(end - i) / 3];
+            }
+            int count = 0;
+            while (i < end && data.charAt(i) == '%') {
+                if (i + 2 >= end) {
+                    throw new IllegalArgumentException("URLDecoder: Incomplete trailing escape (%) pattern");
+                }
+                int high = Character.digit(data.charAt(i + 1), 16);
+                int low = Character.digit(data.charAt(i + 2), 16);
+                if (high < 0 || low < 0) {
+                    throw new IllegalArgumentException("URLDecoder: Illegal hex characters in escape (%) pattern");
+                }
+                bytes[count++] = (byte) ((high << 4) + low);
+                i += 3;
+            }
+            out.append(new String(bytes, 0, count, UTF_8));
+        }
+        return out == null ? data.subSequence(start, end).toString() : out.toString();
+    }
+
+    private static String encodeBinary(Map<String, String> map) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (entry.getValue() != null) {
+                writeString(bytes, entry.getKey());
+                writeString(bytes, entry.getValue());
+            }
+        }
+        return BINARY + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(UTF_8);
+        int length = bytes.length;
+        while (length >= 0x80) {
+            out.write(0x80 | (length & 0x7f));
+            length >>>= 7;
+        }
+        out.write(length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void decodeBinary(Map<String, String> map, CharSequence data) {
+        byte[] bytes = Base64.getUrlDecoder().decode(data.subSequence(1, data.length()).toString());
+        int[] offset = new int[1];
+        while (offset[0] < bytes.length) {
+            String key = readString(bytes, offset);
+            map.put(key, readString(bytes, offset));
+        }
+    }
+
+    /**
+     * Reads a length prefixed string at <code>offset[0]</code>, and moves the offset past it.
+     */
+    private static String readString(byte[] bytes, int[] offset) {
+        int position = offset[0];
+        int length = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (position >= bytes.length || shift > 28) {
+                throw new IllegalArgumentException("Truncated cookie data");
+            }
+            b = bytes[position++];
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if (length < 0 || length > bytes.length - position) {
+            throw new IllegalArgumentException("Truncated cookie data");
+        }
+        offset[0] = position + length;
+        return new String(bytes, position, length, UTF_8);
+    }
+
+    private static boolean startsWith(CharSequence data, int offset, String prefix) {
+        if (offset < 0 || offset + prefix.length() > data.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(CharSequence data, String part) {
+        for (int i = 0; i + part.length() <= data.length(); i++) {
+            if (startsWith(data, i, part)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Constant time for same length String comparison, to prevent timing attacks
      */
@@ -79,4 +276,4 @@ public class CookieDataCodec {
             return equal == 0;
         }
     }
-}
\ No newline at end of file
+}
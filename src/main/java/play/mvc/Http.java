@@ -312,8 +312,12 @@ public class Http {
          */
         @Deprecated
         public Request() {
-            headers = new HashMap<>(16);
-            cookies = new HashMap<>(16);
+            this(new HashMap<String, Http.Header>(16), new HashMap<String, Http.Cookie>(16));
+        }
+
+        private Request(Map<String, Http.Header> headers, Map<String, Http.Cookie> cookies) {
+            this.headers = headers;
+            this.cookies = cookies;
         }
 
         /**
@@ -326,7 +330,13 @@ public class Http {
         public static Request createRequest(String _remoteAddress, String _method, String _path, String _querystring, String _contentType,
                                             InputStream _body, String _url, String _host, boolean _isLoopback, int _port, String _domain, boolean _secure,
                                             Map<String, Http.Header> _headers, Map<String, Http.Cookie> _cookies) {
-            Request newRequest = new Request();
+            if (_headers == null) {
+                _headers = new HashMap<>(16);
+            }
+            if (_cookies == null) {
+                _cookies = new HashMap<>(16);
+            }
+            Request newRequest = new Request(_headers, _cookies);
 
             newRequest.remoteAddress = _remoteAddress;
             newRequest.method = _method;
@@ -355,16 +365,6 @@ public class Http {
             newRequest.domain = _domain;
             newRequest.secure = _secure;
 
-            if (_headers == null) {
-                _headers = new HashMap<>(16);
-            }
-            newRequest.headers = _headers;
-
-            if (_cookies == null) {
-                _cookies = new HashMap<>(16);
-            }
-            newRequest.cookies = _cookies;
-
             newRequest.parseXForwarded();
 
             newRequest.resolveFormat();
@@ -872,6 +872,29 @@ public class Http {
         public void onWriteChunk(F.Action<Object> handler) {
             writeChunkHandlers.add(handler);
         }
+
+        // Last changes to the headers
+        final List<F.Action<Response>> commitHandlers = new ArrayList<>();
+
+        /**
+         * Registers code to run just before the status, the headers and the cookies of this response are sent, while
+         * they can still change.
+         */
+        public void beforeCommit(F.Action<Response> handler) {
+            commitHandlers.add(handler);
+        }
+
+        /**
+         * Runs, once, the handlers registered with {@link #beforeCommit(F.Action)}. Called when the body starts being
+         * sent before it is complete, or once it is complete.
+         */
+        public void commit() {
+            List<F.Action<Response>> handlers = new ArrayList<>(commitHandlers);
+            commitHandlers.clear();
+            for (F.Action<Response> handler : handlers) {
+                handler.invoke(this);
+            }
+        }
     }
 
     /**
@@ -0,0 +1,299 @@
+package play.mvc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import play.Play;
+import play.mvc.Router.Route;
+
+/**
+ * A prefix trie over a snapshot of the route list, keyed by HTTP method and by the literal leading segments of each
+ * route path.
+ * <p>
+ * The index never decides which route matches: it only narrows the list down to the routes that could possibly match a
+ * given method and path, kept in declaration order. The router still calls {@link Route#matches} on each candidate, so
+ * the first-match semantics of the routes file are preserved.
+ */
+class RouteIndex {
+
+    /**
+     * Characters that a jregex pattern matches literally. A path segment made only of these can be compared with
+     * <code>String.equals</code> instead of running the route pattern.
+     */
+    private static final String LITERAL_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_~%:@,;=!'&";
+
+    private static final int[] NONE = new int[0];
+
+    /**
+     * The routes this index was built from.
+     */
+    final Route[] routes;
+
+    /**
+     * Modification count of the route list at the time the snapshot was taken.
+     */
+    final int version;
+
+    private final Map<String, MethodTree> trees = new HashMap<>();
+
+    private RouteIndex(Route[] routes, int version) {
+        this.routes = routes;
+        this.version = version;
+    }
+
+    static RouteIndex build(Route[] routes, int version) {
+        RouteIndex index = new RouteIndex(routes, version);
+        for (int position = 0; position < routes.length; position++) {
+            Route route = routes[position];
+            String method = route.method == null ? "*" : route.method.toUpperCase(Locale.ENGLISH);
+            MethodTree tree = index.trees.get(method);
+            if (tree == null) {
+                tree = new MethodTree();
+                index.trees.put(method, tree);
+            }
+            tree.add(route, position);
+        }
+        for (MethodTree tree : index.trees.values()) {
+            tree.freeze();
+        }
+        return index;
+    }
+
+    /**
+     * Returns the routes that may match the given request, in declaration order.
+     *
+     * @param method The HTTP method, or null to consider every route
+     * @param path   The request path
+     */
+    List<Route> candidates(String method, String path) {
+        if (path.equals(Play.ctxPath)) {
+            path = path + "/";
+        }
+        int[] found = NONE;
+        if (method == null) {
+            for (MethodTree tree : trees.values()) {
+                found = tree.collect(path, found);
+            }
+        } else {
+            String key = method.toUpperCase(Locale.ENGLISH);
+            found = collect(key, path, found);
+            if (!key.equals("*")) {
+                found = collect("*", path, found);
+            }
+            if (key.equals("HEAD")) {
+                found = collect("GET", path, found);
+            }
+        }
+        if (found.length == 0) {
+            return Collections.emptyList();
+        }
+        // found may be one of the node arrays, never sort it in place
+        found = found.clone();
+        Arrays.sort(found);
+        List<Route> candidates = new ArrayList<>(found.length);
+        for (int position : found) {
+            candidates.add(routes[position]);
+        }
+        return candidates;
+    }
+
+    private int[] collect(String method, String path, int[] found) {
+        MethodTree tree = trees.get(method);
+        return tree == null ? found : tree.collect(path, found);
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        if (a.length == 0) {
+            return b;
+        }
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    /**
+     * Splits the literal leading segments off a route path. A segment only counts when it is followed by a mandatory
+     * '/', so that every path matched by the route necessarily starts with those segments.
+     */
+    static List<String> literalPrefix(String path) {
+        List<String> segments = new ArrayList<>();
+        if (!path.startsWith("/") || path.indexOf('|') > -1) {
+            // An alternation can discard the prefix altogether
+            return segments;
+        }
+        int start = 1;
+        int slash;
+        while ((slash = path.indexOf('/', start)) > -1) {
+            String segment = path.substring(start, slash);
+            if (segment.isEmpty() || !isLiteral(segment) || isQuantifier(path, slash + 1)) {
+                break;
+            }
+            segments.add(segment);
+            start = slash + 1;
+        }
+        return segments;
+    }
+
+    /**
+     * @return true if the whole route path is a plain string, in which case the route matches exactly that path
+     */
+    static boolean isLiteralPath(String path) {
+        if (!path.startsWith("/")) {
+            return false;
+        }
+        int start = 1;
+        int slash;
+        while ((slash = path.indexOf('/', start)) > -1) {
+            if (!isLiteral(path.substring(start, slash))) {
+                return false;
+            }
+            start = slash + 1;
+        }
+        return isLiteral(path.substring(start));
+    }
+
+    private static boolean isLiteral(String segment) {
+        for (int i = 0; i < segment.length(); i++) {
+            if (LITERAL_CHARS.indexOf(segment.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isQuantifier(String path, int index) {
+        if (index >= path.length()) {
+            return false;
+        }
+        char c = path.charAt(index);
+        return c == '?' || c == '*' || c == '+' || (c == '{' && index + 1 < path.length() && Character.isDigit(path.charAt(index + 1)));
+    }
+
+    /**
+     * The routes declared for a single HTTP method.
+     */
+    private static final class MethodTree {
+
+        private final Node root = new Node();
+        private final Map<String, List<Integer>> exactBuilder = new HashMap<>();
+        private final Map<String, int[]> exact = new HashMap<>();
+
+        void add(Route route, int position) {
+            if (route.pattern == null) {
+                // Route that failed to compute: keep it visible so that it fails the same way it always has
+                root.add(position);
+                return;
+            }
+            String path = route.path;
+            boolean exactRoute = route.staticDir == null || route.staticFile;
+            if (exactRoute && isLiteralPath(path)) {
+                addExact(path, position);
+                return;
+            }
+            if (exactRoute && path.endsWith("/?") && path.length() > 2 && isLiteralPath(path.substring(0, path.length() - 2))) {
+                // Very common optional trailing slash
+                String base = path.substring(0, path.length() - 2);
+                addExact(base, position);
+                addExact(base + "/", position);
+                return;
+            }
+            Node node = root;
+            for (String segment : literalPrefix(path)) {
+                node = node.child(segment);
+            }
+            node.add(position);
+        }
+
+        private void addExact(String path, int position) {
+            List<Integer> positions = exactBuilder.get(path);
+            if (positions == null) {
+                positions = new ArrayList<>(1);
+                exactBuilder.put(path, positions);
+            }
+            positions.add(position);
+        }
+
+        void freeze() {
+            for (Map.Entry<String, List<Integer>> entry : exactBuilder.entrySet()) {
+                exact.put(entry.getKey(), toArray(entry.getValue()));
+            }
+            exactBuilder.clear();
+            root.freeze();
+        }
+
+        int[] collect(String path, int[] found) {
+            int[] exactPositions = exact.get(path);
+            if (exactPositions != null) {
+                found = concat(found, exactPositions);
+            }
+            Node node = root;
+            found = concat(found, node.positions);
+            if (!path.startsWith("/")) {
+                return found;
+            }
+            int start = 1;
+            int slash;
+            while (node.children != null && (slash = path.indexOf('/', start)) > -1) {
+                node = node.children.get(path.substring(start, slash));
+                if (node == null) {
+                    break;
+                }
+                found = concat(found, node.positions);
+                start = slash + 1;
+            }
+            return found;
+        }
+    }
+
+    private static final class Node {
+
+        private Map<String, Node> children;
+        private List<Integer> builder = new ArrayList<>(1);
+        private int[] positions = NONE;
+
+        Node child(String segment) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            Node child = children.get(segment);
+            if (child == null) {
+                child = new Node();
+                children.put(segment, child);
+            }
+            return child;
+        }
+
+        void add(int position) {
+            builder.add(position);
+        }
+
+        void freeze() {
+            positions = toArray(builder);
+            builder = null;
+            if (children != null) {
+                for (Node child : children.values()) {
+                    child.freeze();
+                }
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        if (list.isEmpty()) {
+            return NONE;
+        }
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
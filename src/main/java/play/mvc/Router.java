@@ -6,11 +6,16 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 import org.apache.commons.lang.StringUtils;
 
@@ -53,7 +58,7 @@ public class Router {
     public static void load(String prefix) {
         //清空路由
         routes.clear();
-        actionRoutesCache.clear();
+        actionRoutes = new ActionRoutes(routesVersion());
         parse(Play.routes, prefix);
         lastLoading = System.currentTimeMillis();
         // Plugins
@@ -267,10 +272,43 @@ public class Router {
     /**
      * All the loaded routes.
      */
-    public static List<Route> routes = new CopyOnWriteArrayList<>();
+    public static List<Route> routes = new RouteList();
+
+    /**
+     * Trie over the routes, rebuilt lazily whenever the route list changes.
+     */
+    private static volatile RouteIndex routeIndex;
+
+    /**
+     * Returns the routes that may match the given method and path, in declaration order. Only these need to be
+     * checked with {@link Route#matches}.
+     */
+    static List<Route> candidateRoutes(String method, String path) {
+        List<Route> current = routes;
+        if (!(current instanceof RouteList)) {
+            // The route list was replaced by something we cannot track
+            return current;
+        }
+        RouteList routeList = (RouteList) current;
+        RouteIndex index = routeIndex;
+        if (index == null || index.version != routeList.version()) {
+            index = buildRouteIndex(routeList);
+        }
+        return index.candidates(method, path);
+    }
+
+    private static synchronized RouteIndex buildRouteIndex(RouteList routeList) {
+        RouteIndex index = routeIndex;
+        int version = routeList.version();
+        if (index == null || index.version != version) {
+            index = RouteIndex.build(routeList.toArray(new Route[0]), version);
+            routeIndex = index;
+        }
+        return index;
+    }
 
     public static void routeOnlyStatic(Http.Request request) {
-        for (Route route : routes) {
+        for (Route route : candidateRoutes(request.method, request.path)) {
             try {
                 if (route.matches(request.method, request.path, request.format, request.domain) != null) {
                     break;
@@ -301,7 +339,7 @@ public class Router {
                 request.method = matcher.group("method");
             }
         }
-        for (Route route : routes) {
+        for (Route route : candidateRoutes(request.method, request.path)) {
             Map<String, String> args = route.matches(request.method, request.path, request.format, request.domain);
             if (args != null) {
                 request.routeArgs = args;
@@ -342,7 +380,7 @@ public class Router {
     }
 
     public static Map<String, String> route(String method, String path, String headers, String host) {
-        for (Route route : routes) {
+        for (Route route : candidateRoutes(method, path)) {
             Map<String, String> args = route.matches(method, path, headers, host);
             if (args != null) {
                 args.put("action", route.action);
@@ -515,11 +553,8 @@ public class Router {
             }
             if (allRequiredArgsAreHere) {
                 StringBuilder queryString = new StringBuilder();
-                String path = route.path;
-                String host = route.host;
-                if (path.endsWith("/?")) {
-                    path = path.substring(0, path.length() - 2);
-                }
+                Map<String, String> pathValues = new HashMap<>(inPathArgs.size());
+                Map<String, String> hostValues = new HashMap<>(inPathArgs.size());
                 for (Map.Entry<String, Object> entry : args.entrySet()) {
                     String key = entry.getKey();
                     Object value = entry.getValue();
@@ -527,22 +562,11 @@ public class Router {
                         if (List.class.isAssignableFrom(value.getClass())) {
                             @SuppressWarnings("unchecked")
                             List<Object> vals = (List<Object>) value;
-                            path = path.replaceAll("\\{(<[^>]+>)?" + key + "\\}", vals.get(0).toString()).replace("$", "\\$");
+                            pathValues.put(key, vals.get(0).toString());
                         } else {
-                            try {
-                                path = path.replaceAll("\\{(<[^>]+>)?" + key + "\\}", URLEncoder.encode(value.toString(), encoding)
-                                        .replace("$", "\\$").replace("%3A", ":").replace("%40", "@").replace("+", "%20"));
-                            } catch (UnsupportedEncodingException e) {
-                                path = path.replaceAll("\\{(<[^>]+>)?" + key + "\\}",
-                                        value.toString().replace("$", "\\$").replace("%3A", ":").replace("%40", "@").replace("+", "%20"));
-                            }
-                            try {
-                                host = host.replaceAll("\\{(<[^>]+>)?" + key + "\\}", URLEncoder.encode(value.toString(), encoding)
-                                        .replace("$", "\\$").replace("%3A", ":").replace("%40", "@").replace("+", "%20"));
-                            } catch (UnsupportedEncodingException e) {
-                                host = host.replaceAll("\\{(<[^>]+>)?" + key + "\\}",
-                                        value.toString().replace("$", "\\$").replace("%3A", ":").replace("%40", "@").replace("+", "%20"));
-                            }
+                            String encoded = encodePathArg(value.toString(), encoding);
+                            pathValues.put(key, encoded);
+                            hostValues.put(key, encoded);
                         }
                     } else if (route.staticArgs.containsKey(key)) {
                         // Do nothing -> The key is static
@@ -592,6 +616,11 @@ public class Router {
                 if (qs.endsWith("&")) {
                     qs = qs.substring(0, qs.length() - 1);
                 }
+                String path = route.pathTemplate().fill(pathValues);
+                String host = route.host;
+                if (!hostValues.isEmpty() && host.indexOf('{') > -1) {
+                    host = UrlTemplate.parse(host).fill(hostValues);
+                }
                 ActionDefinition actionDefinition = new ActionDefinition();
                 actionDefinition.url = qs.length() == 0 ? path : path + "?" + qs;
                 actionDefinition.method = route.method == null || route.method.equals("*") ? "GET" : route.method.toUpperCase();
@@ -609,17 +638,50 @@ public class Router {
         throw new NoRouteFoundException(action, args);
     }
 
-    private static final Map<String, List<ActionRoute>> actionRoutesCache = new ConcurrentHashMap<>();
+    private static String encodePathArg(String value, String encoding) {
+        String encoded;
+        try {
+            encoded = URLEncoder.encode(value, encoding);
+        } catch (UnsupportedEncodingException e) {
+            encoded = value;
+        }
+        return encoded.replace("%3A", ":").replace("%40", "@").replace("+", "%20");
+    }
+
+    /**
+     * Routes matching each action, dropped as a whole when the route list changes.
+     */
+    private static volatile ActionRoutes actionRoutes = new ActionRoutes(-1);
+
+    private static int routesVersion() {
+        List<Route> current = routes;
+        return current instanceof RouteList ? ((RouteList) current).version() : -1;
+    }
 
     private static List<ActionRoute> getActionRoutes(String action) {
-        List<ActionRoute> matchingRoutes = actionRoutesCache.get(action);
+        ActionRoutes cache = actionRoutes;
+        int version = routesVersion();
+        if (cache.version != version) {
+            cache = new ActionRoutes(version);
+            actionRoutes = cache;
+        }
+        List<ActionRoute> matchingRoutes = cache.byAction.get(action);
         if (matchingRoutes == null) {
             matchingRoutes = findActionRoutes(action);
-            actionRoutesCache.put(action, matchingRoutes);
+            cache.byAction.put(action, matchingRoutes);
         }
         return matchingRoutes;
     }
 
+    private static final class ActionRoutes {
+        private final int version;
+        private final Map<String, List<ActionRoute>> byAction = new ConcurrentHashMap<>();
+
+        private ActionRoutes(int version) {
+            this.version = version;
+        }
+    }
+
     private static List<ActionRoute> findActionRoutes(String action) {
         List<ActionRoute> matchingRoutes = new ArrayList<>(2);
         for (Router.Route route : routes) {
@@ -761,6 +823,21 @@ public class Router {
         static Pattern customRegexPattern = new Pattern("\\{([a-zA-Z_][a-zA-Z_0-9]*)\\}");
         static Pattern argsPattern = new Pattern("\\{<([^>]+)>([a-zA-Z_0-9]+)\\}");
         static Pattern paramPattern = new Pattern("([a-zA-Z_0-9]+):'(.*)'");
+        private volatile UrlTemplate pathTemplate;
+
+        /**
+         * @return the path split around its arguments, used to build reverse routed URLs
+         */
+        UrlTemplate pathTemplate() {
+            UrlTemplate template = pathTemplate;
+            if (template == null || template.source != path) {
+                String p = path;
+                template = UrlTemplate.parse(p.endsWith("/?") ? p.substring(0, p.length() - 2) : p);
+                template.source = p;
+                pathTemplate = template;
+            }
+            return template;
+        }
 
         /**
          * 计算？
@@ -1004,4 +1081,176 @@ public class Router {
             return method + " " + path + " -> " + action;
         }
     }
+
+    /**
+     * A route path or host split into literal parts and argument placeholders (<code>{name}</code> or
+     * <code>{&lt;regex&gt;name}</code>).
+     */
+    static final class UrlTemplate {
+
+        /**
+         * The string the template was parsed from.
+         */
+        String source;
+        private final String[] literals;
+        private final String[] names;
+        private final String[] placeholders;
+
+        private UrlTemplate(List<String> literals, List<String> names, List<String> placeholders) {
+            this.literals = literals.toArray(new String[literals.size()]);
+            this.names = names.toArray(new String[names.size()]);
+            this.placeholders = placeholders.toArray(new String[placeholders.size()]);
+        }
+
+        static UrlTemplate parse(String s) {
+            List<String> literals = new ArrayList<>(4);
+            List<String> names = new ArrayList<>(3);
+            List<String> placeholders = new ArrayList<>(3);
+            int literalStart = 0;
+            int i = s.indexOf('{');
+            while (i > -1) {
+                int nameStart = i + 1;
+                if (nameStart < s.length() && s.charAt(nameStart) == '<') {
+                    int close = s.indexOf('>', nameStart);
+                    nameStart = close < 0 ? s.length() : close + 1;
+                }
+                int end = nameStart;
+                while (end < s.length() && isNameChar(s.charAt(end))) {
+                    end++;
+                }
+                if (end > nameStart && end < s.length() && s.charAt(end) == '}') {
+                    literals.add(s.substring(literalStart, i));
+                    names.add(s.substring(nameStart, end));
+                    placeholders.add(s.substring(i, end + 1));
+                    literalStart = end + 1;
+                    i = s.indexOf('{', literalStart);
+                } else {
+                    i = s.indexOf('{', i + 1);
+                }
+            }
+            literals.add(s.substring(literalStart));
+            UrlTemplate template = new UrlTemplate(literals, names, placeholders);
+            template.source = s;
+            return template;
+        }
+
+        private static boolean isNameChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        }
+
+        /**
+         * Replaces the placeholders by the given values. Placeholders without a value are kept as they are.
+         */
+        String fill(Map<String, String> values) {
+            if (names.length == 0) {
+                return literals[0];
+            }
+            StringBuilder result = new StringBuilder(source.length() + 16);
+            for (int i = 0; i < names.length; i++) {
+                result.append(literals[i]);
+                String value = values.get(names[i]);
+                result.append(value == null ? placeholders[i] : value);
+            }
+            return result.append(literals[names.length]).toString();
+        }
+    }
+
+    /**
+     * The route list. It counts its own modifications so that the route index knows when to rebuild itself.
+     * Modifications made through a {@link #subList(int, int)} view are not tracked.
+     */
+    static final class RouteList extends CopyOnWriteArrayList<Route> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicInteger version = new AtomicInteger();
+
+        int version() {
+            return version.get();
+        }
+
+        private <T> T modified(T result) {
+            version.incrementAndGet();
+            return result;
+        }
+
+        @Override
+        public boolean add(Route route) {
+            return modified(super.add(route));
+        }
+
+        @Override
+        public void add(int index, Route route) {
+            super.add(index, route);
+            modified(null);
+        }
+
+        @Override
+        public Route set(int index, Route route) {
+            return modified(super.set(index, route));
+        }
+
+        @Override
+        public Route remove(int index) {
+            return modified(super.remove(index));
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return modified(super.remove(o));
+        }
+
+        @Override
+        public boolean addIfAbsent(Route route) {
+            return modified(super.addIfAbsent(route));
+        }
+
+        @Override
+        public int addAllAbsent(Collection<? extends Route> c) {
+            return modified(super.addAllAbsent(c));
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends Route> c) {
+            return modified(super.addAll(c));
+        }
+
+        @Override
+        public boolean addAll(int index, Collection<? extends Route> c) {
+            return modified(super.addAll(index, c));
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            return modified(super.removeAll(c));
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            return modified(super.retainAll(c));
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super Route> filter) {
+            return modified(super.removeIf(filter));
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<Route> operator) {
+            super.replaceAll(operator);
+            modified(null);
+        }
+
+        @Override
+        public void sort(Comparator<? super Route> c) {
+            super.sort(c);
+            modified(null);
+        }
+
+        @Override
+        public void clear() {
+            super.clear();
+            modified(null);
+        }
+    }
 }
@@ -175,7 +175,7 @@ public class Scope {
                     if (firstDashIndex > -1) {
                         String sign = value.substring(0, firstDashIndex);
                         String data = value.substring(firstDashIndex + 1);
-                        if (CookieDataCodec.safeEquals(sign, Crypto.sign(data, Play.secretKey.getBytes()))) {
+                        if (Crypto.verifyCookie(data, sign)) {
                             CookieDataCodec.decode(session.data, data);
                         }
                     }
@@ -259,7 +259,7 @@ public class Scope {
             }
             try {
                 String sessionData = CookieDataCodec.encode(data);
-                String sign = Crypto.sign(sessionData, Play.secretKey.getBytes());
+                String sign = Crypto.signCookie(sessionData);
                 if (COOKIE_EXPIRE == null) {
                     Http.Response.current().setCookie(COOKIE_PREFIX + "_SESSION", sign + "-" + sessionData, null, "/", null, COOKIE_SECURE,
                             SESSION_HTTPONLY);
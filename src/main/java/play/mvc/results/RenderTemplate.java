@@ -1,22 +1,30 @@
 package play.mvc.results;
 
+import play.Play;
+import play.exceptions.PlayException;
 import play.exceptions.UnexpectedException;
 import play.libs.MimeTypes;
 import play.mvc.Http.Request;
 import play.mvc.Http.Response;
 import play.templates.Template;
 
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Map;
 
 /**
  * 200 OK with a template rendering
+ * <p>
+ * With <code>play.template.streaming=true</code>, the template is rendered when the result is applied, straight into
+ * the response body, instead of being rendered into a String first.
  */
 public class RenderTemplate extends Result {
 
     private final String name;
-    private final String content;
+    private String content;
     private final Map<String, Object> arguments;
-    private final long renderTime;
+    private long renderTime;
+    private transient Template template;
 
     public RenderTemplate(Template template, Map<String, Object> arguments) {
         if (arguments.containsKey("out")) {
@@ -24,27 +32,62 @@ public class RenderTemplate extends Result {
         }
         this.name = template.name;
         this.arguments = arguments;
-        long start = System.currentTimeMillis();
-        this.content = template.render(arguments);
-        this.renderTime = System.currentTimeMillis() - start;
+        if (isStreaming()) {
+            this.template = template;
+        } else {
+            long start = System.currentTimeMillis();
+            this.content = template.render(arguments);
+            this.renderTime = System.currentTimeMillis() - start;
+        }
+    }
+
+    static boolean isStreaming() {
+        return Play.configuration != null && "true".equals(Play.configuration.getProperty("play.template.streaming", "false"));
     }
 
     @Override
     public void apply(Request request, Response response) {
         try {
             String contentType = MimeTypes.getContentType(name, "text/plain");
+            if (content == null && template != null) {
+                // Set before anything is written, the response may be committed while rendering
+                setContentTypeIfNotSet(response, contentType);
+                long start = System.currentTimeMillis();
+                Writer writer = new OutputStreamWriter(response.out, getEncoding());
+                template.render(arguments, writer);
+                writer.flush();
+                renderTime = System.currentTimeMillis() - start;
+                return;
+            }
             response.out.write(content.getBytes(getEncoding()));
             setContentTypeIfNotSet(response, contentType);
+        } catch (PlayException e) {
+            throw e;
         } catch (Exception e) {
             throw new UnexpectedException(e);
         }
     }
 
+    /**
+     * @return true if the template is still to be rendered, into the response body, when the result is applied
+     */
+    public boolean isStreamed() {
+        return content == null && template != null;
+    }
+
     public String getName() {
         return name;
     }
 
+    /**
+     * @return the rendered template. A streamed template is rendered into a String on demand, e.g. before being cached.
+     */
     public String getContent() {
+        if (content == null && template != null) {
+            long start = System.currentTimeMillis();
+            content = template.render(arguments);
+            renderTime = System.currentTimeMillis() - start;
+        }
         return content;
     }
 
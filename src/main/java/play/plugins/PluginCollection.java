@@ -14,6 +14,7 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -97,6 +98,39 @@ public class PluginCollection {
      */
     protected List<PlayPlugin> enabledPluginsWithFilters_readOnlyCopy = createReadonlyCopy(enabledPluginsWithFilters);
 
+    /**
+     * Dispatch tables of the hooks called for each request
+     */
+    private final List<Hook> hooks = new ArrayList<>();
+
+    private final Hook invocationFinallyHook = new Hook("invocationFinally");
+    private final Hook beforeInvocationHook = new Hook("beforeInvocation");
+    private final Hook afterInvocationHook = new Hook("afterInvocation");
+    private final Hook onInvocationSuccessHook = new Hook("onInvocationSuccess");
+    private final Hook onInvocationExceptionHook = new Hook("onInvocationException", Throwable.class);
+    private final Hook beforeDetectingChangesHook = new Hook("beforeDetectingChanges");
+    private final Hook detectChangeHook = new Hook("detectChange");
+    private final Hook onEventHook = new Hook("onEvent", String.class, Object.class);
+    // The default implementations of bind and bindBean call the deprecated ones
+    private final Hook bindHook = new Hook("bind", RootParamNode.class, String.class, Class.class, Type.class, Annotation[].class)
+            .or(String.class, Class.class, Type.class, Annotation[].class, Map.class);
+    private final Hook bindBeanHook = new Hook("bindBean", RootParamNode.class, String.class, Object.class)
+            .or("bind", String.class, Object.class, Map.class);
+    private final Hook unBindHook = new Hook("unBind", Object.class, String.class);
+    private final Hook willBeValidatedHook = new Hook("willBeValidated", Object.class);
+    private final Hook modelFactoryHook = new Hook("modelFactory", Class.class);
+    private final Hook getMessageHook = new Hook("getMessage", String.class, Object.class, Object[].class);
+    private final Hook beforeActionInvocationHook = new Hook("beforeActionInvocation", Method.class);
+    private final Hook onActionInvocationResultHook = new Hook("onActionInvocationResult", Result.class);
+    private final Hook afterActionInvocationHook = new Hook("afterActionInvocation");
+    private final Hook onActionInvocationFinallyHook = new Hook("onActionInvocationFinally");
+    private final Hook routeRequestHook = new Hook("routeRequest", Http.Request.class);
+    private final Hook onRequestRoutingHook = new Hook("onRequestRouting", Router.Route.class);
+    private final Hook rawInvocationHook = new Hook("rawInvocation", Http.Request.class, Http.Response.class);
+    private final Hook serveStaticHook = new Hook("serveStatic", VirtualFile.class, Http.Request.class, Http.Response.class);
+    private final Hook overrideTemplateSourceHook = new Hook("overrideTemplateSource", BaseTemplate.class, String.class);
+    private final Hook loadTemplateHook = new Hook("loadTemplate", VirtualFile.class);
+
     /**
      * Using readonly list to crash if someone tries to modify the copy.
      *
@@ -160,6 +194,63 @@ public class PluginCollection {
         }
     }
 
+    /**
+     * The enabled plugins overriding one of the methods of {@link PlayPlugin}, so that calling a hook skips all the
+     * plugins inheriting its no-op. Built again whenever the list of enabled plugins changes.
+     */
+    private class Hook {
+        private final String name;
+        private final List<String> methodNames = new ArrayList<>();
+        private final List<Class<?>[]> parameterTypes = new ArrayList<>();
+        private volatile F.Tuple<List<PlayPlugin>, List<PlayPlugin>> table = new F.Tuple<>(null, null);
+
+        private Hook(String name, Class<?>... parameterTypes) {
+            this.name = name;
+            or(name, parameterTypes);
+            hooks.add(this);
+        }
+
+        private Hook or(Class<?>... parameterTypes) {
+            return or(name, parameterTypes);
+        }
+
+        private Hook or(String methodName, Class<?>... parameterTypes) {
+            this.methodNames.add(methodName);
+            this.parameterTypes.add(parameterTypes);
+            return this;
+        }
+
+        private List<PlayPlugin> plugins() {
+            List<PlayPlugin> enabled = getEnabledPlugins();
+            F.Tuple<List<PlayPlugin>, List<PlayPlugin>> table = this.table;
+            if (table._1 != enabled) {
+                List<PlayPlugin> plugins = new ArrayList<>();
+                for (PlayPlugin plugin : enabled) {
+                    if (overrides(plugin)) {
+                        plugins.add(plugin);
+                    }
+                }
+                table = new F.Tuple<>(enabled, createReadonlyCopy(plugins));
+                this.table = table;
+            }
+            return table._2;
+        }
+
+        private boolean overrides(PlayPlugin plugin) {
+            for (Class<?> c = plugin.getClass(); c != null && c != PlayPlugin.class; c = c.getSuperclass()) {
+                for (int i = 0; i < methodNames.size(); i++) {
+                    try {
+                        c.getDeclaredMethod(methodNames.get(i), parameterTypes.get(i));
+                        return true;
+                    } catch (NoSuchMethodException e) {
+                        // Not in this class
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
     /**
      * Enable found plugins
      */
@@ -445,6 +536,26 @@ public class PluginCollection {
     @SuppressWarnings({"deprecation"})
     public void updatePlayPluginsList() {
         Play.plugins = Collections.unmodifiableList(getEnabledPlugins());
+        for (Hook hook : hooks) {
+            List<PlayPlugin> plugins = hook.plugins();
+            if (Logger.isTraceEnabled()) {
+                Logger.trace("%s dispatched to %s of %s plugins", hook.name, plugins.size(), getEnabledPlugins().size());
+            }
+        }
+    }
+
+    /**
+     * Returns the enabled plugins called by each of the hooks invoked per request, that is those overriding the
+     * hook. The other enabled plugins are skipped.
+     *
+     * @return Plugins by hook name
+     */
+    public Map<String, List<PlayPlugin>> getPluginsByHook() {
+        Map<String, List<PlayPlugin>> pluginsByHook = new LinkedHashMap<>();
+        for (Hook hook : hooks) {
+            pluginsByHook.put(hook.name, hook.plugins());
+        }
+        return pluginsByHook;
     }
 
     /**
@@ -558,31 +669,31 @@ public class PluginCollection {
     }
 
     public void invocationFinally() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : invocationFinallyHook.plugins()) {
             plugin.invocationFinally();
         }
     }
 
     public void beforeInvocation() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : beforeInvocationHook.plugins()) {
             plugin.beforeInvocation();
         }
     }
 
     public void afterInvocation() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : afterInvocationHook.plugins()) {
             plugin.afterInvocation();
         }
     }
 
     public void onInvocationSuccess() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : onInvocationSuccessHook.plugins()) {
             plugin.onInvocationSuccess();
         }
     }
 
     public void onInvocationException(Throwable e) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : onInvocationExceptionHook.plugins()) {
             try {
                 plugin.onInvocationException(e);
             } catch (Throwable ex) {
@@ -592,13 +703,13 @@ public class PluginCollection {
     }
 
     public void beforeDetectingChanges() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : beforeDetectingChangesHook.plugins()) {
             plugin.beforeDetectingChanges();
         }
     }
 
     public void detectChange() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : detectChangeHook.plugins()) {
             plugin.detectChange();
         }
     }
@@ -643,7 +754,7 @@ public class PluginCollection {
     }
 
     public void onEvent(String message, Object context) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : onEventHook.plugins()) {
             plugin.onEvent(message, context);
         }
     }
@@ -679,7 +790,7 @@ public class PluginCollection {
     }
 
     public Object bind(RootParamNode rootParamNode, String name, Class<?> clazz, Type type, Annotation[] annotations) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : bindHook.plugins()) {
             Object result = plugin.bind(rootParamNode, name, clazz, type, annotations);
             if (result != null) {
                 return result;
@@ -689,7 +800,7 @@ public class PluginCollection {
     }
 
     public Object bindBean(RootParamNode rootParamNode, String name, Object bean) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : bindBeanHook.plugins()) {
             Object result = plugin.bindBean(rootParamNode, name, bean);
             if (result != null) {
                 return result;
@@ -699,7 +810,7 @@ public class PluginCollection {
     }
 
     public Map<String, Object> unBind(Object src, String name) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : unBindHook.plugins()) {
             Map<String, Object> r = plugin.unBind(src, name);
             if (r != null) {
                 return r;
@@ -709,7 +820,7 @@ public class PluginCollection {
     }
 
     public Object willBeValidated(Object value) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : willBeValidatedHook.plugins()) {
             Object newValue = plugin.willBeValidated(value);
             if (newValue != null) {
                 return newValue;
@@ -719,7 +830,7 @@ public class PluginCollection {
     }
 
     public Model.Factory modelFactory(Class<? extends Model> modelClass) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : modelFactoryHook.plugins()) {
             Model.Factory factory = plugin.modelFactory(modelClass);
             if (factory != null) {
                 return factory;
@@ -729,7 +840,7 @@ public class PluginCollection {
     }
 
     public String getMessage(String locale, Object key, Object... args) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : getMessageHook.plugins()) {
             String message = plugin.getMessage(locale, key, args);
             if (message != null) {
                 return message;
@@ -739,37 +850,37 @@ public class PluginCollection {
     }
 
     public void beforeActionInvocation(Method actionMethod) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : beforeActionInvocationHook.plugins()) {
             plugin.beforeActionInvocation(actionMethod);
         }
     }
 
     public void onActionInvocationResult(Result result) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : onActionInvocationResultHook.plugins()) {
             plugin.onActionInvocationResult(result);
         }
     }
 
     public void afterActionInvocation() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : afterActionInvocationHook.plugins()) {
             plugin.afterActionInvocation();
         }
     }
 
     public void onActionInvocationFinally() {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : onActionInvocationFinallyHook.plugins()) {
             plugin.onActionInvocationFinally();
         }
     }
 
     public void routeRequest(Http.Request request) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : routeRequestHook.plugins()) {
             plugin.routeRequest(request);
         }
     }
 
     public void onRequestRouting(Router.Route route) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : onRequestRoutingHook.plugins()) {
             plugin.onRequestRouting(route);
         }
     }
@@ -781,7 +892,7 @@ public class PluginCollection {
     }
 
     public boolean rawInvocation(Http.Request request, Http.Response response) throws Exception {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : rawInvocationHook.plugins()) {
             if (plugin.rawInvocation(request, response)) {
                 return true;
             }
@@ -790,7 +901,7 @@ public class PluginCollection {
     }
 
     public boolean serveStatic(VirtualFile file, Http.Request request, Http.Response response) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : serveStaticHook.plugins()) {
             if (plugin.serveStatic(file, request, response)) {
                 return true;
             }
@@ -807,7 +918,7 @@ public class PluginCollection {
     }
 
     public String overrideTemplateSource(BaseTemplate template, String source) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : overrideTemplateSourceHook.plugins()) {
             String newSource = plugin.overrideTemplateSource(template, source);
             if (newSource != null) {
                 source = newSource;
@@ -817,7 +928,7 @@ public class PluginCollection {
     }
 
     public Template loadTemplate(VirtualFile file) {
-        for (PlayPlugin plugin : getEnabledPlugins()) {
+        for (PlayPlugin plugin : loadTemplateHook.plugins()) {
             Template pluginProvided = plugin.loadTemplate(file);
             if (pluginProvided != null) {
                 return pluginProvided;
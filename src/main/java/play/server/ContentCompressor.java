@@ -0,0 +1,53 @@
+package play.server;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.handler.codec.embedder.EncoderEmbedder;
+import org.jboss.netty.handler.codec.http.HttpContentCompressor;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+
+import play.Play;
+import play.libs.MimeTypes;
+
+/**
+ * Gzip/deflate compression of the dynamic responses, enabled with <code>http.compression=true</code>.
+ * <p>
+ * Only complete responses are compressed, when their content is at least <code>http.compression.minSize</code> bytes
+ * (1024 by default) and their type is compressible according to {@link MimeTypes#isCompressible(String)}. Files,
+ * HEAD responses, chunked responses and responses already carrying a Content-Encoding go through untouched.
+ */
+public class ContentCompressor extends HttpContentCompressor {
+
+    private final int minSize;
+
+    public ContentCompressor() {
+        super(Integer.parseInt(Play.configuration.getProperty("http.compression.level", "6")));
+        this.minSize = Integer.parseInt(Play.configuration.getProperty("http.compression.minSize", "1024"));
+    }
+
+    public static boolean isEnabled() {
+        return "true".equals(Play.configuration.getProperty("http.compression", "false"));
+    }
+
+    @Override
+    protected EncoderEmbedder<ChannelBuffer> newContentEncoder(HttpMessage msg, String acceptEncoding) throws Exception {
+        if (!shouldCompress(msg)) {
+            return null;
+        }
+        return super.newContentEncoder(msg, acceptEncoding);
+    }
+
+    boolean shouldCompress(HttpMessage msg) {
+        // Play writes chunked responses already framed, they can't go through the encoder
+        int length = msg.getContent().readableBytes();
+        if (msg.isChunked() || length == 0 || length < minSize) {
+            return false;
+        }
+        // Files and HEAD responses declare the length of a body that is not in the message, whatever minSize is
+        String contentLength = msg.headers().get(HttpHeaders.Names.CONTENT_LENGTH);
+        if (contentLength != null && !contentLength.trim().equals(String.valueOf(length))) {
+            return false;
+        }
+        return MimeTypes.isCompressible(msg.headers().get(HttpHeaders.Names.CONTENT_TYPE));
+    }
+}
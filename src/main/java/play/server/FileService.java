@@ -4,11 +4,15 @@ import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.handler.codec.http.*;
+import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.handler.stream.ChunkedFile;
 import org.jboss.netty.handler.stream.ChunkedInput;
 
 import play.Logger;
+import play.Play;
 import play.exceptions.UnexpectedException;
 import play.libs.MimeTypes;
 import play.mvc.Http.Request;
@@ -18,6 +22,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -28,7 +33,82 @@ import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.CONTENT_TYPE;
 
 public class FileService  {
 
+    /**
+     * Precompressed siblings looked up for a static file, by order of preference.
+     */
+    static final String[][] PRECOMPRESSED = { { "br", ".br" }, { "gzip", ".gz" } };
+
     public static void serve(File localFile, HttpRequest nettyRequest, HttpResponse nettyResponse, ChannelHandlerContext ctx, Request request, Response response, Channel channel) throws FileNotFoundException {
+        serve(localFile, localFile.getName(), nettyRequest, nettyResponse, ctx, request, response, channel);
+    }
+
+    /**
+     * Picks the representation of a static file to send: a precompressed sibling (<em>app.js.br</em>,
+     * <em>app.js.gz</em>) accepted by the client, or the file itself. The Content-Encoding and Vary headers are set
+     * accordingly. Siblings older than the file are ignored. Disabled with <code>http.precompressed=false</code>.
+     *
+     * @return the file to serve
+     */
+    public static File negotiateEncoding(File localFile, HttpRequest nettyRequest, HttpResponse nettyResponse) {
+        if (!"true".equals(Play.configuration.getProperty("http.precompressed", "true"))) {
+            return localFile;
+        }
+        String acceptEncoding = nettyRequest.headers().get(HttpHeaders.Names.ACCEPT_ENCODING);
+        boolean vary = false;
+        for (String[] encoding : PRECOMPRESSED) {
+            File sibling = new File(localFile.getPath() + encoding[1]);
+            if (sibling.isFile() && sibling.lastModified() >= localFile.lastModified()) {
+                vary = true;
+                if (acceptsEncoding(acceptEncoding, encoding[0])) {
+                    nettyResponse.headers().set(HttpHeaders.Names.CONTENT_ENCODING, encoding[0]);
+                    nettyResponse.headers().set(HttpHeaders.Names.VARY, HttpHeaders.Names.ACCEPT_ENCODING);
+                    return sibling;
+                }
+            }
+        }
+        if (vary) {
+            // Caches must not hand the identity representation to clients accepting a compressed one
+            nettyResponse.headers().set(HttpHeaders.Names.VARY, HttpHeaders.Names.ACCEPT_ENCODING);
+        }
+        return localFile;
+    }
+
+    /**
+     * @return true if the Accept-Encoding header allows the given content coding, explicitly or through '*'
+     */
+    static boolean acceptsEncoding(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String name = params[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(coding)) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    /**
+     * Serves a file whose content type is given by another name, e.g. the precompressed sibling of a static file.
+     */
+    public static void serve(File localFile, String fileName, HttpRequest nettyRequest, HttpResponse nettyResponse, ChannelHandlerContext ctx, Request request, Response response, Channel channel) throws FileNotFoundException {
         RandomAccessFile raf = new RandomAccessFile(localFile, "r");
         try {
             long fileLength = raf.length();
@@ -37,7 +117,7 @@ public class FileService  {
             
             if(Logger.isTraceEnabled()) {
                 Logger.trace("keep alive %s", String.valueOf(isKeepAlive));
-                Logger.trace("content type %s", (response.contentType != null ? response.contentType : MimeTypes.getContentType(localFile.getName(), "text/plain")));
+                Logger.trace("content type %s", (response.contentType != null ? response.contentType : MimeTypes.getContentType(fileName, "text/plain")));
             }
             
             if (!nettyResponse.getStatus().equals(HttpResponseStatus.NOT_MODIFIED)) {
@@ -51,7 +131,7 @@ public class FileService  {
             if (response.contentType != null) {
                 nettyResponse.headers().set(CONTENT_TYPE, response.contentType);
             } else {
-                nettyResponse.headers().set(CONTENT_TYPE, (MimeTypes.getContentType(localFile.getName(), "text/plain")));
+                nettyResponse.headers().set(CONTENT_TYPE, (MimeTypes.getContentType(fileName, "text/plain")));
             }
 
             nettyResponse.headers().set(HttpHeaders.Names.ACCEPT_RANGES, HttpHeaders.Values.BYTES);
@@ -60,8 +140,13 @@ public class FileService  {
             ChannelFuture writeFuture = null;
 
             // Write the content.
-            if (!nettyRequest.getMethod().equals(HttpMethod.HEAD)) {
-                ChunkedInput chunkedInput = getChunckedInput(raf, MimeTypes.getContentType(localFile.getName(), "text/plain"), channel, nettyRequest, nettyResponse);
+            if (!nettyRequest.getMethod().equals(HttpMethod.HEAD) && useFileRegion(channel)) {
+                writeFuture = writeFileRegions(raf, MimeTypes.getContentType(fileName, "text/plain"), channel, nettyRequest, nettyResponse);
+                if (writeFuture == null) {
+                    Logger.debug("Try to write on a closed channel[keepAlive:%s]: Remote host may have closed the connection", String.valueOf(isKeepAlive));
+                }
+            } else if (!nettyRequest.getMethod().equals(HttpMethod.HEAD)) {
+                ChunkedInput chunkedInput = getChunckedInput(raf, MimeTypes.getContentType(fileName, "text/plain"), channel, nettyRequest, nettyResponse);
                 if (channel.isOpen()) {
                     channel.write(nettyResponse);
                     writeFuture = channel.write(chunkedInput);
@@ -91,6 +176,52 @@ public class FileService  {
         }
     }
     
+    /**
+     * Whether the file content can be handed to the kernel (sendfile) rather than copied through heap buffers. This
+     * requires the bytes to go to the socket untouched, so it is not possible over SSL. A {@link ContentCompressor}
+     * in the pipeline is fine: it leaves alone a response whose content is empty or does not match its
+     * Content-Length, as sent here, and whatever follows goes through. Can be disabled with
+     * <code>play.netty.sendfile=false</code>.
+     */
+    static boolean useFileRegion(Channel channel) {
+        if (!"true".equals(Play.configuration.getProperty("play.netty.sendfile", "true"))) {
+            return false;
+        }
+        ChannelPipeline pipeline = channel.getPipeline();
+        return pipeline != null && pipeline.get(SslHandler.class) == null;
+    }
+
+    /**
+     * Writes the response followed by the file content as {@link DefaultFileRegion}s, one per requested byte range.
+     * The file is closed once the last region has been transferred.
+     *
+     * @return the future of the last write, or null if the channel is closed
+     */
+    static ChannelFuture writeFileRegions(final RandomAccessFile raf, String contentType, Channel channel, HttpRequest nettyRequest, HttpResponse nettyResponse) throws IOException {
+        ByteRangeInput ranges = null;
+        if (ByteRangeInput.accepts(nettyRequest)) {
+            ranges = new ByteRangeInput(raf, contentType, nettyRequest);
+            ranges.prepareNettyResponse(nettyResponse);
+        }
+        if (!channel.isOpen()) {
+            closeQuietly(raf);
+            return null;
+        }
+        ChannelFuture writeFuture = channel.write(nettyResponse);
+        if (ranges != null) {
+            writeFuture = ranges.writeFileRegions(channel, writeFuture);
+        } else if (raf.length() > 0) {
+            writeFuture = channel.write(new DefaultFileRegion(raf.getChannel(), 0, raf.length()));
+        }
+        writeFuture.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                closeQuietly(raf);
+            }
+        });
+        return writeFuture;
+    }
+
     public static ChunkedInput getChunckedInput(RandomAccessFile raf, String contentType, Channel channel, HttpRequest nettyRequest, HttpResponse nettyResponse) throws IOException {
         if(ByteRangeInput.accepts(nettyRequest)) {
             ByteRangeInput server = new ByteRangeInput(raf, contentType, nettyRequest);
@@ -176,6 +307,25 @@ public class FileService  {
             }
         }
         
+        /**
+         * Writes the ranges as file regions instead of reading them in chunks.
+         *
+         * @return the future of the last write
+         */
+        ChannelFuture writeFileRegions(Channel channel, ChannelFuture writeFuture) {
+            if (unsatisfiable) {
+                return writeFuture;
+            }
+            FileChannel fileChannel = raf.getChannel();
+            for (ByteRange range : byteRanges) {
+                if (range.header.length > 0) {
+                    channel.write(wrappedBuffer(range.header));
+                }
+                writeFuture = channel.write(new DefaultFileRegion(fileChannel, range.start, range.length()));
+            }
+            return writeFuture;
+        }
+
         @Override
         public boolean hasNextChunk() throws Exception {
             if(Logger.isTraceEnabled())
@@ -3,6 +3,9 @@ package play.server;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
 import org.jboss.netty.channel.ChannelHandler;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.handler.codec.http.HttpContentEncoder;
+import org.jboss.netty.handler.codec.http.HttpResponseEncoder;
 import play.Log;
 import play.Play;
 import play.Logger;
@@ -57,6 +60,7 @@ public class HttpServerPipelineFactory implements ChannelPipelineFactory {
         }
 
         if (playHandler != null) {
+            addContentCompressor(pipeline, playHandler.pipelines, "");
             pipeline.addLast("handler", playHandler);
             playHandler.pipelines.put("handler", playHandler);
         }
@@ -64,6 +68,24 @@ public class HttpServerPipelineFactory implements ChannelPipelineFactory {
         return pipeline;
     }
 
+    /**
+     * Adds the {@link ContentCompressor} right after the response encoder, when compression is enabled and the
+     * configured pipeline doesn't compress already.
+     */
+    protected void addContentCompressor(ChannelPipeline pipeline, Map<String, ChannelHandler> handlers, String prefix) {
+        if (!ContentCompressor.isEnabled() || pipeline.get(HttpContentEncoder.class) != null) {
+            return;
+        }
+        ChannelHandlerContext encoder = pipeline.getContext(HttpResponseEncoder.class);
+        if (encoder == null) {
+            Logger.warn("http.compression is enabled but there is no HttpResponseEncoder in the pipeline");
+            return;
+        }
+        ContentCompressor compressor = new ContentCompressor();
+        pipeline.addAfter(encoder.getName(), "ContentCompressor", compressor);
+        handlers.put(prefix + "ContentCompressor", compressor);
+    }
+
     protected String getName(String name) {
         if (name.lastIndexOf(".") > 0)
             return name.substring(name.lastIndexOf(".") + 1);
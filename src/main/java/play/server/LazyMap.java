@@ -0,0 +1,189 @@
+package play.server;
+
+import static org.jboss.netty.handler.codec.http.HttpHeaders.Names.COOKIE;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.cookie.Cookie;
+import org.jboss.netty.handler.codec.http.cookie.ServerCookieDecoder;
+
+import play.mvc.Http;
+
+/**
+ * A map of the request that is only built from the Netty request when it is first used.
+ * <p>
+ * It then behaves as the HashMap it was before, and is serialized as one.
+ */
+abstract class LazyMap<V> extends AbstractMap<String, V> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Map<String, V> map;
+
+    /**
+     * @return the complete map
+     */
+    protected abstract Map<String, V> load();
+
+    final Map<String, V> map() {
+        if (map == null) {
+            map = load();
+        }
+        return map;
+    }
+
+    final boolean loaded() {
+        return map != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return map().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map().containsKey(key);
+    }
+
+    @Override
+    public V put(String key, V value) {
+        return map().put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return map().remove(key);
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return map().entrySet();
+    }
+
+    Object writeReplace() throws ObjectStreamException {
+        return new HashMap<>(map());
+    }
+
+    /**
+     * The request headers, by lower case name. Reading a single header only builds that one.
+     */
+    static final class Headers extends LazyMap<Http.Header> {
+
+        private static final long serialVersionUID = 1L;
+
+        private HttpHeaders source;
+        private Map<String, Http.Header> read;
+
+        Headers(HttpHeaders source) {
+            this.source = source;
+        }
+
+        @Override
+        public Http.Header get(Object key) {
+            if (loaded()) {
+                return super.get(key);
+            }
+            if (!isLowerCase(key)) {
+                return null;
+            }
+            if (read == null) {
+                read = new HashMap<>(8);
+            }
+            Http.Header header = read.get(key);
+            if (header == null) {
+                header = header(source, (String) key);
+                if (header != null) {
+                    read.put(header.name, header);
+                }
+            }
+            return header;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (loaded()) {
+                return super.containsKey(key);
+            }
+            return isLowerCase(key) && source.contains((String) key);
+        }
+
+        @Override
+        protected Map<String, Http.Header> load() {
+            Map<String, Http.Header> headers = new HashMap<>(16);
+            for (String name : source.names()) {
+                String key = name.toLowerCase();
+                Http.Header header = read == null ? null : read.get(key);
+                headers.put(key, header == null ? header(source, key) : header);
+            }
+            source = null;
+            read = null;
+            return headers;
+        }
+
+        private static Http.Header header(HttpHeaders source, String name) {
+            List<String> values = source.getAll(name);
+            if (values.isEmpty()) {
+                return null;
+            }
+            return new Http.Header(name, new ArrayList<>(values));
+        }
+
+        private static boolean isLowerCase(Object key) {
+            if (!(key instanceof String)) {
+                return false;
+            }
+            String name = (String) key;
+            for (int i = 0; i < name.length(); i++) {
+                if (Character.isUpperCase(name.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The request cookies, decoded when one is first read.
+     */
+    static final class Cookies extends LazyMap<Http.Cookie> {
+
+        private static final long serialVersionUID = 1L;
+
+        private String header;
+
+        Cookies(HttpHeaders source) {
+            this.header = source.get(COOKIE);
+        }
+
+        @Override
+        protected Map<String, Http.Cookie> load() {
+            Map<String, Http.Cookie> cookies = new HashMap<>(16);
+            if (header != null) {
+                Set<Cookie> cookieSet = ServerCookieDecoder.STRICT.decode(header);
+                if (cookieSet != null) {
+                    for (Cookie cookie : cookieSet) {
+                        Http.Cookie playCookie = new Http.Cookie();
+                        playCookie.name = cookie.name();
+                        playCookie.path = cookie.path();
+                        playCookie.domain = cookie.domain();
+                        playCookie.secure = cookie.isSecure();
+                        playCookie.value = cookie.value();
+                        playCookie.httpOnly = cookie.isHttpOnly();
+                        cookies.put(playCookie.name, playCookie);
+                    }
+                }
+            }
+            header = null;
+            return cookies;
+        }
+    }
+}
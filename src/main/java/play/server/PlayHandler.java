@@ -31,11 +31,10 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferInputStream;
@@ -50,7 +49,9 @@ import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
 import org.jboss.netty.handler.codec.frame.TooLongFrameException;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
 import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
 import org.jboss.netty.handler.codec.http.HttpChunkAggregator;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpMessage;
@@ -61,7 +62,6 @@ import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.jboss.netty.handler.codec.http.cookie.Cookie;
 import org.jboss.netty.handler.codec.http.cookie.DefaultCookie;
-import org.jboss.netty.handler.codec.http.cookie.ServerCookieDecoder;
 import org.jboss.netty.handler.codec.http.cookie.ServerCookieEncoder;
 import org.jboss.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import org.jboss.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
@@ -88,6 +88,7 @@ import play.libs.F.Action;
 import play.libs.F.Promise;
 import play.libs.MimeTypes;
 import play.mvc.ActionInvoker;
+import play.mvc.AutoETags;
 import play.mvc.Http;
 import play.mvc.Http.Request;
 import play.mvc.Http.Response;
@@ -122,6 +123,15 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
      */
     public Map<String, ChannelHandler> pipelines = new HashMap<>();
 
+    private static final StaticAssetCache staticAssets = new StaticAssetCache();
+
+    /**
+     * Size above which a response body starts being sent before the action has completed, -1 (the default) to always
+     * send complete responses: <code>play.netty.flushThreshold</code>. Once committed, the status and headers can't
+     * change anymore and an error can only close the connection.
+     */
+    private static final int flushThreshold = Integer.parseInt(Play.configuration.getProperty("play.netty.flushThreshold", "-1"));
+
     private WebSocketServerHandshaker handshaker;
 
     static {
@@ -170,7 +180,7 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
                 final Request request = parseRequest(ctx, nettyRequest, messageEvent);
 
                 // Buffered in memory output
-                response.out = new ByteArrayOutputStream();
+                response.out = new ResponseBody(new ResponseFlusher(ctx, request, response, nettyRequest), flushThreshold);
 
                 // Direct output (will be set later)
                 response.direct = null;
@@ -427,16 +437,18 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
             Logger.trace("writeResponse: begin");
         }
 
-        byte[] content = null;
-
         boolean keepAlive = isKeepAlive(nettyRequest);
+        ResponseBody body = response.out instanceof ResponseBody ? (ResponseBody) response.out : null;
+        ChannelBuffer buf;
         if (nettyRequest.getMethod().equals(HttpMethod.HEAD)) {
-            content = new byte[0];
+            buf = ChannelBuffers.EMPTY_BUFFER;
+        } else if (body != null) {
+            // Sent as is, the chunks are shared
+            buf = body.content();
         } else {
-            content = response.out.toByteArray();
+            // The body has been replaced by a plain stream
+            buf = ChannelBuffers.wrappedBuffer(response.out.toByteArray());
         }
-
-        ChannelBuffer buf = ChannelBuffers.copiedBuffer(content);
         nettyResponse.setContent(buf);
 
         if (!nettyResponse.getStatus().equals(HttpResponseStatus.NOT_MODIFIED)) {
@@ -459,18 +471,15 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
             // Close the connection when the whole content is written out.
             f.addListener(ChannelFutureListener.CLOSE);
         }
+        if (body != null) {
+            body.releaseAfter(f);
+        }
         if (Logger.isTraceEnabled()) {
             Logger.trace("writeResponse: end");
         }
     }
 
-    public void copyResponse(ChannelHandlerContext ctx, Request request, Response response, HttpRequest nettyRequest) throws Exception {
-        if (Logger.isTraceEnabled()) {
-            Logger.trace("copyResponse: begin");
-        }
-
-        // Decide whether to close the connection or not.
-
+    private static HttpResponse newNettyResponse(Response response) {
         HttpResponse nettyResponse = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf(response.status));
         if (exposePlayServer) {
             nettyResponse.headers().set(SERVER, signature);
@@ -485,6 +494,74 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
         }
 
         addToResponse(response, nettyResponse);
+        return nettyResponse;
+    }
+
+    /**
+     * Sends the body of a response with chunked transfer encoding, as it is written.
+     */
+    static class ResponseFlusher implements ResponseBody.Flusher {
+
+        private final ChannelHandlerContext ctx;
+        private final Request request;
+        private final Response response;
+        private final HttpRequest nettyRequest;
+
+        ResponseFlusher(ChannelHandlerContext ctx, Request request, Response response, HttpRequest nettyRequest) {
+            this.ctx = ctx;
+            this.request = request;
+            this.response = response;
+            this.nettyRequest = nettyRequest;
+        }
+
+        @Override
+        public boolean commit() {
+            if (nettyRequest.getMethod().equals(HttpMethod.HEAD) || response.direct != null || response.chunked
+                    || response.status == 304 || response.status == 204 || !ctx.getChannel().isOpen()
+                    || nettyRequest.getProtocolVersion().equals(HttpVersion.HTTP_1_0)
+                    || AutoETags.applies(request, response)) {
+                return false;
+            }
+            response.commit();
+            HttpResponse nettyResponse = newNettyResponse(response);
+            nettyResponse.headers().remove(HttpHeaders.Names.CONTENT_LENGTH);
+            nettyResponse.setChunked(true);
+            ctx.getChannel().write(nettyResponse);
+            return true;
+        }
+
+        @Override
+        public ChannelFuture write(ChannelBuffer content, boolean last) {
+            ChannelFuture future = null;
+            if (content.readable()) {
+                future = ctx.getChannel().write(new DefaultHttpChunk(content));
+            }
+            if (last) {
+                future = ctx.getChannel().write(HttpChunk.LAST_CHUNK);
+                if (!isKeepAlive(nettyRequest)) {
+                    future.addListener(ChannelFutureListener.CLOSE);
+                }
+            }
+            return future;
+        }
+    }
+
+    public void copyResponse(ChannelHandlerContext ctx, Request request, Response response, HttpRequest nettyRequest) throws Exception {
+        if (Logger.isTraceEnabled()) {
+            Logger.trace("copyResponse: begin");
+        }
+
+        if (response.out instanceof ResponseBody && ((ResponseBody) response.out).isCommitted()) {
+            // The status and headers are already sent
+            ((ResponseBody) response.out).finish();
+            if (Logger.isTraceEnabled()) {
+                Logger.trace("copyResponse: end");
+            }
+            return;
+        }
+
+        AutoETags.apply(request, response);
+        HttpResponse nettyResponse = newNettyResponse(response);
 
         Object obj = response.direct;
         File file = null;
@@ -549,12 +626,15 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
         }
     }
 
+    private static final Pattern IPV4_WITH_PORT = Pattern.compile("/[0-9]+[.][0-9]+[.][0-9]+[.][0-9]+[:][0-9]+");
+    private static final Pattern LOOPBACK_HOST = Pattern.compile("^127\\.0\\.0\\.1:?[0-9]*$");
+
     static String getRemoteIPAddress(MessageEvent e) {
         String fullAddress = ((InetSocketAddress) e.getRemoteAddress()).getAddress().getHostAddress();
-        if (fullAddress.matches("/[0-9]+[.][0-9]+[.][0-9]+[.][0-9]+[:][0-9]+")) {
+        if (IPV4_WITH_PORT.matcher(fullAddress).matches()) {
             fullAddress = fullAddress.substring(1);
             fullAddress = fullAddress.substring(0, fullAddress.indexOf(":"));
-        } else if (fullAddress.matches(".*[%].*")) {
+        } else if (fullAddress.indexOf('%') >= 0) {
             fullAddress = fullAddress.substring(0, fullAddress.indexOf("%"));
         }
         return fullAddress;
@@ -620,17 +700,17 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
             }
 
         } else {
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            IOUtils.copy(new ChannelBufferInputStream(b), out);
-            byte[] n = out.toByteArray();
-            body = new ByteArrayInputStream(n);
+            // Read straight from the content, which is never changed once received
+            ChannelBuffer content = b.duplicate();
+            content.markReaderIndex();
+            body = new ChannelBufferInputStream(content);
         }
 
         String host = nettyRequest.headers().get(HOST);
         boolean isLoopback = false;
         try {
             isLoopback = ((InetSocketAddress) messageEvent.getRemoteAddress()).getAddress().isLoopbackAddress()
-                    && host.matches("^127\\.0\\.0\\.1:?[0-9]*$");
+                    && LOOPBACK_HOST.matcher(host).matches();
         } catch (Exception e) {
             // ignore it
         }
@@ -678,41 +758,18 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
         return request;
     }
 
+    /**
+     * @return the headers of the request, only built as they are read
+     */
     protected static Map<String, Http.Header> getHeaders(HttpRequest nettyRequest) {
-        Map<String, Http.Header> headers = new HashMap<>(16);
-
-        for (String key : nettyRequest.headers().names()) {
-            Http.Header hd = new Http.Header();
-            hd.name = key.toLowerCase();
-            hd.values = new ArrayList<>();
-            for (String next : nettyRequest.headers().getAll(key)) {
-                hd.values.add(next);
-            }
-            headers.put(hd.name, hd);
-        }
-
-        return headers;
+        return new LazyMap.Headers(nettyRequest.headers());
     }
 
+    /**
+     * @return the cookies of the request, only decoded when one is read
+     */
     protected static Map<String, Http.Cookie> getCookies(HttpRequest nettyRequest) {
-        Map<String, Http.Cookie> cookies = new HashMap<>(16);
-        String value = nettyRequest.headers().get(COOKIE);
-        if (value != null) {
-            Set<Cookie> cookieSet = ServerCookieDecoder.STRICT.decode(value);
-            if (cookieSet != null) {
-                for (Cookie cookie : cookieSet) {
-                    Http.Cookie playCookie = new Http.Cookie();
-                    playCookie.name = cookie.name();
-                    playCookie.path = cookie.path();
-                    playCookie.domain = cookie.domain();
-                    playCookie.secure = cookie.isSecure();
-                    playCookie.value = cookie.value();
-                    playCookie.httpOnly = cookie.isHttpOnly();
-                    cookies.put(playCookie.name, playCookie);
-                }
-            }
-        }
-        return cookies;
+        return new LazyMap.Cookies(nettyRequest.headers());
     }
 
     @Override
@@ -799,6 +856,13 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
         Request request = Request.current();
         Response response = Response.current();
 
+        if (response != null && response.out instanceof ResponseBody && ((ResponseBody) response.out).isCommitted()) {
+            // Too late for an error page
+            Logger.error(e, "Error while sending the response, closing the connection");
+            ctx.getChannel().close();
+            return;
+        }
+
         String encoding = response.encoding;
 
         try {
@@ -895,23 +959,37 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
             nettyResponse.headers().set(SERVER, signature);
         }
         try {
-            VirtualFile file = Play.getVirtualFile(renderStatic.file);
-            if (file != null && file.exists() && file.isDirectory()) {
-                file = file.child("index.html");
-                if (file != null) {
-                    renderStatic.file = file.relativePath();
+            String path = renderStatic.file;
+            StaticAssetCache.Asset asset = staticAssets.get(path);
+            VirtualFile file;
+            if (asset != null) {
+                // Already resolved, skip the file system
+                file = asset.virtualFile;
+                renderStatic.file = asset.relativePath;
+            } else {
+                file = Play.getVirtualFile(renderStatic.file);
+                if (file != null && file.exists() && file.isDirectory()) {
+                    file = file.child("index.html");
+                    if (file != null) {
+                        renderStatic.file = file.relativePath();
+                    }
                 }
             }
-            if ((file == null || !file.exists())) {
+            if (asset == null && (file == null || !file.exists())) {
                 serve404(new NotFound("The file " + renderStatic.file + " does not exist"), ctx, request, nettyRequest);
             } else {
                 boolean raw = Play.pluginCollection.serveStatic(file, Request.current(), Response.current());
                 if (raw) {
                     copyResponse(ctx, request, response, nettyRequest);
+                } else if (!nettyRequest.headers().contains(HttpHeaders.Names.RANGE)
+                        && (asset != null || (asset = staticAssets.load(path, renderStatic.file, file)) != null)) {
+                    serveAsset(asset, ctx, response, nettyRequest, nettyResponse);
                 } else {
                     File localFile = file.getRealFile();
                     boolean keepAlive = isKeepAlive(nettyRequest);
-                    nettyResponse = addEtag(nettyRequest, nettyResponse, localFile);
+                    // The ETag, Last-Modified date and byte ranges are the ones of the representation actually sent
+                    File servedFile = FileService.negotiateEncoding(localFile, nettyRequest, nettyResponse);
+                    nettyResponse = addEtag(nettyRequest, nettyResponse, servedFile);
 
                     if (nettyResponse.getStatus().equals(HttpResponseStatus.NOT_MODIFIED)) {
                         Channel ch = e.getChannel();
@@ -923,7 +1001,7 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
                             writeFuture.addListener(ChannelFutureListener.CLOSE);
                         }
                     } else {
-                        FileService.serve(localFile, nettyRequest, nettyResponse, ctx, request, response, e.getChannel());
+                        FileService.serve(servedFile, localFile.getName(), nettyRequest, nettyResponse, ctx, request, response, e.getChannel());
                     }
                 }
 
@@ -948,6 +1026,33 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
         }
     }
 
+    /**
+     * Serves a static file from memory, in a single write.
+     */
+    private static void serveAsset(StaticAssetCache.Asset asset, ChannelHandlerContext ctx, Response response, HttpRequest nettyRequest,
+                                   HttpResponse nettyResponse) {
+        StaticAssetCache.Variant variant = asset.variant(nettyRequest.headers().get(HttpHeaders.Names.ACCEPT_ENCODING));
+        if (asset.varies) {
+            nettyResponse.headers().set(HttpHeaders.Names.VARY, HttpHeaders.Names.ACCEPT_ENCODING);
+        }
+        if (variant.encoding != null) {
+            nettyResponse.headers().set(HttpHeaders.Names.CONTENT_ENCODING, variant.encoding);
+        }
+        addEtag(nettyRequest, nettyResponse, variant.lastModified, variant.etag, variant.lastModifiedHeader);
+        if (!nettyResponse.getStatus().equals(HttpResponseStatus.NOT_MODIFIED)) {
+            setContentLength(nettyResponse, variant.content.readableBytes());
+            nettyResponse.headers().set(CONTENT_TYPE, response.contentType != null ? response.contentType : asset.contentType);
+            nettyResponse.headers().set(HttpHeaders.Names.ACCEPT_RANGES, HttpHeaders.Values.BYTES);
+            if (!nettyRequest.getMethod().equals(HttpMethod.HEAD)) {
+                nettyResponse.setContent(variant.content.duplicate());
+            }
+        }
+        ChannelFuture writeFuture = ctx.getChannel().write(nettyResponse);
+        if (!isKeepAlive(nettyRequest)) {
+            writeFuture.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
     public static boolean isModified(String etag, long last, HttpRequest nettyRequest) {
 
         if (nettyRequest.headers().contains(IF_NONE_MATCH)) {
@@ -977,6 +1082,12 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
     }
 
     private static HttpResponse addEtag(HttpRequest nettyRequest, HttpResponse httpResponse, File file) {
+        long last = file.lastModified();
+        String etag = "\"" + last + "-" + file.hashCode() + "\"";
+        return addEtag(nettyRequest, httpResponse, last, etag, null);
+    }
+
+    private static HttpResponse addEtag(HttpRequest nettyRequest, HttpResponse httpResponse, long last, String etag, String lastModified) {
         if (Play.mode == Play.Mode.DEV) {
             httpResponse.headers().set(CACHE_CONTROL, "no-cache");
         } else {
@@ -991,8 +1102,6 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
             }
         }
         boolean useEtag = Play.configuration.getProperty("http.useETag", "true").equals("true");
-        long last = file.lastModified();
-        String etag = "\"" + last + "-" + file.hashCode() + "\"";
         if (!isModified(etag, last, nettyRequest)) {
             if (nettyRequest.getMethod().equals(HttpMethod.GET)) {
                 httpResponse.setStatus(HttpResponseStatus.NOT_MODIFIED);
@@ -1002,7 +1111,7 @@ public class PlayHandler extends SimpleChannelUpstreamHandler {
             }
 
         } else {
-            httpResponse.headers().set(LAST_MODIFIED, Utils.getHttpDateFormatter().format(new Date(last)));
+            httpResponse.headers().set(LAST_MODIFIED, lastModified != null ? lastModified : Utils.getHttpDateFormatter().format(new Date(last)));
             if (useEtag) {
                 httpResponse.headers().set(ETAG, etag);
             }
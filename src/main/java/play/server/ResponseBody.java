@@ -0,0 +1,291 @@
+package play.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+
+/**
+ * The body of a response, written straight into fixed-size {@link ChannelBuffer} chunks that are sent as they are,
+ * without ever being copied into a single array.
+ * <p>
+ * Once the body has been written, the chunks go back to a small pool. With a {@link Flusher} and a flush threshold,
+ * the response is committed as soon as the body exceeds the threshold and every following chunk is sent as soon as
+ * it is full, so that a large body only costs a few chunks of memory. It extends ByteArrayOutputStream to stay
+ * compatible with {@link play.mvc.Http.Response#out}; what has been flushed cannot be read back.
+ */
+public class ResponseBody extends ByteArrayOutputStream {
+
+    static final int CHUNK_SIZE = 8192;
+    private static final int MAX_POOLED_CHUNKS = 256;
+
+    private static final Queue<ChannelBuffer> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * Sends a response before it is complete.
+     */
+    public interface Flusher {
+
+        /**
+         * Sends the status line and the headers of a response whose length is not known yet.
+         *
+         * @return false if this response must be sent at once, when complete
+         */
+        boolean commit();
+
+        /**
+         * Sends part of the body.
+         *
+         * @param content The next bytes of the body
+         * @param last    Whether this is the end of the body
+         * @return the future of the write
+         */
+        ChannelFuture write(ChannelBuffer content, boolean last);
+    }
+
+    private final List<ChannelBuffer> chunks = new ArrayList<>();
+    private final int flushThreshold;
+    private Flusher flusher;
+    private ChannelBuffer current;
+    private int buffered;
+    private long written;
+    private boolean committed;
+
+    public ResponseBody() {
+        this(null, -1);
+    }
+
+    /**
+     * @param flusher        Where to send the body early, may be null
+     * @param flushThreshold Number of buffered bytes above which the response is committed, -1 to never flush early
+     */
+    public ResponseBody(Flusher flusher, int flushThreshold) {
+        super(0);
+        this.flusher = flusher;
+        this.flushThreshold = flushThreshold;
+    }
+
+    @Override
+    public void write(int b) {
+        if (current == null || !current.writable()) {
+            nextChunk();
+        }
+        current.writeByte(b);
+        buffered++;
+        written++;
+        flushIfNeeded();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (current == null || !current.writable()) {
+                nextChunk();
+            }
+            int n = Math.min(len, current.writableBytes());
+            current.writeBytes(b, off, n);
+            off += n;
+            len -= n;
+            buffered += n;
+            written += n;
+        }
+        flushIfNeeded();
+    }
+
+    private void nextChunk() {
+        ChannelBuffer chunk = pool.poll();
+        if (chunk == null) {
+            chunk = ChannelBuffers.buffer(CHUNK_SIZE);
+        } else {
+            pooled.decrementAndGet();
+        }
+        chunks.add(chunk);
+        current = chunk;
+    }
+
+    private void flushIfNeeded() {
+        if (flusher == null || flushThreshold < 0 || buffered < flushThreshold) {
+            return;
+        }
+        if (!committed) {
+            if (!flusher.commit()) {
+                // Not a response that can be streamed, keep it in memory
+                flusher = null;
+                return;
+            }
+            committed = true;
+        }
+        // Keep the chunk being filled, send the full ones
+        int full = current.writable() ? chunks.size() - 1 : chunks.size();
+        if (full > 0) {
+            List<ChannelBuffer> sent = new ArrayList<>(chunks.subList(0, full));
+            chunks.subList(0, full).clear();
+            if (chunks.isEmpty()) {
+                current = null;
+            }
+            for (ChannelBuffer chunk : sent) {
+                buffered -= chunk.readableBytes();
+            }
+            release(flusher.write(content(sent), false), sent);
+        }
+    }
+
+    /**
+     * @return true if the response has already been partly sent
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Sends what remains of a committed body and ends the response.
+     *
+     * @return the future of the last write
+     */
+    public ChannelFuture finish() {
+        if (!committed) {
+            throw new IllegalStateException("The response has not been committed");
+        }
+        List<ChannelBuffer> sent = new ArrayList<>(chunks);
+        chunks.clear();
+        current = null;
+        buffered = 0;
+        ChannelFuture future = flusher.write(content(sent), true);
+        release(future, sent);
+        return future;
+    }
+
+    /**
+     * @return the buffered body, sharing the chunks
+     */
+    public ChannelBuffer content() {
+        return content(chunks);
+    }
+
+    private static ChannelBuffer content(List<ChannelBuffer> chunks) {
+        if (chunks.isEmpty()) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+        if (chunks.size() == 1) {
+            return chunks.get(0).duplicate();
+        }
+        return ChannelBuffers.wrappedBuffer(chunks.toArray(new ChannelBuffer[chunks.size()]));
+    }
+
+    /**
+     * Gives the chunks back to the pool once the write is done. The body is empty afterwards.
+     */
+    public void releaseAfter(ChannelFuture future) {
+        List<ChannelBuffer> sent = new ArrayList<>(chunks);
+        chunks.clear();
+        current = null;
+        buffered = 0;
+        release(future, sent);
+    }
+
+    private static void release(ChannelFuture future, final List<ChannelBuffer> chunks) {
+        if (future == null) {
+            recycle(chunks);
+            return;
+        }
+        future.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+                recycle(chunks);
+            }
+        });
+    }
+
+    private static void recycle(List<ChannelBuffer> chunks) {
+        for (ChannelBuffer chunk : chunks) {
+            if (pooled.incrementAndGet() > MAX_POOLED_CHUNKS) {
+                pooled.decrementAndGet();
+                return;
+            }
+            chunk.clear();
+            pool.offer(chunk);
+        }
+    }
+
+    private void checkReadable() {
+        if (committed) {
+            throw new IllegalStateException("The response body has already been sent");
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) written;
+    }
+
+    @Override
+    public void reset() {
+        checkReadable();
+        for (ChannelBuffer chunk : chunks) {
+            chunk.clear();
+        }
+        current = chunks.isEmpty() ? null : chunks.get(0);
+        while (chunks.size() > 1) {
+            chunks.remove(chunks.size() - 1);
+        }
+        buffered = 0;
+        written = 0;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        checkReadable();
+        byte[] bytes = new byte[buffered];
+        int position = 0;
+        for (ChannelBuffer chunk : chunks) {
+            int length = chunk.readableBytes();
+            chunk.getBytes(chunk.readerIndex(), bytes, position, length);
+            position += length;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        checkReadable();
+        for (ChannelBuffer chunk : chunks) {
+            chunk.getBytes(chunk.readerIndex(), out, chunk.readableBytes());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(toByteArray(), Charset.defaultCharset());
+    }
+
+    @Override
+    public String toString(String charsetName) throws UnsupportedEncodingException {
+        return new String(toByteArray(), charsetName);
+    }
+
+    /**
+     * Overrides ByteArrayOutputStream#toString(Charset) on Java 10 and later.
+     */
+    public String toString(Charset charset) {
+        return new String(toByteArray(), charset);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -12,6 +12,7 @@ import play.exceptions.PlayException;
 import play.exceptions.UnexpectedException;
 import play.libs.MimeTypes;
 import play.mvc.ActionInvoker;
+import play.mvc.AutoETags;
 import play.mvc.Http;
 import play.mvc.Http.Request;
 import play.mvc.Http.Response;
@@ -471,6 +472,7 @@ public class ServletWrapper extends HttpServlet implements ServletContextListene
     }
 
     public void copyResponse(Request request, Response response, HttpServletRequest servletRequest, HttpServletResponse servletResponse) throws IOException {
+        AutoETags.apply(request, response);
         String encoding = Response.current().encoding;
         if (response.contentType != null) {
             servletResponse.setHeader("Content-Type", response.contentType + (response.contentType.startsWith("text/") ? "; charset=" + encoding : ""));
@@ -0,0 +1,267 @@
+package play.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import play.Logger;
+import play.Play;
+import play.libs.MimeTypes;
+import play.utils.Utils;
+import play.vfs.VirtualFile;
+
+/**
+ * Small public assets kept in memory with their headers, so that serving them again only costs the socket write.
+ * <p>
+ * Disabled by default. Entries are keyed by the requested path and bounded by their total size
+ * (<code>http.staticCache.maxSize</code> bytes, 0 to disable), the least recently served ones being evicted first.
+ * Only files up to <code>http.staticCache.maxFileSize</code> bytes (256 KB by default) are kept. Files are copied in
+ * memory rather than mapped, and an entry is reloaded once the length or the modification date of its files change,
+ * e.g. when they are overwritten during a deploy. In DEV mode the files are checked on every hit. In PROD mode they
+ * are checked at most once per second per entry, so that a hit usually costs no system call but the socket write,
+ * and an overwritten file can be served from memory for up to a second.
+ */
+class StaticAssetCache {
+
+    private static final long PROD_CHECK_INTERVAL = 1000;
+
+    private final Map<String, Asset> assets = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final long maxSize;
+    private final long maxFileSize;
+
+    StaticAssetCache() {
+        this(Long.parseLong(Play.configuration.getProperty("http.staticCache.maxSize", "0")),
+                Long.parseLong(Play.configuration.getProperty("http.staticCache.maxFileSize", "262144")));
+    }
+
+    StaticAssetCache(long maxSize, long maxFileSize) {
+        this.maxSize = maxSize;
+        this.maxFileSize = Math.min(maxFileSize, maxSize);
+    }
+
+    /**
+     * @return the cached asset for this path, or null if it is not cached or out of date
+     */
+    Asset get(String path) {
+        Asset asset = assets.get(path);
+        if (asset == null) {
+            return null;
+        }
+        long now = now();
+        if (Play.mode == Play.Mode.DEV || now - asset.checkedAt >= PROD_CHECK_INTERVAL) {
+            asset.checkedAt = now;
+            if (asset.isModified()) {
+                remove(path, asset);
+                return null;
+            }
+        }
+        asset.lastAccess = clock.incrementAndGet();
+        return asset;
+    }
+
+    /**
+     * Loads a file in the cache, along with its precompressed siblings.
+     *
+     * @param path         The requested path
+     * @param relativePath The path of the file actually served, e.g. the index.html of a directory
+     * @param virtualFile  The file actually served
+     * @return the cached asset, or null if the file is too big to be cached
+     */
+    Asset load(String path, String relativePath, VirtualFile virtualFile) throws IOException {
+        File file = virtualFile.getRealFile();
+        if (maxSize <= 0 || file == null || file.length() > maxFileSize) {
+            return null;
+        }
+        Variant identity = Variant.read(file, null);
+        List<Variant> encoded = new ArrayList<>(FileService.PRECOMPRESSED.length);
+        boolean varies = false;
+        if ("true".equals(Play.configuration.getProperty("http.precompressed", "true"))) {
+            for (String[] encoding : FileService.PRECOMPRESSED) {
+                File sibling = new File(file.getPath() + encoding[1]);
+                if (sibling.isFile() && sibling.lastModified() >= file.lastModified()) {
+                    varies = true;
+                    if (sibling.length() <= maxFileSize) {
+                        encoded.add(Variant.read(sibling, encoding[0]));
+                    }
+                }
+            }
+        }
+        Asset asset = new Asset(virtualFile, relativePath, MimeTypes.getContentType(file.getName(), "text/plain"), identity,
+                encoded.toArray(new Variant[encoded.size()]), varies);
+        asset.lastAccess = clock.incrementAndGet();
+        asset.checkedAt = now();
+        if (asset.size > maxSize) {
+            return asset;
+        }
+        Asset previous = assets.put(path, asset);
+        size.addAndGet(asset.size - (previous == null ? 0 : previous.size));
+        evict();
+        return asset;
+    }
+
+    /**
+     * Current time in milliseconds.
+     */
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    int count() {
+        return assets.size();
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    void clear() {
+        assets.clear();
+        size.set(0);
+    }
+
+    private void remove(String path, Asset asset) {
+        if (assets.remove(path, asset)) {
+            size.addAndGet(-asset.size);
+        }
+    }
+
+    private void evict() {
+        while (size.get() > maxSize) {
+            String oldestPath = null;
+            Asset oldest = null;
+            for (Map.Entry<String, Asset> entry : assets.entrySet()) {
+                if (oldest == null || entry.getValue().lastAccess < oldest.lastAccess) {
+                    oldestPath = entry.getKey();
+                    oldest = entry.getValue();
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            remove(oldestPath, oldest);
+        }
+    }
+
+    /**
+     * A cached static file.
+     */
+    static final class Asset {
+
+        final VirtualFile virtualFile;
+        final String relativePath;
+        final String contentType;
+        final Variant identity;
+        final Variant[] encoded;
+        /**
+         * Whether precompressed siblings exist, in which case the response varies on Accept-Encoding.
+         */
+        final boolean varies;
+        final long size;
+        volatile long lastAccess;
+        /**
+         * When the files were last checked for modifications.
+         */
+        volatile long checkedAt;
+
+        Asset(VirtualFile virtualFile, String relativePath, String contentType, Variant identity, Variant[] encoded, boolean varies) {
+            this.virtualFile = virtualFile;
+            this.relativePath = relativePath;
+            this.contentType = contentType;
+            this.identity = identity;
+            this.encoded = encoded;
+            this.varies = varies;
+            long size = identity.content.capacity();
+            for (Variant variant : encoded) {
+                size += variant.content.capacity();
+            }
+            this.size = size;
+        }
+
+        boolean isModified() {
+            if (identity.isModified()) {
+                return true;
+            }
+            for (Variant variant : encoded) {
+                if (variant.isModified()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return the preferred representation accepted by the client
+         */
+        Variant variant(String acceptEncoding) {
+            for (Variant variant : encoded) {
+                if (FileService.acceptsEncoding(acceptEncoding, variant.encoding)) {
+                    return variant;
+                }
+            }
+            return identity;
+        }
+    }
+
+    /**
+     * One representation of an asset, with the headers that depend on it precomputed.
+     */
+    static final class Variant {
+
+        final File file;
+        final String encoding;
+        final ChannelBuffer content;
+        final long lastModified;
+        final long length;
+        final String lastModifiedHeader;
+        final String etag;
+
+        private Variant(File file, String encoding, ChannelBuffer content, long lastModified, long length) {
+            this.file = file;
+            this.encoding = encoding;
+            this.content = content;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.lastModifiedHeader = Utils.getHttpDateFormatter().format(new Date(lastModified));
+            // Same ETag as when the file is served from disk
+            this.etag = "\"" + lastModified + "-" + file.hashCode() + "\"";
+        }
+
+        /**
+         * @return whether the file changed since it was read
+         */
+        boolean isModified() {
+            return file.lastModified() != lastModified || file.length() != length;
+        }
+
+        static Variant read(File file, String encoding) throws IOException {
+            long lastModified = file.lastModified();
+            long length = file.length();
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                // Copied: a mapping of a file truncated on disk would crash the JVM when read
+                FileChannel channel = raf.getChannel();
+                ChannelBuffer content = ChannelBuffers.directBuffer((int) length);
+                while (content.writable()) {
+                    if (content.writeBytes(channel, content.writableBytes()) < 0) {
+                        break;
+                    }
+                }
+                if (Logger.isTraceEnabled()) {
+                    Logger.trace("StaticAssetCache: loaded %s (%s bytes)", file, content.readableBytes());
+                }
+                return new Variant(file, encoding, content, lastModified, length);
+            }
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package play.server;
 
-import org.apache.commons.io.IOUtils;
-import org.jboss.netty.buffer.ChannelBufferInputStream;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.buffer.CompositeChannelBuffer;
 import org.jboss.netty.channel.*;
 import org.jboss.netty.handler.codec.http.HttpChunk;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
@@ -12,12 +13,20 @@ import java.io.*;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * Aggregates chunked requests. Bodies up to <code>play.netty.chunkedContent.memoryThreshold</code> bytes (64KB by
+ * default) are kept in memory, larger ones are spooled to a file under the tmp directory.
+ */
 public class StreamChunkAggregator extends SimpleChannelUpstreamHandler {
 
+    private static final int MAX_COMPONENTS = 1024;
+
     private volatile HttpMessage currentMessage;
     private volatile OutputStream out;
     private static final int maxContentLength = Integer.valueOf(Play.configuration.getProperty("play.netty.maxContentLength", "-1"));
+    private static final int memoryThreshold = Integer.valueOf(Play.configuration.getProperty("play.netty.chunkedContent.memoryThreshold", "65536"));
     private volatile File file;
+    private volatile long length;
 
     /**
      * Creates a new instance.
@@ -33,11 +42,9 @@ public class StreamChunkAggregator extends SimpleChannelUpstreamHandler {
         }
 
         HttpMessage currentMessage = this.currentMessage;
-        File localFile = this.file;
         if (currentMessage == null) {
             HttpMessage m = (HttpMessage) msg;
             if (m.isChunked()) {
-                String localName = UUID.randomUUID().toString();
                 // A chunked message - remove 'Transfer-Encoding' header,
                 // initialize the cumulative buffer, and wait for incoming chunks.
                 List<String> encodings = m.headers().getAll(HttpHeaders.Names.TRANSFER_ENCODING);
@@ -45,40 +52,97 @@ public class StreamChunkAggregator extends SimpleChannelUpstreamHandler {
                 if (encodings.isEmpty()) {
                     m.headers().remove(HttpHeaders.Names.TRANSFER_ENCODING);
                 }
+                m.setChunked(false);
                 this.currentMessage = m;
-                this.file = new File(Play.tmpDir, localName);
-                this.out = new FileOutputStream(file, true);
+                this.length = 0;
             } else {
                 // Not a chunked message - pass through.
                 ctx.sendUpstream(e);
             }
         } else {
-            // TODO: If less that threshold then in memory
             // Merge the received chunk into the content of the current message.
             HttpChunk chunk = (HttpChunk) msg;
-            if (maxContentLength != -1 && (localFile.length() > (maxContentLength - chunk.getContent().readableBytes()))) {
+            ChannelBuffer content = chunk.getContent();
+            if (maxContentLength != -1 && (length > (maxContentLength - content.readableBytes()))) {
                 currentMessage.headers().set(HttpHeaders.Names.WARNING, "play.netty.content.length.exceeded");
             } else {
-                IOUtils.copyLarge(new ChannelBufferInputStream(chunk.getContent()), this.out);
+                length += content.readableBytes();
+                if (this.out == null && length > memoryThreshold) {
+                    // Too large to stay in memory
+                    this.file = new File(Play.tmpDir, UUID.randomUUID().toString());
+                    this.out = new FileOutputStream(file, true);
+                    ChannelBuffer received = currentMessage.getContent();
+                    received.readBytes(this.out, received.readableBytes());
+                    currentMessage.setContent(ChannelBuffers.EMPTY_BUFFER);
+                }
+                if (this.out != null) {
+                    content.readBytes(this.out, content.readableBytes());
+                } else if (content.readable()) {
+                    append(currentMessage, content);
+                }
 
                 if (chunk.isLast()) {
-                    this.out.flush();
-                    this.out.close();
-
                     currentMessage.headers().set(
                             HttpHeaders.Names.CONTENT_LENGTH,
-                            String.valueOf(localFile.length()));
+                            String.valueOf(length));
 
-                    currentMessage.setContent(new FileChannelBuffer(localFile));
+                    if (this.out != null) {
+                        File localFile = this.file;
+                        this.out.flush();
+                        this.out.close();
+                        currentMessage.setContent(new FileChannelBuffer(localFile));
+                        // Still readable through the open stream
+                        localFile.delete();
+                    }
                     this.out = null;
-                    this.currentMessage = null;
-                    this.file.delete();
                     this.file = null;
+                    this.currentMessage = null;
                     Channels.fireMessageReceived(ctx, currentMessage, e.getRemoteAddress());
                 }
             }
         }
 
     }
-}
 
+    private static void append(HttpMessage message, ChannelBuffer content) {
+        ChannelBuffer received = message.getContent();
+        if (received instanceof CompositeChannelBuffer && ((CompositeChannelBuffer) received).numComponents() >= MAX_COMPONENTS) {
+            // Lots of tiny chunks, merge them
+            received = received.copy();
+        }
+        message.setContent(received.readable() ? ChannelBuffers.wrappedBuffer(received, content) : content);
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        discard();
+        super.channelClosed(ctx, e);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
+        discard();
+        super.exceptionCaught(ctx, e);
+    }
+
+    /**
+     * Forgets a message that will not be complete, and deletes its file.
+     */
+    private void discard() {
+        OutputStream localOut = this.out;
+        File localFile = this.file;
+        this.currentMessage = null;
+        this.out = null;
+        this.file = null;
+        if (localOut != null) {
+            try {
+                localOut.close();
+            } catch (IOException e) {
+                // Deleted anyway
+            }
+        }
+        if (localFile != null) {
+            localFile.delete();
+        }
+    }
+}
@@ -80,6 +80,7 @@ public class SslHttpServerPipelineFactory extends HttpServerPipelineFactory {
         }
 
         if (sslPlayHandler != null) {
+            addContentCompressor(pipeline, sslPlayHandler.pipelines, "Ssl");
             pipeline.addLast("handler", sslPlayHandler);
             sslPlayHandler.pipelines.put("SslHandler", sslPlayHandler);
         }
@@ -94,6 +94,10 @@ public abstract class BaseTemplate extends Template {
     public static final ThreadLocal<BaseTemplate> layout = new ThreadLocal<>();
     public static final ThreadLocal<Map<Object, Object>> layoutData = new ThreadLocal<>();
     public static final ThreadLocal<BaseTemplate> currentTemplate = new ThreadLocal<>();
+    /**
+     * Output of the template being decorated, written by #{doLayout} when a layout is streamed.
+     */
+    public static final ThreadLocal<CharSequence> layoutBody = new ThreadLocal<>();
 
     public static final class RawData {
 
@@ -41,14 +41,11 @@ public class FastTags {
         if (args.containsKey("for")) {
             duration = args.get("for").toString();
         }
-        Object cached = Cache.get(key);
-        if (cached != null) {
-            out.print(cached);
-            return;
-        }
-        String result = JavaExtensions.toString(body);
-        Cache.set(key, result, duration);
-        out.print(result);
+        String stale = null;
+        if (args.containsKey("stale")) {
+            stale = args.get("stale").toString();
+        }
+        FragmentCache.render(key, duration, stale, body, out, template == null ? null : template.template.name);
     }
 
     public static void _verbatim(Map<?, ?> args, Closure body, PrintWriter out, ExecutableTemplate template, int fromLine) {
@@ -333,7 +330,13 @@ public class FastTags {
     }
 
     public static void _doLayout(Map<?, ?> args, Closure body, PrintWriter out, ExecutableTemplate template, int fromLine) {
-        out.print("____%LAYOUT%____");
+        CharSequence layoutBody = BaseTemplate.layoutBody.get();
+        if (layoutBody != null) {
+            // Streamed rendering, the decorated template is already rendered
+            GroovyTemplate.write(layoutBody, out);
+        } else {
+            out.print("____%LAYOUT%____");
+        }
     }
 
     public static void _get(Map<?, ?> args, Closure body, PrintWriter out, ExecutableTemplate template, int fromLine) {
@@ -0,0 +1,219 @@
+package play.templates;
+
+import groovy.lang.Closure;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.jamonapi.Monitor;
+import com.jamonapi.MonitorFactory;
+
+import play.Play;
+import play.cache.Cache;
+import play.cache.ShardedCacheImpl;
+import play.exceptions.UnexpectedException;
+import play.libs.Time;
+import play.mvc.Http;
+
+/**
+ * Storage of the fragments cached by the #{cache} tag.
+ *
+ * <p>Fragments are cached as bytes in the response encoding. A missing fragment is rendered by a single thread per key
+ * and per node, the others wait for it (for at most <code>play.cache.waitFor</code>, 10s by default). With a
+ * <code>stale</code> window, a fragment past its time is still served during the window while the first request to
+ * see it renders it again.</p>
+ *
+ * <p>Setting <code>play.template.cache.l1.maxSize</code> (in bytes) keeps fresh fragments, already decoded, in
+ * process for at most <code>play.template.cache.l1.ttl</code> (5s by default). That copy is not invalidated by
+ * {@link Cache#delete(String)} or {@link Cache#set(String, Object)} on the fragment key, on this node or any other: it
+ * is served until it expires. Hits and render times are recorded per template as JAMon monitors, shown in the
+ * application status.</p>
+ */
+class FragmentCache {
+
+    /**
+     * Fragments being rendered.
+     */
+    private static final Map<String, CompletableFuture<String>> rendering = new ConcurrentHashMap<>();
+
+    private static volatile ShardedCacheImpl l1;
+    private static volatile boolean l1Initialized;
+
+    /**
+     * A rendered fragment, as stored in the cache.
+     */
+    static class Fragment implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final byte[] content;
+        final String encoding;
+        final long freshUntil;
+
+        transient volatile String text;
+
+        Fragment(String text, String encoding, long freshUntil) {
+            this.text = text;
+            this.encoding = encoding;
+            this.freshUntil = freshUntil;
+            try {
+                this.content = text.getBytes(encoding);
+            } catch (UnsupportedEncodingException e) {
+                throw new UnexpectedException(e);
+            }
+        }
+
+        String text() {
+            String decoded = text;
+            if (decoded == null) {
+                try {
+                    decoded = new String(content, encoding);
+                } catch (UnsupportedEncodingException e) {
+                    throw new UnexpectedException(e);
+                }
+                text = decoded;
+            }
+            return decoded;
+        }
+    }
+
+    private FragmentCache() {
+    }
+
+    /**
+     * Writes the cached fragment, rendering the body if needed.
+     *
+     * @param duration How long the fragment is fresh, null for the default cache expiration
+     * @param stale    How long the fragment is still served once stale, while it is rendered again, or null
+     * @param template The name of the template, for the monitors
+     */
+    static void render(String key, String duration, String stale, Closure body, PrintWriter out, String template) {
+        String monitor = template == null ? "#{cache}" : "#{cache} in " + template;
+        ShardedCacheImpl local = l1();
+        if (local != null) {
+            Object text = local.get(key);
+            if (text instanceof String) {
+                hit(monitor);
+                out.print(text);
+                return;
+            }
+        }
+        Object cached = Cache.get(key);
+        if (cached instanceof String) {
+            // Cached before fragments were stored as bytes
+            hit(monitor);
+            out.print(cached);
+            return;
+        }
+        // Anything else stored under this key is overwritten
+        Fragment fragment = cached instanceof Fragment ? (Fragment) cached : null;
+        CompletableFuture<String> rendered = new CompletableFuture<>();
+        if (fragment != null) {
+            hit(monitor);
+            long now = System.currentTimeMillis();
+            if (now < fragment.freshUntil) {
+                keepLocally(local, key, fragment.text(), (int) ((fragment.freshUntil - now) / 1000));
+                out.print(fragment.text());
+                return;
+            }
+            if (rendering.putIfAbsent(key, rendered) != null) {
+                // Already rendered again by another request
+                out.print(fragment.text());
+                return;
+            }
+        } else {
+            CompletableFuture<String> pending = rendering.putIfAbsent(key, rendered);
+            if (pending != null) {
+                String text = await(pending);
+                out.print(text == null ? render(monitor, body) : text);
+                return;
+            }
+        }
+        String text = null;
+        try {
+            text = render(monitor, body);
+            store(key, text, duration, stale);
+        } finally {
+            rendering.remove(key, rendered);
+            rendered.complete(text);
+        }
+        out.print(text);
+    }
+
+    private static String render(String label, Closure body) {
+        Monitor monitor = MonitorFactory.start(label);
+        try {
+            return JavaExtensions.toString(body);
+        } finally {
+            monitor.stop();
+        }
+    }
+
+    private static void store(String key, String text, String duration, String stale) {
+        int fresh = Time.parseDuration(duration);
+        int expiration = stale == null ? fresh : fresh + Time.parseDuration(stale);
+        Http.Response response = Http.Response.current();
+        String encoding = response == null ? Play.defaultWebEncoding : response.encoding;
+        Cache.set(key, new Fragment(text, encoding, System.currentTimeMillis() + fresh * 1000L), expiration + "s");
+        keepLocally(l1(), key, text, fresh);
+    }
+
+    /**
+     * @param fresh How long the fragment is still fresh, in seconds
+     */
+    private static void keepLocally(ShardedCacheImpl local, String key, String text, int fresh) {
+        if (local != null) {
+            int ttl = Math.min(fresh, Time.parseDuration(Play.configuration.getProperty("play.template.cache.l1.ttl", "5s")));
+            if (ttl > 0) {
+                local.set(key, text, ttl);
+            }
+        }
+    }
+
+    private static String await(CompletableFuture<String> pending) {
+        try {
+            return pending.get(Time.parseDuration(Play.configuration.getProperty("play.cache.waitFor", "10s")),
+                    TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private static void hit(String label) {
+        MonitorFactory.add(label + " hits", "hits", 1);
+    }
+
+    private static ShardedCacheImpl l1() {
+        if (!l1Initialized) {
+            synchronized (FragmentCache.class) {
+                if (!l1Initialized) {
+                    long maxSize = Long.parseLong(Play.configuration.getProperty("play.template.cache.l1.maxSize", "0"));
+                    l1 = maxSize > 0 ? new ShardedCacheImpl(maxSize, Runtime.getRuntime().availableProcessors()) : null;
+                    l1Initialized = true;
+                }
+            }
+        }
+        return l1;
+    }
+
+    /**
+     * Forgets the in-process fragments and the configuration they were kept with.
+     */
+    static synchronized void reset() {
+        if (l1 != null) {
+            l1.clear();
+        }
+        l1 = null;
+        l1Initialized = false;
+    }
+}
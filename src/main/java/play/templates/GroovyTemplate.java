@@ -33,8 +33,10 @@ import play.utils.HTML;
 import play.utils.Java;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.*;
@@ -206,6 +208,22 @@ public class GroovyTemplate extends BaseTemplate {
         }
     }
 
+    /**
+     * Renders the template straight into a writer. The output of a template extending a layout is kept in memory
+     * until the layout, itself streamed, includes it with #{doLayout}; the output of any other template is written as
+     * it goes. A template is considered not to extend a layout once it has written a few kilobytes, so #{extends} must
+     * come first.
+     */
+    @Override
+    public void render(Map<String, Object> args, Writer out) {
+        try {
+            internalRender(new HashMap<>(args), out);
+        } finally {
+            currentTemplate.remove();
+            layoutBody.remove();
+        }
+    }
+
     protected Binding setUpBindingVariables(Map<String, Object> args){
         Binding binding = new Binding(args);
         binding.setVariable("play", new Play());
@@ -216,6 +234,13 @@ public class GroovyTemplate extends BaseTemplate {
     
     @Override
     protected String internalRender(Map<String, Object> args) {
+        return internalRender(args, null);
+    }
+
+    /**
+     * @param target Where to write the output of a top-level rendering, or null to return it
+     */
+    String internalRender(Map<String, Object> args, Writer target) {
         compile();
 
         Binding binding = this.setUpBindingVariables(args);
@@ -226,6 +251,7 @@ public class GroovyTemplate extends BaseTemplate {
             binding.setVariable("_response_encoding", currentResponse.encoding);
         }
         StringWriter writer = null;
+        LayoutAwareWriter streamWriter = null;
         Boolean applyLayouts = false;
 
         // must check if this is the first template being rendered..
@@ -238,8 +264,13 @@ public class GroovyTemplate extends BaseTemplate {
             // to write the output to..
             applyLayouts = true;
             layout.set(null);
-            writer = new StringWriter();
-            binding.setProperty("out", new PrintWriter(writer));
+            if (target != null) {
+                streamWriter = new LayoutAwareWriter(target, source != null && source.contains("#{extends"));
+                binding.setProperty("out", new PrintWriter(streamWriter));
+            } else {
+                writer = new StringWriter();
+                binding.setProperty("out", new PrintWriter(writer));
+            }
             currentTemplate.set(this);
         }
         if (!args.containsKey("_body") && !args.containsKey("_isLayout") && !args.containsKey("_isInclude")) {
@@ -283,6 +314,10 @@ public class GroovyTemplate extends BaseTemplate {
                 monitor.stop();
             }
         }
+        if (streamWriter != null) {
+            streamLayout(args, streamWriter, target);
+            return null;
+        }
         if (applyLayouts && layout.get() != null) {
             Map<String, Object> layoutArgs = new HashMap<>(args);
             layoutArgs.remove("out");
@@ -308,6 +343,205 @@ public class GroovyTemplate extends BaseTemplate {
         return null;
     }
 
+    private void streamLayout(Map<String, Object> args, LayoutAwareWriter output, Writer target) {
+        BaseTemplate layoutTemplate = layout.get();
+        try {
+            if (layoutTemplate == null) {
+                output.flush();
+                return;
+            }
+            if (output.isStreaming()) {
+                throw new UnexpectedException("Template " + name + " extends " + layoutTemplate.name
+                        + " after writing its content: #{extends} must come first when templates are streamed");
+            }
+            Map<String, Object> layoutArgs = new HashMap<>(args);
+            layoutArgs.remove("out");
+            layoutArgs.put("_isLayout", true);
+            // Same output as the String rendering, which trims the decorated page
+            TrimmingWriter trimmed = new TrimmingWriter(target);
+            CharSequence previousBody = layoutBody.get();
+            layoutBody.set(output.buffered());
+            try {
+                renderLayout(layoutTemplate, layoutArgs, output, trimmed);
+            } finally {
+                layoutBody.set(previousBody);
+            }
+            trimmed.flush();
+        } catch (IOException e) {
+            throw new UnexpectedException(e);
+        }
+    }
+
+    private static void renderLayout(BaseTemplate layoutTemplate, Map<String, Object> layoutArgs, LayoutAwareWriter output,
+            Writer trimmed) throws IOException {
+        if (layoutTemplate instanceof GroovyTemplate) {
+            ((GroovyTemplate) layoutTemplate).internalRender(layoutArgs, trimmed);
+        } else {
+            String layoutR = layoutTemplate.internalRender(layoutArgs);
+            int pos = layoutR.indexOf("____%LAYOUT%____");
+            if (pos >= 0) {
+                trimmed.write(layoutR, 0, pos);
+                write(output.buffered(), trimmed);
+                trimmed.write(layoutR, pos + 16, layoutR.length() - pos - 16);
+            } else {
+                trimmed.write(layoutR);
+            }
+        }
+    }
+
+    /**
+     * Writes a large char sequence without copying it into a String.
+     */
+    static void write(CharSequence content, Writer out) {
+        try {
+            if (content instanceof String) {
+                out.write((String) content);
+                return;
+            }
+            char[] buffer = new char[Math.min(8192, content.length())];
+            int length = content.length();
+            for (int start = 0; start < length; start += buffer.length) {
+                int end = Math.min(length, start + buffer.length);
+                if (content instanceof StringBuilder) {
+                    ((StringBuilder) content).getChars(start, end, buffer, 0);
+                } else {
+                    for (int i = start; i < end; i++) {
+                        buffer[i - start] = content.charAt(i);
+                    }
+                }
+                out.write(buffer, 0, end - start);
+            }
+        } catch (IOException e) {
+            throw new UnexpectedException(e);
+        }
+    }
+
+    /**
+     * Output of a top-level template rendered into a writer. It is kept in memory while the template may still
+     * extend a layout, and passed through to the target as soon as it is known not to.
+     */
+    static class LayoutAwareWriter extends Writer {
+
+        /**
+         * Output after which a template that did not call #{extends} is considered not to extend a layout.
+         */
+        static final int STREAM_THRESHOLD = 8192;
+
+        private final Writer target;
+        private final boolean extendsLayout;
+        private StringBuilder buffer = new StringBuilder();
+
+        LayoutAwareWriter(Writer target, boolean extendsLayout) {
+            this.target = target;
+            this.extendsLayout = extendsLayout;
+        }
+
+        boolean isStreaming() {
+            return buffer == null;
+        }
+
+        CharSequence buffered() {
+            return buffer;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            if (buffer == null) {
+                target.write(cbuf, off, len);
+                return;
+            }
+            buffer.append(cbuf, off, len);
+            startStreaming();
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            if (buffer == null) {
+                target.write(str, off, len);
+                return;
+            }
+            buffer.append(str, off, off + len);
+            startStreaming();
+        }
+
+        private void startStreaming() {
+            if (!extendsLayout && buffer.length() >= STREAM_THRESHOLD && layout.get() == null) {
+                GroovyTemplate.write(buffer, target);
+                buffer = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (buffer != null) {
+                GroovyTemplate.write(buffer, target);
+                buffer = null;
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Leaves out the leading and trailing whitespace of what goes through it, as {@link String#trim()}.
+     */
+    static class TrimmingWriter extends Writer {
+
+        private final Writer target;
+        private final StringBuilder whitespace = new StringBuilder();
+        private boolean started;
+
+        TrimmingWriter(Writer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int start = off;
+            int end = off + len;
+            if (!started) {
+                while (start < end && cbuf[start] <= ' ') {
+                    start++;
+                }
+                if (start == end) {
+                    return;
+                }
+                started = true;
+            }
+            int last = end - 1;
+            while (last >= start && cbuf[last] <= ' ') {
+                last--;
+            }
+            if (last < start) {
+                whitespace.append(cbuf, start, end - start);
+                return;
+            }
+            if (whitespace.length() > 0) {
+                GroovyTemplate.write(whitespace, target);
+                whitespace.setLength(0);
+            }
+            target.write(cbuf, start, last + 1 - start);
+            whitespace.append(cbuf, last + 1, end - last - 1);
+        }
+
+        /**
+         * Flushes the target, the trailing whitespace is dropped.
+         */
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
     @Override
     protected Throwable cleanStackTrace(Throwable e) {
         List<StackTraceElement> cleanTrace = new ArrayList<>();
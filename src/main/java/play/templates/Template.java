@@ -1,8 +1,12 @@
 package play.templates;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
+import play.exceptions.UnexpectedException;
+
 public abstract class Template {
 
     public String name;
@@ -38,6 +42,19 @@ public abstract class Template {
         return internalRender(new HashMap<String, Object>());
     }
 
+    /**
+     * Renders the template into a writer, which lets an engine stream the output instead of building a String
+     * @param args map containing data binding info
+     * @param out where to write the result of the complete rendering
+     */
+    public void render(Map<String, Object> args, Writer out) {
+        try {
+            out.write(render(args));
+        } catch (IOException e) {
+            throw new UnexpectedException(e);
+        }
+    }
+
     public String getName() {
         return name;
     }
@@ -149,6 +149,7 @@ public class TemplateLoader {
      */
     public static void cleanCompiledCache() {
         templates.clear();
+        FragmentCache.reset();
     }
 
     /**
@@ -0,0 +1,104 @@
+package play;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import play.Invoker.Invocation;
+import play.Invoker.InvocationContext;
+import play.utils.VirtualThreads;
+
+/**
+ * Load test comparing the platform and virtual thread modes of the Invoker with blocking actions (think JDBC calls).
+ * <p>
+ * Not a unit test: run it with <code>java play.InvokerBenchmark</code>, on Java 21 or later to include the virtual mode.
+ */
+public class InvokerBenchmark {
+
+    private static final int INVOCATIONS = 2000;
+    private static final int BLOCKING_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        Play.configuration = new Properties();
+        Play.configuration.setProperty("play.pool", "16");
+        run("platform");
+        if (VirtualThreads.isSupported()) {
+            run("virtual");
+        } else {
+            System.out.println("virtual : not supported by this JVM");
+        }
+    }
+
+    private static void run(String mode) throws Exception {
+        Play.configuration.setProperty("play.pool.mode", mode);
+        Invoker.init();
+        try {
+            // Warm up
+            submit(INVOCATIONS / 10);
+            long start = System.nanoTime();
+            submit(INVOCATIONS);
+            long elapsed = System.nanoTime() - start;
+            System.out.println(String.format("%-8s: %d blocking invocations of %d ms in %d ms, %.0f invocations/s", mode,
+                    INVOCATIONS, BLOCKING_MILLIS, TimeUnit.NANOSECONDS.toMillis(elapsed), INVOCATIONS * 1e9 / elapsed));
+        } finally {
+            Invoker.executor.shutdownNow();
+            if (Invoker.virtualExecutor != null) {
+                Invoker.virtualExecutor.shutdownNow();
+            }
+        }
+    }
+
+    private static void submit(int count) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            Invoker.invoke(new BlockingInvocation(done));
+        }
+        done.await();
+    }
+
+    /**
+     * An invocation doing nothing but blocking, without the application lifecycle around it.
+     */
+    private static class BlockingInvocation extends Invocation {
+
+        private final CountDownLatch done;
+
+        BlockingInvocation(CountDownLatch done) {
+            this.done = done;
+        }
+
+        @Override
+        public boolean init() {
+            InvocationContext.current.set(getInvocationContext());
+            return true;
+        }
+
+        @Override
+        public void before() {
+        }
+
+        @Override
+        public void execute() throws Exception {
+            Thread.sleep(BLOCKING_MILLIS);
+        }
+
+        @Override
+        public void after() {
+        }
+
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public void _finally() {
+            InvocationContext.current.remove();
+            done.countDown();
+        }
+
+        @Override
+        public InvocationContext getInvocationContext() {
+            return new InvocationContext("Benchmark");
+        }
+    }
+}
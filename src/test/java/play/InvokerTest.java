@@ -0,0 +1,103 @@
+package play;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import play.Invoker.Invocation;
+import play.Invoker.InvocationContext;
+import play.libs.F.Promise;
+
+public class InvokerTest {
+
+    @BeforeClass
+    public static void setUp() {
+        Play.configuration = new Properties();
+        Invoker.init();
+    }
+
+    @Test
+    public void redeemedPromiseResumesInvocationOnce() throws Exception {
+        Promise<String> promise = new Promise<>();
+        CountingInvocation invocation = new CountingInvocation();
+        Invoker.WaitForTasksCompletion.waitFor(promise, invocation);
+        assertEquals(0, invocation.executions.get());
+
+        promise.invoke("done");
+        assertTrue(invocation.done.await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, invocation.executions.get());
+    }
+
+    @Test
+    public void completableFutureResumesInvocationWithoutPolling() throws Exception {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CountingInvocation invocation = new CountingInvocation();
+        Invoker.WaitForTasksCompletion.waitFor(future, invocation);
+
+        future.complete("done");
+        assertTrue(invocation.done.await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, invocation.executions.get());
+    }
+
+    @Test
+    public void alreadyRedeemedPromiseResumesInvocationOnce() throws Exception {
+        Promise<String> promise = new Promise<>();
+        promise.invoke("done");
+        CountingInvocation invocation = new CountingInvocation();
+        Invoker.WaitForTasksCompletion.waitFor(promise, invocation);
+
+        assertTrue(invocation.done.await(1, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(1, invocation.executions.get());
+    }
+
+    private static class CountingInvocation extends Invocation {
+
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        @Override
+        public boolean init() {
+            InvocationContext.current.set(getInvocationContext());
+            return true;
+        }
+
+        @Override
+        public void before() {
+        }
+
+        @Override
+        public void execute() throws Exception {
+            executions.incrementAndGet();
+        }
+
+        @Override
+        public void after() {
+        }
+
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public void _finally() {
+            InvocationContext.current.remove();
+            done.countDown();
+        }
+
+        @Override
+        public InvocationContext getInvocationContext() {
+            return new InvocationContext("Test");
+        }
+    }
+}
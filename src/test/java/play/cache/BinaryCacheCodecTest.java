@@ -0,0 +1,84 @@
+package play.cache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class BinaryCacheCodecTest {
+
+    private final BinaryCacheCodec codec = new BinaryCacheCodec(1024);
+
+    private Object roundTrip(Object value) {
+        return codec.decode(codec.encode(value));
+    }
+
+    @Test
+    public void commonTypesRoundTrip() {
+        UUID uuid = UUID.randomUUID();
+        for (Object value : new Object[] { "héllo", "", 42, -1, Long.MAX_VALUE, Long.MIN_VALUE, true, false, 3.14d, 2.5f,
+                (short) -7, (byte) 3, 'x', new Date(1234567890L), uuid, new BigDecimal("12.3400"),
+                new BigInteger("123456789012345678901234567890") }) {
+            assertThat(roundTrip(value)).isEqualTo(value);
+        }
+        assertThat((byte[]) roundTrip(new byte[] { 1, 2, 3 })).isEqualTo(new byte[] { 1, 2, 3 });
+    }
+
+    @Test
+    public void collectionsRoundTripWithTheirType() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", 12L);
+        map.put("tags", new ArrayList<>(Arrays.asList("a", "b", null)));
+        map.put("roles", new HashSet<>(Arrays.asList("admin", "user")));
+        Object decoded = roundTrip(map);
+        assertThat(decoded).isInstanceOf(HashMap.class).isEqualTo(map);
+
+        // Not written by the codec itself, still the same class once read
+        List<String> linked = new LinkedList<>(Arrays.asList("x", "y"));
+        assertThat(roundTrip(linked)).isInstanceOf(LinkedList.class).isEqualTo(linked);
+        TreeMap<String, Integer> sorted = new TreeMap<>();
+        sorted.put("b", 2);
+        assertThat(roundTrip(sorted)).isInstanceOf(TreeMap.class).isEqualTo(sorted);
+    }
+
+    @Test
+    public void smallerThanJavaSerialization() {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < 20; i++) {
+            map.put("key" + i, (long) i);
+        }
+        assertThat(codec.encode(map).length * 3).isLessThan(new JavaSerializationCodec().encode(map).length);
+    }
+
+    @Test
+    public void largeValuesAreCompressed() {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add("<tr><td>row " + i + "</td><td>some repeated content</td></tr>");
+        }
+        byte[] compressed = codec.encode(rows);
+        byte[] plain = new BinaryCacheCodec(-1).encode(rows);
+        assertThat(compressed.length * 3).isLessThan(plain.length);
+        assertThat(codec.decode(compressed)).isEqualTo(rows);
+        assertThat(codec.decode(plain)).isEqualTo(rows);
+    }
+
+    @Test
+    public void readsJavaSerializedValues() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("legacy", 1);
+        assertThat(codec.decode(new JavaSerializationCodec().encode(map))).isEqualTo(map);
+    }
+}
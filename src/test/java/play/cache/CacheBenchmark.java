@@ -0,0 +1,77 @@
+package play.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of EhCacheImpl and ShardedCacheImpl from 1 to 64 threads, with 80% gets, 10% sets and 10% increments of
+ * a few rate-limiter counters.
+ * <p>
+ * Not a unit test: run it with <code>java play.cache.CacheBenchmark</code>.
+ */
+public class CacheBenchmark {
+
+    private static final int KEYS = 10000;
+    private static final int COUNTERS = 16;
+    private static final long MILLIS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        CacheImpl ehcache = EhCacheImpl.newInstance();
+        CacheImpl sharded = new ShardedCacheImpl(64 * 1024 * 1024, Runtime.getRuntime().availableProcessors() * 4);
+        for (CacheImpl cache : new CacheImpl[] { ehcache, sharded }) {
+            fill(cache);
+            // Warm up
+            run(cache, 4);
+        }
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            System.out.println(String.format("%2d threads: EhCacheImpl %,12d ops/s, ShardedCacheImpl %,12d ops/s", threads,
+                    run(ehcache, threads), run(sharded, threads)));
+        }
+        ehcache.stop();
+    }
+
+    private static void fill(CacheImpl cache) {
+        for (int i = 0; i < KEYS; i++) {
+            cache.set("key" + i, "value" + i, 3600);
+        }
+        for (int i = 0; i < COUNTERS; i++) {
+            cache.set("counter" + i, 0L, 3600);
+        }
+    }
+
+    private static long run(final CacheImpl cache, int threadCount) throws InterruptedException {
+        final AtomicLong operations = new AtomicLong();
+        final long end = System.currentTimeMillis() + MILLIS;
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long count = 0;
+                    while ((count & 1023) != 0 || System.currentTimeMillis() < end) {
+                        int dice = random.nextInt(10);
+                        if (dice == 0) {
+                            cache.set("key" + random.nextInt(KEYS), "value", 3600);
+                        } else if (dice == 1) {
+                            cache.incr("counter" + random.nextInt(COUNTERS), 1);
+                        } else {
+                            cache.get("key" + random.nextInt(KEYS));
+                        }
+                        count++;
+                    }
+                    operations.addAndGet(count);
+                    done.countDown();
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        done.await();
+        return operations.get() * 1000 / MILLIS;
+    }
+}
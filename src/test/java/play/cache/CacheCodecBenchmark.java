@@ -0,0 +1,81 @@
+package play.cache;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size and encode/decode throughput of the cache codecs on typical values.
+ * <p>
+ * Not a unit test: run it with <code>java play.cache.CacheCodecBenchmark</code>.
+ */
+public class CacheCodecBenchmark {
+
+    private static final long MILLIS = 1000;
+
+    public static void main(String[] args) {
+        Map<String, Object> values = new HashMap<>();
+        Map<String, Object> user = new HashMap<>();
+        user.put("id", 1234L);
+        user.put("email", "someone@example.com");
+        user.put("name", "Some One");
+        user.put("admin", false);
+        user.put("created", new Date());
+        user.put("score", 12.5d);
+        values.put("small map", user);
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i < 1000; i++) {
+            ids.add(i * 7919);
+        }
+        values.put("1000 ids", ids);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            rows.add("<tr><td>" + i + "</td><td>Lorem ipsum dolor sit amet</td></tr>");
+        }
+        values.put("500 html rows", rows);
+
+        Map<String, CacheCodec> codecs = new LinkedHashMap<>();
+        codecs.put("java", new JavaSerializationCodec());
+        codecs.put("binary", new BinaryCacheCodec(-1));
+        codecs.put("binary+lz", new BinaryCacheCodec(1024));
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            for (Map.Entry<String, CacheCodec> codec : codecs.entrySet()) {
+                measure(value.getKey(), codec.getKey(), codec.getValue(), value.getValue());
+            }
+        }
+    }
+
+    private static void measure(String valueName, String codecName, CacheCodec codec, Object value) {
+        // Warm up
+        run(codec, value, MILLIS / 2);
+        byte[] encoded = codec.encode(value);
+        long encodes = 0;
+        long end = System.currentTimeMillis() + MILLIS;
+        while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < 100; i++) {
+                codec.encode(value);
+            }
+            encodes += 100;
+        }
+        long decodes = 0;
+        end = System.currentTimeMillis() + MILLIS;
+        while (System.currentTimeMillis() < end) {
+            for (int i = 0; i < 100; i++) {
+                codec.decode(encoded);
+            }
+            decodes += 100;
+        }
+        System.out.println(String.format("%-14s %-10s: %7d bytes, %,10d encodes/s, %,10d decodes/s", valueName, codecName,
+                encoded.length, encodes * 1000 / MILLIS, decodes * 1000 / MILLIS));
+    }
+
+    private static void run(CacheCodec codec, Object value, long millis) {
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            codec.decode(codec.encode(value));
+        }
+    }
+}
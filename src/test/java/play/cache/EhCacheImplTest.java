@@ -1,5 +1,8 @@
 package play.cache;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.junit.Test;
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -29,4 +32,36 @@ public class EhCacheImplTest {
         assertThat(cache.get(key)).isNull();
 
     }
+
+    @Test
+    public void multiOperations() {
+        // The "play" cache can only be created once per CacheManager
+        boolean created = EhCacheImpl.getInstance() == null;
+        EhCacheImpl cache = created ? EhCacheImpl.newInstance() : EhCacheImpl.getInstance();
+        try {
+            multiOperations(cache);
+        } finally {
+            if (created) {
+                cache.stop();
+            }
+        }
+    }
+
+    private void multiOperations(EhCacheImpl cache) {
+        cache.clear();
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("EhCacheImplTest_a", "a");
+        values.put("EhCacheImplTest_b", 1L);
+        cache.setMulti(values, 60);
+        Map<String, Object> read = cache.get(new String[] { "EhCacheImplTest_a", "EhCacheImplTest_b", "EhCacheImplTest_c" });
+        assertThat(read.get("EhCacheImplTest_a")).isEqualTo("a");
+        assertThat(read.get("EhCacheImplTest_b")).isEqualTo(1L);
+        assertThat(read.containsKey("EhCacheImplTest_c")).isTrue();
+        assertThat(cache.incrMulti(new String[] { "EhCacheImplTest_b" }, 2).get("EhCacheImplTest_b")).isEqualTo(3L);
+
+        cache.deleteMulti(new String[] { "EhCacheImplTest_a", "EhCacheImplTest_b" });
+        assertThat(cache.get("EhCacheImplTest_a")).isNull();
+        assertThat(cache.get("EhCacheImplTest_b")).isNull();
+    }
 }
@@ -0,0 +1,48 @@
+package play.cache;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LzCompressorTest {
+
+    private static byte[] roundTrip(byte[] data) {
+        byte[] compressed = LzCompressor.compress(data, 0, data.length);
+        return LzCompressor.decompress(compressed, 0, compressed.length, data.length);
+    }
+
+    @Test
+    public void compressesRepetitiveData() {
+        byte[] data = new byte[100000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) "abcdefgh0123".charAt(i % 12);
+        }
+        assertThat(LzCompressor.compress(data, 0, data.length).length).isLessThan(1000);
+        assertThat(roundTrip(data)).isEqualTo(data);
+    }
+
+    @Test
+    public void roundTripsAnyData() {
+        Random random = new Random(42);
+        for (int length : new int[] { 0, 1, 11, 12, 13, 100, 65536, 200000 }) {
+            byte[] noise = new byte[length];
+            random.nextBytes(noise);
+            assertThat(roundTrip(noise)).isEqualTo(noise);
+            byte[] runs = new byte[length];
+            for (int i = 0; i < length; i++) {
+                runs[i] = (byte) (random.nextInt(20) == 0 ? random.nextInt() : i / 300);
+            }
+            assertThat(roundTrip(runs)).isEqualTo(runs);
+        }
+    }
+
+    @Test
+    public void compressesASlice() {
+        byte[] data = "xxxxhello hello hello hello hello hello!yyyy".getBytes();
+        byte[] compressed = LzCompressor.compress(data, 4, data.length - 8);
+        assertThat(new String(LzCompressor.decompress(compressed, 0, compressed.length, data.length - 8)))
+                .isEqualTo("hello hello hello hello hello hello!");
+    }
+}
@@ -0,0 +1,206 @@
+package play.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.exceptions.ConfigurationException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class NearCacheImplTest {
+
+    /**
+     * In-JVM stand-in for memcached, counting the gets and able to hold them.
+     */
+    private static class RemoteCache extends ShardedCacheImpl {
+
+        final AtomicInteger gets = new AtomicInteger();
+        volatile CountDownLatch release;
+        volatile Error error;
+        volatile String writtenWhileRead;
+
+        RemoteCache() {
+            super(1024 * 1024, 1);
+        }
+
+        @Override
+        public Object get(String key) {
+            gets.incrementAndGet();
+            CountDownLatch latch = release;
+            if (latch != null) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            Object value = super.get(key);
+            if (writtenWhileRead != null) {
+                String written = writtenWhileRead;
+                writtenWhileRead = null;
+                near.set(written, "written", 0);
+            }
+            return value;
+        }
+    }
+
+    private RemoteCache remote;
+    private static NearCacheImpl near;
+    private NearCacheImpl cache;
+
+    @Before
+    public void setUp() {
+        remote = new RemoteCache();
+        cache = new NearCacheImpl(remote, 60, 1024 * 1024);
+        near = cache;
+    }
+
+    @Test
+    public void hotKeysAreReadOnce() {
+        remote.set("flag", "on", 0);
+        for (int i = 0; i < 10; i++) {
+            assertThat(cache.get("flag")).isEqualTo("on");
+        }
+        assertThat(remote.gets.get()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(9);
+    }
+
+    @Test(timeout = 10000)
+    public void errorsOfTheRemoteCacheDoNotBlockTheKey() throws Exception {
+        remote.set("flag", "on", 0);
+        remote.error = new StackOverflowError();
+        remote.release = new CountDownLatch(1);
+        final List<Throwable> failures = new ArrayList<>();
+        Thread loader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    cache.get("flag");
+                } catch (Throwable t) {
+                    synchronized (failures) {
+                        failures.add(t);
+                    }
+                }
+            }
+        };
+        loader.start();
+        while (remote.gets.get() == 0) {
+            Thread.yield();
+        }
+        Thread waiter = new Thread(loader);
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.yield();
+        }
+        remote.release.countDown();
+        loader.join();
+        waiter.join();
+        assertThat(failures).hasSize(2);
+        assertThat(failures.get(0)).isInstanceOf(StackOverflowError.class);
+        assertThat(failures.get(1)).isInstanceOf(StackOverflowError.class);
+
+        remote.error = null;
+        remote.release = null;
+        assertThat(cache.get("flag")).isEqualTo("on");
+    }
+
+    @Test
+    public void missingKeysAreCachedToo() {
+        assertThat(cache.get("missing")).isNull();
+        assertThat(cache.get("missing")).isNull();
+        assertThat(remote.gets.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void writesThroughTheCacheInvalidateTheLocalEntry() {
+        cache.set("key", "first", 0);
+        assertThat(cache.get("key")).isEqualTo("first");
+        cache.set("key", "second", 0);
+        assertThat(cache.get("key")).isEqualTo("second");
+        cache.delete("key");
+        assertThat(cache.get("key")).isNull();
+        cache.add("counter", 1L, 0);
+        assertThat(cache.get("counter")).isEqualTo(1L);
+        cache.incr("counter", 1);
+        assertThat(cache.get("counter")).isEqualTo(2L);
+        assertThat(remote.gets.get()).isEqualTo(5);
+    }
+
+    @Test
+    public void concurrentMissesShareOneRemoteGet() throws Exception {
+        remote.set("config", "blob", 0);
+        remote.release = new CountDownLatch(1);
+        final List<Object> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    Object value = cache.get("config");
+                    synchronized (results) {
+                        results.add(value);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        while (cache.getMisses() + cache.getCoalesced() < 4) {
+            Thread.sleep(10);
+        }
+        remote.release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(results).containsOnly("blob", "blob", "blob", "blob");
+        assertThat(remote.gets.get()).isEqualTo(1);
+        assertThat(cache.getCoalesced()).isEqualTo(3);
+    }
+
+    @Test
+    public void bulkGetsOnlyReadTheMissingKeys() {
+        remote.set("a", "1", 0);
+        remote.set("b", "2", 0);
+        assertThat(cache.get("a")).isEqualTo("1");
+        Map<String, Object> values = cache.get(new String[] { "a", "b", "c" });
+        assertThat(values.get("a")).isEqualTo("1");
+        assertThat(values.get("a")).isEqualTo("1");
+        assertThat(values.get("c")).isNull();
+        assertThat(remote.gets.get()).isEqualTo(3);
+        cache.get(new String[] { "a", "b", "c" });
+        assertThat(remote.gets.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void keysWrittenDuringABulkGetAreNotKept() {
+        remote.set("a", "1", 0);
+        remote.set("b", "2", 0);
+        remote.writtenWhileRead = "b";
+        Map<String, Object> values = cache.get(new String[] { "a", "b" });
+        assertThat(values.get("a")).isEqualTo("1");
+        assertThat(remote.gets.get()).isEqualTo(2);
+
+        assertThat(cache.get("a")).isEqualTo("1");
+        assertThat(cache.get("b")).isEqualTo("written");
+        assertThat(remote.gets.get()).isEqualTo(3);
+    }
+
+    @Test(expected = ConfigurationException.class)
+    public void localEntriesMustExpire() {
+        Play.configuration = new Properties();
+        Play.configuration.setProperty("cache.near.ttl", "0s");
+        NearCacheImpl.newInstance(remote);
+    }
+}
@@ -0,0 +1,239 @@
+package play.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ShardedCacheImplTest {
+
+    /**
+     * A cache whose time only moves when told to.
+     */
+    private static class ManualClockCache extends ShardedCacheImpl {
+
+        long now = 1000000;
+
+        ManualClockCache(long maxSize, int shards) {
+            super(maxSize, shards);
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+    }
+
+    @Test
+    public void addSetAndReplace() {
+        ShardedCacheImpl cache = new ShardedCacheImpl(1024 * 1024, 4);
+
+        cache.replace("key", "replaced", 0);
+        assertThat(cache.get("key")).isNull();
+        cache.add("key", "added", 0);
+        cache.add("key", "added again", 0);
+        assertThat(cache.get("key")).isEqualTo("added");
+        cache.set("key", "set", 0);
+        assertThat(cache.get("key")).isEqualTo("set");
+        cache.replace("key", "replaced", 0);
+        assertThat(cache.get("key")).isEqualTo("replaced");
+        cache.delete("key");
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void incrAndDecrKeepTheExpiration() {
+        ManualClockCache cache = new ManualClockCache(1024 * 1024, 4);
+
+        assertThat(cache.incr("counter", 1)).isEqualTo(-1);
+        cache.add("counter", 1, 2);
+        cache.now += 1000;
+        assertThat(cache.incr("counter", 4)).isEqualTo(5);
+        assertThat(cache.decr("counter", 3)).isEqualTo(2);
+        assertThat(cache.get("counter")).isEqualTo(2L);
+        cache.now += 1000;
+        assertThat(cache.get("counter")).isNull();
+        assertThat(cache.incr("counter", 1)).isEqualTo(-1);
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws Exception {
+        final ShardedCacheImpl cache = new ShardedCacheImpl(1024 * 1024, 4);
+        cache.set("counter", 0L, 0);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        cache.incr("counter", 1);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(cache.get("counter")).isEqualTo(80000L);
+    }
+
+    @Test
+    public void expiredEntriesAreDroppedByTheWheel() {
+        ManualClockCache cache = new ManualClockCache(1024 * 1024, 1);
+
+        cache.set("short", "value", 1);
+        cache.set("long", "value", 60);
+        cache.set("forever", "value", 0);
+        cache.now += 1500;
+        assertThat(cache.get("short")).isNull();
+        // Nothing read the expired entry, writing advances the wheel
+        cache.set("other", "value", 0);
+        assertThat(cache.count()).isEqualTo(3);
+        cache.now += 60000;
+        cache.set("other", "value", 0);
+        assertThat(cache.count()).isEqualTo(2);
+        assertThat(cache.get("forever")).isEqualTo("value");
+    }
+
+    @Test
+    public void evictsByEstimatedSize() {
+        int weight = ShardedCacheImpl.weigh("key000", new byte[1000]);
+        ShardedCacheImpl cache = new ShardedCacheImpl(weight * 10, 1);
+
+        cache.set("key000", new byte[1000], 0);
+        for (int i = 1; i < 100; i++) {
+            // Read again, so protected from the flow of new entries
+            cache.get("key000");
+            cache.set(String.format("key%03d", i), new byte[1000], 0);
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(weight * 10);
+        assertThat(cache.count()).isEqualTo(10);
+        assertThat(cache.get("key000")).isNotNull();
+        assertThat(cache.get("key099")).isNotNull();
+        assertThat(cache.get("key001")).isNull();
+    }
+
+    @Test
+    public void entriesHeavierThanAShardAreNotKept() {
+        int weight = ShardedCacheImpl.weigh("key000", new byte[1000]);
+        ShardedCacheImpl cache = new ShardedCacheImpl(weight * 10, 1);
+        for (int i = 0; i < 5; i++) {
+            cache.set(String.format("key%03d", i), new byte[1000], 0);
+        }
+        cache.set("big", new byte[1000], 0);
+
+        cache.set("big", new byte[weight * 10], 0);
+        assertThat(cache.get("big")).isNull();
+        cache.add("huge", new byte[weight * 10], 0);
+        assertThat(cache.get("huge")).isNull();
+        assertThat(cache.count()).isEqualTo(5);
+        assertThat(cache.size()).isEqualTo(weight * 5L);
+        assertThat(cache.get("key000")).isNotNull();
+    }
+
+    @Test
+    public void clearEmptiesEveryShard() {
+        ShardedCacheImpl cache = new ShardedCacheImpl(1024 * 1024, 8);
+        for (int i = 0; i < 100; i++) {
+            cache.set("key" + i, i, 0);
+        }
+        assertThat(cache.count()).isEqualTo(100);
+        cache.clear();
+        assertThat(cache.count()).isEqualTo(0);
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.get("key1")).isNull();
+    }
+
+    @Test
+    public void clearDuringADelete() {
+        ShardedCacheImpl cache = new ShardedCacheImpl(1024 * 1024, 1);
+        cache.set("a", "value", 0);
+        cache.set("b", "value", 0);
+        // A delete that removed its entry from the map and waits for the lock
+        ShardedCacheImpl.Entry entry = cache.shards[0].map.remove("a");
+        cache.clear();
+        cache.shards[0].afterRemove(entry);
+
+        cache.set("c", "value", 0);
+        assertThat(cache.size()).isEqualTo(ShardedCacheImpl.weigh("c", "value"));
+        cache.delete("c");
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void clearRacingDeletesKeepsTheSizeRight() throws Exception {
+        final ShardedCacheImpl cache = new ShardedCacheImpl(1024 * 1024, 1);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int offset = i;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; running.get(); j++) {
+                        String key = String.format("key%02d", (j + offset) % 20);
+                        cache.set(key, "value", 0);
+                        cache.get(key);
+                        cache.delete(key);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        for (int i = 0; i < 100000; i++) {
+            cache.clear();
+        }
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < 20; i++) {
+            cache.delete(String.format("key%02d", i));
+        }
+        assertThat(cache.count()).isEqualTo(0);
+        assertThat(cache.size()).isEqualTo(0);
+
+        for (int i = 0; i < 20; i++) {
+            cache.set(String.format("key%02d", i), "value", 0);
+        }
+        assertThat(cache.count()).isEqualTo(20);
+        assertThat(cache.size()).isEqualTo(20L * ShardedCacheImpl.weigh("key00", "value"));
+        for (int i = 0; i < 20; i++) {
+            cache.delete(String.format("key%02d", i));
+        }
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void multiOperations() {
+        ShardedCacheImpl cache = new ShardedCacheImpl(1024 * 1024, 8);
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("fragment" + i, "html " + i);
+        }
+        values.put("counter1", 1L);
+        values.put("counter2", 10L);
+        cache.setMulti(values, 60);
+        assertThat(cache.count()).isEqualTo(102);
+        assertThat(cache.get("fragment42")).isEqualTo("html 42");
+
+        Map<String, Long> counters = cache.incrMulti(new String[] { "counter1", "counter2", "missing" }, 2);
+        assertThat(counters.get("counter1")).isEqualTo(3L);
+        assertThat(counters.get("counter2")).isEqualTo(12L);
+        assertThat(counters.get("missing")).isEqualTo(-1L);
+
+        cache.deleteMulti(values.keySet().toArray(new String[values.size()]));
+        assertThat(cache.count()).isEqualTo(0);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,58 @@
+package play.db.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.CascadeType;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CascadePlanTest {
+
+    public static class Parent extends JPABase {
+        @OneToMany(cascade = CascadeType.ALL)
+        public List<Child> children = new ArrayList<>();
+
+        @OneToMany
+        public List<Child> others = new ArrayList<>();
+
+        public String name;
+    }
+
+    public static class Child extends JPABase {
+        @ManyToOne(cascade = CascadeType.PERSIST)
+        public Parent parent;
+
+        @ManyToOne(cascade = CascadeType.ALL)
+        public transient Parent ignored;
+    }
+
+    public static class SpecialChild extends Child {
+        @ManyToOne(cascade = CascadeType.MERGE)
+        public Parent merged;
+    }
+
+    @Test
+    public void onlyCascadingRelationsArePlanned() throws Exception {
+        CascadePlan plan = CascadePlan.of(Parent.class);
+        assertThat(plan.fields).hasSize(1);
+        assertThat(plan.fields[0].field.getName()).isEqualTo("children");
+        assertThat(CascadePlan.of(Parent.class)).isSameAs(plan);
+
+        Parent parent = new Parent();
+        assertThat(plan.fields[0].get(parent)).isSameAs(parent.children);
+    }
+
+    @Test
+    public void inheritedRelationsArePlanned() throws Exception {
+        CascadePlan plan = CascadePlan.of(SpecialChild.class);
+        assertThat(plan.fields).hasSize(1);
+        SpecialChild child = new SpecialChild();
+        child.parent = new Parent();
+        assertThat(plan.fields[0].get(child)).isSameAs(child.parent);
+    }
+}
@@ -0,0 +1,55 @@
+package play.db.jpa;
+
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class JPQLTest {
+
+    private JPQL jpql;
+
+    @Before
+    public void setUp() {
+        Play.configuration = new Properties();
+        jpql = new JPQL();
+    }
+
+    @Test
+    public void findQueries() {
+        assertThat(jpql.createFindByQuery("default", "User", "User", null)).isEqualTo("from User");
+        assertThat(jpql.createFindByQuery("default", "User", "User", "byNameAndAgeGreaterThan", "bob", 20))
+                .isEqualTo("from User where name = ?1 AND age > ?2");
+        assertThat(jpql.createFindByQuery("default", "User", "User", "name", "bob")).isEqualTo("from User where name = ?1");
+        assertThat(jpql.createFindByQuery("default", "User", "User", "name", (Object[]) null))
+                .isEqualTo("from User where name = null");
+        assertThat(jpql.createFindByQuery("default", "User", "User", "order by name")).isEqualTo("from User order by name");
+    }
+
+    @Test
+    public void countAndDeleteQueries() {
+        assertThat(jpql.createCountQuery("default", "User", "User", "byName", "bob"))
+                .isEqualTo("select count(*) from User where name = ?1");
+        assertThat(jpql.createCountQuery("default", "User", "User", "name", "bob"))
+                .isEqualTo("select count(*) from User e where name = ?1");
+        assertThat(jpql.createDeleteQuery("User", "User", "name", "bob")).isEqualTo("delete from User where name = ?1");
+        assertThat(jpql.createDeleteQuery("User", "User", "from User where age > 1")).isEqualTo("delete from User where age > 1");
+    }
+
+    @Test
+    public void queriesAreBuiltOncePerShape() {
+        String first = jpql.createFindByQuery("default", "User", "User", "byName", "bob");
+        assertThat(jpql.createFindByQuery("default", "User", "User", "byName", "alice")).isSameAs(first);
+        // Not the same query for another entity or another kind of query
+        assertThat(jpql.createFindByQuery("default", "Group", "Group", "byName", "admins")).isEqualTo("from Group where name = ?1");
+        assertThat(jpql.createCountQuery("default", "User", "User", "byName", "bob")).startsWith("select count(*)");
+        // Nor when the number of parameters changes what is built
+        assertThat(jpql.createFindByQuery("default", "User", "User", "name", "bob")).isEqualTo("from User where name = ?1");
+        assertThat(jpql.createFindByQuery("default", "User", "User", "name", (Object[]) null))
+                .isEqualTo("from User where name = null");
+    }
+}
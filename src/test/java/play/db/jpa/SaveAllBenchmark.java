@@ -0,0 +1,92 @@
+package play.db.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+
+import org.hibernate.ejb.Ejb3Configuration;
+
+import play.Play;
+
+/**
+ * Inserts per second into an in-memory H2 database, one save() at a time and with GenericModel.saveAll.
+ * <p>
+ * Not a unit test: run it with <code>java play.db.jpa.SaveAllBenchmark</code>.
+ */
+public class SaveAllBenchmark {
+
+    private static final int ROWS = 10000;
+
+    @Entity
+    public static class Row extends GenericModel {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE)
+        public Long id;
+
+        public String name;
+        public int value;
+
+        @Override
+        public Object _key() {
+            return id;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Play.configuration = new Properties();
+        Ejb3Configuration cfg = new Ejb3Configuration();
+        cfg.addAnnotatedClass(Row.class);
+        cfg.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        cfg.setProperty("hibernate.connection.url", "jdbc:h2:mem:saveall;DB_CLOSE_DELAY=-1");
+        cfg.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        cfg.setProperty("hibernate.hbm2ddl.auto", "create");
+        cfg.setProperty("hibernate.jdbc.batch_size", "50");
+        cfg.setInterceptor(new HibernateInterceptor());
+        EntityManagerFactory emf = cfg.buildEntityManagerFactory();
+        try {
+            // Warm up
+            run(emf, false);
+            run(emf, true);
+            System.out.println(String.format("save():    %,8d rows/s", run(emf, false)));
+            System.out.println(String.format("saveAll(): %,8d rows/s", run(emf, true)));
+        } finally {
+            emf.close();
+        }
+    }
+
+    private static long run(EntityManagerFactory emf, boolean batched) {
+        EntityManager em = emf.createEntityManager();
+        JPA.bindForCurrentThread(JPA.DEFAULT, em, false);
+        try {
+            em.getTransaction().begin();
+            List<Row> rows = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                Row row = new Row();
+                row.name = "row" + i;
+                row.value = i;
+                rows.add(row);
+            }
+            long start = System.nanoTime();
+            if (batched) {
+                GenericModel.saveAll(rows);
+            } else {
+                for (Row row : rows) {
+                    row.save();
+                }
+            }
+            em.getTransaction().commit();
+            return ROWS * 1000000000L / (System.nanoTime() - start);
+        } finally {
+            JPA.unbindForCurrentThread(JPA.DEFAULT);
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package play.db.jpa;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import javax.persistence.CascadeType;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+import org.hibernate.ejb.Ejb3Configuration;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import play.Play;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class SaveAllTest {
+
+    private static EntityManagerFactory emf;
+    private EntityManager em;
+
+    @Entity
+    public static class Item extends GenericModel {
+        @Id
+        @GeneratedValue
+        public Long id;
+
+        public String name;
+
+        @ManyToOne(cascade = CascadeType.PERSIST)
+        public Tag tag;
+
+        @Override
+        public Object _key() {
+            return id;
+        }
+    }
+
+    @Entity
+    public static class Tag extends GenericModel {
+        @Id
+        @GeneratedValue
+        public Long id;
+
+        public String name;
+
+        @Override
+        public Object _key() {
+            return id;
+        }
+    }
+
+    @BeforeClass
+    public static void createDatabase() {
+        Play.configuration = new Properties();
+        Ejb3Configuration cfg = new Ejb3Configuration();
+        cfg.addAnnotatedClass(Item.class);
+        cfg.addAnnotatedClass(Tag.class);
+        cfg.setProperty("hibernate.connection.driver_class", "org.h2.Driver");
+        cfg.setProperty("hibernate.connection.url", "jdbc:h2:mem:saveall-test;DB_CLOSE_DELAY=-1");
+        cfg.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        cfg.setProperty("hibernate.hbm2ddl.auto", "create");
+        cfg.setInterceptor(new HibernateInterceptor());
+        emf = cfg.buildEntityManagerFactory();
+    }
+
+    @AfterClass
+    public static void dropDatabase() {
+        emf.close();
+    }
+
+    @Before
+    public void begin() {
+        em = emf.createEntityManager();
+        JPA.bindForCurrentThread(JPA.DEFAULT, em, false);
+        em.getTransaction().begin();
+    }
+
+    @After
+    public void rollback() {
+        em.getTransaction().rollback();
+        JPA.unbindForCurrentThread(JPA.DEFAULT);
+        em.close();
+    }
+
+    private static List<Item> items(int count, Tag tag) {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Item item = new Item();
+            item.name = "item" + i;
+            item.tag = tag;
+            items.add(item);
+        }
+        return items;
+    }
+
+    @Test
+    public void entitiesAreFlushedAndDetachedByBatch() {
+        List<Item> items = items(120, null);
+        assertThat(GenericModel.saveAll(items, 50)).isEqualTo(120);
+
+        assertThat(em.createQuery("select count(i) from SaveAllTest$Item i").getSingleResult()).isEqualTo(120L);
+        assertThat(em.contains(items.get(0))).isFalse();
+        assertThat(em.contains(items.get(119))).isTrue();
+        for (Item item : items) {
+            assertThat(item.id).isNotNull();
+            assertThat(item.willBeSaved).isFalse();
+        }
+    }
+
+    @Test
+    public void savesCascadeAndUpdatesAreWritten() {
+        Tag tag = new Tag();
+        tag.name = "new";
+        List<Item> items = items(3, tag);
+        GenericModel.saveAll(items, 2);
+        assertThat(tag.id).isNotNull();
+
+        Item item = em.find(Item.class, items.get(2).id);
+        item.name = "renamed";
+        List<Item> updated = new ArrayList<>();
+        updated.add(item);
+        GenericModel.saveAll(updated);
+        em.clear();
+
+        assertThat(em.find(Item.class, item.id).name).isEqualTo("renamed");
+        assertThat(GenericModel.saveAll(new ArrayList<Item>())).isEqualTo(0);
+    }
+
+    @Test
+    public void entitiesAreIteratedOnce() {
+        final Iterator<Item> cursor = items(5, null).iterator();
+        Iterable<Item> once = new Iterable<Item>() {
+            @Override
+            public Iterator<Item> iterator() {
+                return cursor;
+            }
+        };
+        assertThat(GenericModel.saveAll(once)).isEqualTo(5);
+        assertThat(em.createQuery("select count(i) from SaveAllTest$Item i").getSingleResult()).isEqualTo(5L);
+    }
+}
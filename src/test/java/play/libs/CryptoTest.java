@@ -0,0 +1,86 @@
+package play.libs;
+
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.exceptions.UnexpectedException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CryptoTest {
+
+    private static final String FOX = "The quick brown fox jumps over the lazy dog";
+
+    private String secretKey;
+
+    @Before
+    public void setUp() {
+        Play.configuration = new Properties();
+        secretKey = Play.secretKey;
+        Play.secretKey = "new-secret";
+    }
+
+    @After
+    public void tearDown() {
+        Play.secretKey = secretKey;
+    }
+
+    @Test
+    public void signsWithHmac() {
+        assertThat(Crypto.sign(FOX, "key".getBytes())).isEqualTo("de7c9b85b8b78aa6bc8a7a36f70a90701c9db4d9");
+        assertThat(Crypto.sign(FOX, "key".getBytes())).isEqualTo("de7c9b85b8b78aa6bc8a7a36f70a90701c9db4d9");
+        assertThat(Crypto.sign(FOX, "key".getBytes(), "HmacSHA256"))
+                .isEqualTo("f7bc83f430538424b13298e6aa6fb143ef4d59a14946175997479dbc2d1a3cd8");
+        assertThat(Crypto.sign(FOX, new byte[0])).isEqualTo(FOX);
+    }
+
+    @Test
+    public void cookiesSignedWithPreviousSecretsAreValid() {
+        Play.secretKey = "old-secret";
+        String old = Crypto.signCookie("data");
+        Play.secretKey = "new-secret";
+        assertThat(Crypto.verifyCookie("data", old)).isFalse();
+
+        Play.configuration.setProperty("application.secret.previous", "older-secret, old-secret");
+        assertThat(Crypto.verifyCookie("data", old)).isTrue();
+        assertThat(Crypto.verifyCookie("data", Crypto.signCookie("data"))).isTrue();
+        assertThat(Crypto.signCookie("data")).isEqualTo(Crypto.sign("data", "new-secret".getBytes()));
+        assertThat(Crypto.verifyCookie("other", old)).isFalse();
+    }
+
+    @Test
+    public void cookiesSignedWithHmacSHA1StayValidWithHmacSHA256OnlyWhileMigrating() {
+        String sha1 = Crypto.signCookie("data");
+        Play.configuration.setProperty("application.signature", "HmacSHA256");
+        String sha256 = Crypto.signCookie("data");
+        assertThat(sha256).hasSize(64);
+        assertThat(Crypto.verifyCookie("data", sha256)).isTrue();
+        assertThat(Crypto.verifyCookie("data", sha1)).isFalse();
+
+        Play.configuration.setProperty("application.signature.previous", "HmacSHA1");
+        assertThat(Crypto.verifyCookie("data", sha1)).isTrue();
+        assertThat(Crypto.verifyCookie("other", sha1)).isFalse();
+
+        Play.configuration.setProperty("application.signature", "HmacSHA1");
+        Play.configuration.remove("application.signature.previous");
+        assertThat(Crypto.verifyCookie("data", sha256)).isFalse();
+    }
+
+    @Test
+    public void encryptsWithAES() {
+        String key = "0123456789abcdef";
+        String encrypted = Crypto.encryptAES("secret message", key);
+        assertThat(Crypto.encryptAES("secret message", key)).isEqualTo(encrypted);
+        assertThat(Crypto.decryptAES(encrypted, key)).isEqualTo("secret message");
+        try {
+            Crypto.decryptAES(encrypted.substring(2) + "00", key);
+        } catch (UnexpectedException e) {
+            // Bad padding
+        }
+        assertThat(Crypto.decryptAES(encrypted, key)).isEqualTo("secret message");
+    }
+}
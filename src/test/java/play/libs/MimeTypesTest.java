@@ -1,6 +1,8 @@
 package play.libs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -46,4 +48,14 @@ public class MimeTypesTest {
             Response.current.set(originalResponse);
         }
     }
+
+    @Test
+    public void textLikeContentTypesAreCompressible() {
+        assertTrue(MimeTypes.isCompressible("text/html; charset=utf-8"));
+        assertTrue(MimeTypes.isCompressible("application/json"));
+        assertTrue(MimeTypes.isCompressible("image/svg+xml"));
+        assertFalse(MimeTypes.isCompressible("image/png"));
+        assertFalse(MimeTypes.isCompressible("application/zip"));
+        assertFalse(MimeTypes.isCompressible(null));
+    }
 }
@@ -0,0 +1,270 @@
+package play.mvc;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Invoker;
+import play.Play;
+import play.cache.Cache;
+import play.cache.CacheFor;
+import play.cache.CacheImpl;
+import play.cache.ShardedCacheImpl;
+import play.mvc.results.RenderText;
+import play.mvc.results.Result;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ActionCacheTest {
+
+    private CacheImpl previous;
+
+    private ExecutorService previousExecutor;
+
+    private QueuedInvocations queue;
+
+    @CacheFor("1h")
+    public void page() {
+    }
+
+    @CacheFor(value = "1h", staleWhileRevalidate = "1h", headers = "Accept-Language", session = "role")
+    public void localizedPage() {
+    }
+
+    private CacheFor cacheFor(String action) throws Exception {
+        return getClass().getMethod(action).getAnnotation(CacheFor.class);
+    }
+
+    @Before
+    public void setUp() {
+        Play.configuration = new Properties();
+        previous = Cache.cacheImpl;
+        Cache.cacheImpl = ShardedCacheImpl.newInstance();
+        Cache.clear();
+        Http.Request request = new Http.Request();
+        request.url = "/page";
+        request.querystring = "";
+        Http.Request.current.set(request);
+        Scope.Session.current.set(new Scope.Session());
+        previousExecutor = Invoker.virtualExecutor;
+        queue = new QueuedInvocations();
+        Invoker.virtualExecutor = queue;
+    }
+
+    @After
+    public void tearDown() {
+        Invoker.virtualExecutor = previousExecutor;
+        Cache.cacheImpl = previous;
+        Scope.Session.current.remove();
+    }
+
+    @Test
+    public void keyIncludesTheSelectedHeadersAndSessionValues() throws Exception {
+        Http.Request request = Http.Request.current();
+        request.headers.put("accept-language", new Http.Header("accept-language", "fr"));
+        Scope.Session.current().put("role", "admin");
+
+        assertThat(ActionCache.key(cacheFor("page"), request)).isEqualTo("urlcache:/page");
+        assertThat(ActionCache.key(cacheFor("localizedPage"), request))
+                .isEqualTo("urlcache:/page|h:Accept-Language=fr|s:role=admin");
+    }
+
+    @Test
+    public void concurrentMissesWaitForASingleComputation() throws Exception {
+        final CacheFor cacheFor = cacheFor("page");
+        final Http.Request request = Http.Request.current();
+        assertThat(ActionCache.get("urlcache:/page", request)).isNull();
+
+        final AtomicReference<Result> waited = new AtomicReference<>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                waited.set(ActionCache.get("urlcache:/page", request));
+            }
+        };
+        waiter.start();
+        awaitWaiting(waiter);
+        RenderText result = new RenderText("computed once");
+        ActionCache.set("urlcache:/page", cacheFor, result);
+        ActionCache.release("urlcache:/page");
+        waiter.join();
+
+        assertThat(waited.get()).isSameAs(result);
+        assertThat(ActionCache.get("urlcache:/page", request)).isInstanceOf(RenderText.class);
+    }
+
+    @Test
+    public void freshResultsAreServedFromTheCache() throws Exception {
+        CacheFor cacheFor = cacheFor("localizedPage");
+        Http.Request request = Http.Request.current();
+        String key = ActionCache.key(cacheFor, request);
+        assertThat(ActionCache.get(key, request)).isNull();
+        ActionCache.set(key, cacheFor, new RenderText("fresh"));
+        ActionCache.release(key);
+
+        assertThat(Cache.get(key)).isInstanceOf(ActionCache.Entry.class);
+        assertThat(ActionCache.get(key, request)).isInstanceOf(RenderText.class);
+    }
+
+    @Test
+    public void staleResultsAreServedWhileASingleRefreshRuns() throws Exception {
+        final CacheFor cacheFor = cacheFor("localizedPage");
+        final Http.Request request = Http.Request.current();
+        final String key = ActionCache.key(cacheFor, request);
+        RenderText stale = new RenderText("stale");
+        Cache.set(key, new ActionCache.Entry(stale, System.currentTimeMillis() - 1), "1h");
+
+        assertThat(ActionCache.get(key, request)).isSameAs(stale);
+        assertThat(queue.tasks).hasSize(1);
+        final ActionCache.Refresh refresh = (ActionCache.Refresh) queue.tasks.get(0);
+
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final RenderText fresh = new RenderText("fresh");
+        Thread refreshing = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    assertThat(refresh.lead()).isTrue();
+                    assertThat(ActionCache.get(key, request)).isNull();
+                    running.countDown();
+                    finish.await();
+                    ActionCache.set(key, cacheFor, fresh);
+                    ActionCache.release(key);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    refresh._finally();
+                }
+            }
+        };
+        refreshing.start();
+        running.await();
+        assertThat(ActionCache.get(key, request)).isSameAs(stale);
+        assertThat(ActionCache.get(key, request)).isSameAs(stale);
+        assertThat(queue.tasks).hasSize(1);
+
+        finish.countDown();
+        refreshing.join();
+        assertThat(ActionCache.get(key, request)).isSameAs(fresh);
+        assertThat(queue.tasks).hasSize(1);
+    }
+
+    @Test
+    public void failedRefreshesKeepTheStaleResultAndAreScheduledAgain() throws Exception {
+        CacheFor cacheFor = cacheFor("localizedPage");
+        Http.Request request = Http.Request.current();
+        String key = ActionCache.key(cacheFor, request);
+        RenderText stale = new RenderText("stale");
+        Cache.set(key, new ActionCache.Entry(stale, System.currentTimeMillis() - 1), "1h");
+        assertThat(ActionCache.get(key, request)).isSameAs(stale);
+
+        ActionCache.Refresh refresh = (ActionCache.Refresh) queue.tasks.get(0);
+        assertThat(refresh.lead()).isTrue();
+        ActionCache.release(key);
+        refresh.onException(new RuntimeException("action failed"));
+        refresh._finally();
+
+        assertThat(ActionCache.get(key, request)).isSameAs(stale);
+        assertThat(queue.tasks).hasSize(2);
+    }
+
+    @Test(timeout = 10000)
+    public void missesDoNotWaitForAQueuedRefresh() throws Exception {
+        Play.configuration.setProperty("play.cache.waitFor", "1h");
+        final CacheFor cacheFor = cacheFor("localizedPage");
+        final Http.Request request = new Http.Request();
+        request.url = "/page";
+        request.querystring = "";
+        // The timeout runs the test in another thread
+        Scope.Session.current.set(new Scope.Session());
+        final String key = ActionCache.key(cacheFor, request);
+        Cache.set(key, new ActionCache.Entry(new RenderText("stale"), System.currentTimeMillis() - 1), "1h");
+        ActionCache.get(key, request);
+        ActionCache.Refresh refresh = (ActionCache.Refresh) queue.tasks.get(0);
+
+        // The entry expires before the pool runs the refresh
+        Cache.delete(key);
+        assertThat(ActionCache.get(key, request)).isNull();
+
+        final AtomicReference<Result> waited = new AtomicReference<>();
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                waited.set(ActionCache.get(key, request));
+            }
+        };
+        waiter.start();
+        awaitWaiting(waiter);
+        RenderText result = new RenderText("computed once");
+        ActionCache.set(key, cacheFor, result);
+        ActionCache.release(key);
+        waiter.join();
+        assertThat(waited.get()).isSameAs(result);
+
+        // The refresh has nothing left to do once it runs
+        assertThat(refresh.lead()).isFalse();
+        refresh._finally();
+        assertThat(ActionCache.get(key, request)).isSameAs(result);
+    }
+
+    private static void awaitWaiting(Thread thread) {
+        while (thread.getState() != Thread.State.TIMED_WAITING) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Keeps the scheduled invocations instead of running them, as a saturated pool would.
+     */
+    static class QueuedInvocations extends AbstractExecutorService {
+
+        final List<Runnable> tasks = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            tasks.add(task);
+            return new FutureTask<Void>(task, null);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return tasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
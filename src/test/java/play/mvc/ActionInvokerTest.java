@@ -1,16 +1,30 @@
 package play.mvc;
 
+import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 import play.Play;
+import play.PlayBuilder;
 import play.classloading.ApplicationClasses;
 import play.exceptions.JavaExecutionException;
 import play.exceptions.PlayException;
 import play.exceptions.UnexpectedException;
 import play.mvc.results.Forbidden;
+import play.mvc.results.RenderTemplate;
 import play.mvc.results.Result;
+import play.server.ResponseBody;
+import play.templates.Template;
 
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelFuture;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -23,9 +37,18 @@ public class ActionInvokerTest {
 //        new PlayBuilder().build();
 //    }
 
+    private String secretKey;
+
     @Before
     public void setUp() throws Exception {
         Http.Request.current.set(new Http.Request());
+        secretKey = Play.secretKey;
+    }
+
+    @org.junit.After
+    public void tearDown() {
+        Play.secretKey = secretKey;
+        Http.Response.current.remove();
     }
 
     @Test
@@ -145,10 +168,185 @@ public class ActionInvokerTest {
         assertEquals("actionMethod", m.invoke( new ActionClassChild()));
     }
 
+    @Test
+    public void controllerPlanFiltersInterceptorsByAction() throws Exception {
+        new PlayBuilder().build();
+        ControllerPlan plan = ControllerPlan.of(InterceptedController.class);
+
+        assertEquals(2, plan.befores("Intercepted.index").length);
+        assertEquals("second", plan.befores("Intercepted.index")[0].method.getName());
+        assertEquals("first", plan.befores("Intercepted.index")[1].method.getName());
+        assertEquals(0, plan.befores("Intercepted.show").length);
+        assertEquals(1, plan.befores("Intercepted.edit").length);
+        assertEquals("first", plan.befores("Intercepted.edit")[0].method.getName());
+        assertEquals(0, plan.afters("Intercepted.index").length);
+        assertSame(plan, ControllerPlan.of(InterceptedController.class));
+
+        ControllerPlan.Interceptor onError = plan.catches()[0];
+        assertTrue(onError.catches(new IllegalStateException()));
+        assertFalse(onError.catches(new Exception()));
+        assertTrue(plan.finallies("Intercepted.index")[0].takesThrowable);
+    }
+
+    @Test
+    public void methodCallInvokesThroughMethodHandle() throws Exception {
+        ControllerPlan.MethodCall call = ControllerPlan.call(TestController.class.getMethod("nonStaticJavaMethod"));
+        assertFalse(call.isStatic);
+        assertTrue(call.isAction);
+        assertEquals("non-static", call.invoke(new TestController(), null));
+
+        call = ControllerPlan.call(ActionClass.class.getDeclaredMethod("beforeMethod"));
+        assertTrue(call.isStatic);
+        assertFalse(call.isAction);
+        assertEquals("before", call.invoke(null, new Object[0]));
+    }
+
+    @Test
+    public void methodCallReportsArgumentMismatchesDirectly() throws Exception {
+        Method method = ArgumentsController.class.getMethod("repeat", String.class, long.class);
+        ControllerPlan.MethodCall call = ControllerPlan.call(method);
+        assertEquals("aa", call.invoke(null, new Object[] { "a", 2L }));
+        // Widened as with reflection
+        assertEquals("aaa", call.invoke(null, new Object[] { "a", 3 }));
+        try {
+            call.invoke(null, new Object[] { 1, 2L });
+            fail("binding bug reported as thrown by the action");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            call.invoke(null, new Object[] { "a", null });
+            fail("binding bug reported as thrown by the action");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            call.invoke(null, new Object[] { "fail", 1L });
+            fail("exception of the action not wrapped");
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getTargetException() instanceof ClassCastException);
+        }
+    }
+
+    @Test
+    public void controllerPlanKeepsActionMethods() throws Exception {
+        new PlayBuilder().build();
+        ControllerPlan plan = ControllerPlan.of(TestController.class);
+        Method method = TestController.class.getMethod("staticJavaMethod");
+        assertEquals(method, plan.action("staticJavaMethod"));
+        assertSame(plan.action("staticJavaMethod"), plan.action("STATICJAVAMETHOD"));
+        assertNull(plan.action("notExistingMethod"));
+        assertNull(ControllerPlan.of(ActionClass.class).action("beforeMethod"));
+    }
+
     private void ensureNotActionMethod(String name) throws NoSuchMethodException {
         assertNull(ActionInvoker.findActionMethod(ActionClass.class.getDeclaredMethod(name).getName(), ActionClass.class));
     }
 
+    @Test
+    public void streamedTemplatesSaveTheSessionOnceRendered() throws Exception {
+        final Http.Response response = streaming();
+        response.out = new ResponseBody();
+
+        ActionInvoker.applyStreamed(Http.Request.current(), response, new RenderTemplate(new TokenTemplate(), new HashMap<String, Object>()));
+        assertTrue(response.cookies.get(Scope.COOKIE_PREFIX + "_SESSION").value.contains("___AT"));
+    }
+
+    @Test
+    public void streamedTemplatesSaveTheSessionBeforeTheHeadersAreSent() throws Exception {
+        final Http.Response response = streaming();
+        final Map<String, Http.Cookie> sent = new HashMap<>();
+        response.out = new ResponseBody(new ResponseBody.Flusher() {
+            @Override
+            public boolean commit() {
+                response.commit();
+                sent.putAll(response.cookies);
+                return true;
+            }
+
+            @Override
+            public ChannelFuture write(ChannelBuffer content, boolean last) {
+                return null;
+            }
+        }, 100);
+
+        ActionInvoker.applyStreamed(Http.Request.current(), response, new RenderTemplate(new TokenTemplate(), new HashMap<String, Object>()));
+        assertTrue(((ResponseBody) response.out).isCommitted());
+        assertTrue(sent.get(Scope.COOKIE_PREFIX + "_SESSION").value.contains("___AT"));
+    }
+
+    @Test
+    public void streamedTemplateErrorsAreUnexpectedExceptions() throws Exception {
+        Http.Response response = streaming();
+        response.out = new ResponseBody();
+        TokenTemplate template = new TokenTemplate();
+        template.error = new IllegalStateException("broken");
+
+        try {
+            ActionInvoker.applyStreamed(Http.Request.current(), response, new RenderTemplate(template, new HashMap<String, Object>()));
+            fail();
+        } catch (UnexpectedException e) {
+            assertSame(template.error, e.getCause());
+        }
+    }
+
+    private static Http.Response streaming() {
+        Play.configuration = new Properties();
+        Play.secretKey = "secret";
+        Play.configuration.setProperty("play.template.streaming", "true");
+        Http.Response response = new Http.Response();
+        Http.Response.current.set(response);
+        Scope.Session.current.set(new Scope.Session());
+        Scope.Flash.current.set(new Scope.Flash());
+        return response;
+    }
+
+    /**
+     * Puts an authenticity token into the session while rendering, as #{authenticityToken} does.
+     */
+    static class TokenTemplate extends Template {
+
+        RuntimeException error;
+
+        TokenTemplate() {
+            name = "token.html";
+        }
+
+        @Override
+        public void compile() {
+        }
+
+        @Override
+        protected String internalRender(Map<String, Object> args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void render(Map<String, Object> args, Writer out) {
+            try {
+                out.write("<input value=\"" + Scope.Session.current().getAuthenticityToken() + "\">");
+                out.flush();
+                if (error != null) {
+                    throw error;
+                }
+                for (int i = 0; i < 100; i++) {
+                    out.write("<p>streamed</p>");
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public static class ArgumentsController extends Controller {
+        public static String repeat(String s, long times) {
+            if (s.equals("fail")) {
+                throw new ClassCastException("thrown by the action");
+            }
+            return StringUtils.repeat(s, (int) times);
+        }
+    }
+
     public static class TestController extends Controller {
         public static String staticJavaMethod() {
             return "static";
@@ -227,6 +425,24 @@ public class ActionInvokerTest {
 
     }
 
+    public static class InterceptedController extends Controller {
+        @play.mvc.Before(priority = 2, unless = "Intercepted.show")
+        static void first() {
+        }
+
+        @play.mvc.Before(priority = 1, only = { "Intercepted.index", "Intercepted.list" })
+        static void second() {
+        }
+
+        @Catch(IllegalStateException.class)
+        static void onError(Throwable t) {
+        }
+
+        @Finally
+        static void cleanup(Throwable t) {
+        }
+    }
+
     private static class ActionClassChild extends ActionClass {
 
     }
@@ -0,0 +1,220 @@
+package play.mvc;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.CorePlugin;
+import play.Play;
+import play.PlayBuilder;
+import play.data.binding.CachedBoundActionMethodArgs;
+import play.exceptions.UnexpectedException;
+import play.mvc.results.NotModified;
+import play.server.ResponseBody;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class AutoETagsTest {
+
+    private Http.Request request;
+    private Http.Response response;
+
+    @AutoETag
+    public void annotated() {
+    }
+
+    public void plain() {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        new PlayBuilder().build();
+        request = new Http.Request();
+        request.method = "GET";
+        request.invokedMethod = getClass().getMethod("annotated");
+        response = new Http.Response();
+        response.out = new ByteArrayOutputStream();
+        response.contentType = "application/json";
+        Http.Request.current.set(request);
+        CachedBoundActionMethodArgs.init();
+        Versioned.version = "1";
+        AutoETags.clearValidators();
+    }
+
+    @After
+    public void tearDown() {
+        CachedBoundActionMethodArgs.clear();
+        Http.Request.current.remove();
+    }
+
+    private void write(String body) throws Exception {
+        response.out.reset();
+        response.out.write(body.getBytes("UTF-8"));
+    }
+
+    @Test
+    public void annotatedActionsGetTheHashOfTheirBody() throws Exception {
+        write("{\"id\":1}");
+        AutoETags.apply(request, response);
+        String etag = response.getHeader("ETag");
+        assertThat(etag).startsWith("\"").hasSize(34);
+        assertThat(response.status).isEqualTo(200);
+
+        Http.Response other = new Http.Response();
+        other.out = new ResponseBody();
+        other.out.write("{\"id\":1}".getBytes("UTF-8"));
+        AutoETags.apply(request, other);
+        assertThat(other.getHeader("ETag")).isEqualTo(etag);
+    }
+
+    @Test
+    public void matchingRequestsGetA304WithoutBody() throws Exception {
+        write("{\"id\":1}");
+        AutoETags.apply(request, response);
+        String etag = response.getHeader("ETag");
+
+        response = new Http.Response();
+        response.out = new ByteArrayOutputStream();
+        response.contentType = "application/json";
+        write("{\"id\":1}");
+        request.headers.put("if-none-match", new Http.Header("if-none-match", "\"other\", W/" + etag));
+        AutoETags.apply(request, response);
+        assertThat(response.status).isEqualTo(304);
+        assertThat(response.out.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void otherActionsAreHashedByContentType() throws Exception {
+        request.invokedMethod = getClass().getMethod("plain");
+        write("{\"id\":1}");
+        AutoETags.apply(request, response);
+        assertThat(response.getHeader("ETag")).isNull();
+
+        Play.configuration.setProperty("http.autoETag", "text/html, application/json");
+        response.contentType = "application/json; charset=utf-8";
+        AutoETags.apply(request, response);
+        assertThat(response.getHeader("ETag")).isNotNull();
+    }
+
+    @Test
+    public void onlySuccessfulReadsAreHashed() throws Exception {
+        write("{\"id\":1}");
+        request.method = "POST";
+        assertThat(AutoETags.applies(request, response)).isFalse();
+        request.method = "GET";
+        response.status = 404;
+        assertThat(AutoETags.applies(request, response)).isFalse();
+        response.status = 200;
+        response.setHeader("Etag", "\"set by the action\"");
+        assertThat(AutoETags.applies(request, response)).isFalse();
+    }
+
+    @Test
+    public void validatorETagsAnswer304WithoutRunningTheAction() throws Exception {
+        validated("show");
+        AutoETags.validate(request, response);
+        String etag = response.getHeader("ETag");
+        assertThat(etag).startsWith("W/\"");
+
+        request.headers.put("if-none-match", new Http.Header("if-none-match", etag));
+        try {
+            AutoETags.validate(request, response);
+            throw new AssertionError("Expected a 304");
+        } catch (NotModified notModified) {
+            assertThat(notModified.getEtag()).isEqualTo(etag);
+        }
+
+        Versioned.version = "2";
+        response = new Http.Response();
+        AutoETags.validate(request, response);
+        assertThat(response.getHeader("ETag")).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void validatorsTakeTheParametersOfTheAction() throws Exception {
+        validated("show");
+        AutoETags.validate(request, response);
+        String etag = response.getHeader("ETag");
+
+        // Found in the superclass, and not mistaken for version(String)
+        request.controllerClass = Inherited.class;
+        AutoETags.clearValidators();
+        response = new Http.Response();
+        AutoETags.validate(request, response);
+        assertThat(response.getHeader("ETag")).isEqualTo(etag);
+
+        validated("instance");
+        try {
+            AutoETags.validate(request, response);
+            throw new AssertionError("Expected the validator to be missing");
+        } catch (UnexpectedException e) {
+            assertThat(e.getMessage()).contains("instanceVersion");
+        }
+    }
+
+    @Test
+    public void validatorsAreLookedUpAgainWhenTheApplicationStarts() throws Exception {
+        validated("show");
+        AutoETags.validate(request, response);
+        String etag = response.getHeader("ETag");
+
+        // What a reload of the controller would look like
+        request.controllerClass = Reloaded.class;
+        response = new Http.Response();
+        AutoETags.validate(request, response);
+        assertThat(response.getHeader("ETag")).isEqualTo(etag);
+
+        new CorePlugin().onApplicationStart();
+        response = new Http.Response();
+        AutoETags.validate(request, response);
+        assertThat(response.getHeader("ETag")).isNotEqualTo(etag);
+    }
+
+    private void validated(String action) throws Exception {
+        request.controllerClass = Versioned.class;
+        request.action = "Versioned." + action;
+        request.invokedMethod = Versioned.class.getMethod(action);
+    }
+
+    public static class Versioned extends Controller {
+
+        // Parameter names, added by the LocalvariablesNamesEnhancer to the controllers of an application
+        public static final String[] $version0 = {};
+
+        static String version;
+
+        @AutoETag(validator = "version")
+        public static void show() {
+        }
+
+        @AutoETag(validator = "instanceVersion")
+        public static void instance() {
+        }
+
+        public static Object version(String other) {
+            return other;
+        }
+
+        public static Object version() {
+            return version;
+        }
+
+        public Object instanceVersion() {
+            return version;
+        }
+    }
+
+    public static class Inherited extends Versioned {
+    }
+
+    public static class Reloaded extends Controller {
+
+        public static final String[] $version0 = {};
+
+        public static Object version() {
+            return "reloaded";
+        }
+    }
+}
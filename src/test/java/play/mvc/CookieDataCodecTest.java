@@ -5,17 +5,29 @@ import static play.mvc.CookieDataCodec.decode;
 import static play.mvc.CookieDataCodec.encode;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
 import java.util.Set;
 
 import org.jboss.netty.handler.codec.http.cookie.Cookie;
 import org.jboss.netty.handler.codec.http.cookie.ServerCookieDecoder;
+import org.junit.After;
 import org.junit.Test;
 
+import play.Play;
+
 public class CookieDataCodecTest {
 
+    @After
+    public void tearDown() {
+        Play.configuration = new Properties();
+    }
+
     @Test
     public void flash_cookies_should_bake_in_a_header_and_value() throws UnsupportedEncodingException {
         Map<String, String> inMap = new HashMap<>(1);
@@ -187,4 +199,77 @@ public class CookieDataCodecTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void encoding_matches_url_encoder() throws UnsupportedEncodingException {
+        Random random = new Random(42);
+        String[] samples = { "", "plain", "a b+c&d=e%f", "caf\u00e9 \u20ac \ud83d\ude00", "lone \ud83d surrogate",
+                "~tilde*dot.dash-under_", "\u0000:\u007f" };
+        for (String sample : samples) {
+            assertEncodedLikeUrlEncoder(sample);
+        }
+        for (int i = 0; i < 200; i++) {
+            char[] chars = new char[random.nextInt(20)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) (random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0x10000));
+            }
+            assertEncodedLikeUrlEncoder(new String(chars));
+        }
+    }
+
+    private static void assertEncodedLikeUrlEncoder(String value) throws UnsupportedEncodingException {
+        Map<String, String> inMap = new HashMap<>(1);
+        inMap.put("key", value);
+        String data = encode(inMap);
+        assertThat(data).isEqualTo("key=" + URLEncoder.encode(value, "utf-8"));
+
+        Map<String, String> outMap = new HashMap<>(1);
+        decode(outMap, data);
+        assertThat(outMap.get("key")).isEqualTo(URLDecoder.decode(data.substring(4), "utf-8"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejects_truncated_escapes() throws UnsupportedEncodingException {
+        decode(new HashMap<String, String>(), "a=b%2");
+    }
+
+    @Test
+    public void binary_format_round_trips() throws UnsupportedEncodingException {
+        Map<String, String> inMap = new LinkedHashMap<>();
+        inMap.put("a", "b");
+        inMap.put("json", "{\"name\":\"caf\u00e9\",\"tags\":[\"x y\",\"z\"]}");
+        inMap.put("empty", "");
+        inMap.put("skipped", null);
+        String text = encode(inMap);
+
+        Play.configuration.setProperty("application.session.format", "binary");
+        String data = encode(inMap);
+        assertThat(data).startsWith("~");
+        assertThat(data.length()).isLessThan(text.length());
+
+        Map<String, String> outMap = new HashMap<>();
+        decode(outMap, data);
+        assertThat(outMap.size()).isEqualTo(3);
+        assertThat(outMap.get("a")).isEqualTo("b");
+        assertThat(outMap.get("json")).isEqualTo(inMap.get("json"));
+        assertThat(outMap.get("empty")).isEqualTo("");
+
+        // Both formats are read whatever the setting
+        outMap.clear();
+        decode(outMap, text);
+        assertThat(outMap.get("json")).isEqualTo(inMap.get("json"));
+        Play.configuration.remove("application.session.format");
+        outMap.clear();
+        decode(outMap, data);
+        assertThat(outMap.get("json")).isEqualTo(inMap.get("json"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binary_format_rejects_truncated_data() throws UnsupportedEncodingException {
+        Play.configuration.setProperty("application.session.format", "binary");
+        Map<String, String> inMap = new HashMap<>(1);
+        inMap.put("key", "value");
+        String data = encode(inMap);
+        decode(new HashMap<String, String>(), data.substring(0, data.length() - 2));
+    }
+
+}
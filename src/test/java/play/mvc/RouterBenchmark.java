@@ -0,0 +1,65 @@
+package play.mvc;
+
+import java.util.Map;
+import java.util.Properties;
+
+import play.Play;
+
+/**
+ * Compares the route index with the former linear scan over all the routes.
+ * <p>
+ * Not a unit test: run it with <code>java play.mvc.RouterBenchmark</code>.
+ */
+public class RouterBenchmark {
+
+    private static final int ITERATIONS = 200000;
+
+    public static void main(String[] args) {
+        Play.configuration = new Properties();
+        for (int size : new int[] { 10, 100, 1000 }) {
+            Router.routes.clear();
+            for (int i = 0; i < size; i++) {
+                Router.appendRoute("GET", "/section" + i + "/items/{id}", "Section" + i + ".show", null, null, null, 0);
+            }
+            // Requests spread over the whole routes file, the tail paying the most with a linear scan
+            String[] paths = new String[16];
+            for (int i = 0; i < paths.length; i++) {
+                paths[i] = "/section" + (size - 1 - i * size / paths.length) + "/items/42";
+            }
+
+            // Warm up
+            run(paths, true, ITERATIONS);
+            run(paths, false, ITERATIONS / 10);
+
+            long indexed = run(paths, true, ITERATIONS);
+            long linear = run(paths, false, ITERATIONS / 10) * 10;
+            System.out.println(String.format("%5d routes: indexed %6d ns/op, linear %6d ns/op", size, indexed / ITERATIONS,
+                    linear / ITERATIONS));
+        }
+    }
+
+    private static long run(String[] paths, boolean indexed, int iterations) {
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < iterations; i++) {
+            String path = paths[i % paths.length];
+            Map<String, String> args = indexed ? Router.route("GET", path) : linearRoute("GET", path);
+            found += args.size();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (found == 0) {
+            throw new IllegalStateException("No route found");
+        }
+        return elapsed;
+    }
+
+    private static Map<String, String> linearRoute(String method, String path) {
+        for (Router.Route route : Router.routes) {
+            Map<String, String> args = route.matches(method, path, null, null);
+            if (args != null) {
+                return args;
+            }
+        }
+        return null;
+    }
+}
@@ -7,6 +7,8 @@ import play.mvc.Http.Request;
 import play.mvc.results.NotFound;
 import play.mvc.results.RenderStatic;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -126,6 +128,84 @@ public class RouterTest {
         assertTrue("Musicfile [" + musicRequest.domain + "] from the right domain must be found", canRenderFile(musicRequest));
     }
     
+    @Test
+    public void test_routeKeepsDeclarationOrder() {
+        Play.configuration = new Properties();
+        Router.routes.clear();
+        appendRoute("GET", "/{id}", "Application.show");
+        appendRoute("GET", "/users/new", "Users.blank");
+        appendRoute("GET", "/users/{id}", "Users.show");
+        appendRoute("*", "/users/{id}/edit", "Users.edit");
+        appendRoute("GET", "/users/.*", "Users.catchAll");
+        appendRoute("GET", "/admin/panel/?", "Admin.index");
+        appendRoute("POST", "/users", "Users.create");
+
+        assertEquals("Application.show", Router.route("GET", "/users").get("action"));
+        assertEquals("Users.create", Router.route("POST", "/users").get("action"));
+        assertEquals("Users.blank", Router.route("GET", "/users/new").get("action"));
+        assertEquals("Users.show", Router.route("GET", "/users/12").get("action"));
+        assertEquals("12", Router.route("GET", "/users/12").get("id"));
+        assertEquals("Users.edit", Router.route("PUT", "/users/12/edit").get("action"));
+        assertEquals("Users.catchAll", Router.route("GET", "/users/12/friends").get("action"));
+        assertEquals("Admin.index", Router.route("GET", "/admin/panel").get("action"));
+        assertEquals("Admin.index", Router.route("GET", "/admin/panel/").get("action"));
+        assertEquals("Admin.index", Router.route("HEAD", "/admin/panel").get("action"));
+        assertTrue(Router.route("DELETE", "/users/12").isEmpty());
+
+        // The index follows modifications of the route list
+        Router.prependRoute("GET", "/users/{id}", "Users.override");
+        assertEquals("Users.override", Router.route("GET", "/users/12").get("action"));
+        Router.routes.remove(0);
+        assertEquals("Users.show", Router.route("GET", "/users/12").get("action"));
+    }
+
+    @Test
+    public void test_routeWithRegexInPath() {
+        Play.configuration = new Properties();
+        Router.routes.clear();
+        appendRoute("GET", "/robots.txt", "Application.robots");
+        appendRoute("GET", "/api/v1|/api/v2", "Api.index");
+        appendRoute("GET", "/files/{<.*>path}", "Files.get");
+
+        assertEquals("Application.robots", Router.route("GET", "/robots.txt").get("action"));
+        assertEquals("Application.robots", Router.route("GET", "/robots_txt").get("action"));
+        assertEquals("Api.index", Router.route("GET", "/api/v2").get("action"));
+        assertEquals("a/b/c", Router.route("GET", "/files/a/b/c").get("path"));
+    }
+
+    @Test
+    public void test_reverse() {
+        Play.configuration = new Properties();
+        Play.defaultWebEncoding = "utf-8";
+        Http.Request.current.remove();
+        Http.Response.current.remove();
+        Router.routes.clear();
+        appendRoute("GET", "/users/{<[0-9]+>id}/?", "Users.show");
+        appendRoute("GET", "/users/{name}", "Users.show");
+        appendRoute("GET", "/{controller}/{action}", "{controller}.{action}");
+
+        Map<String, Object> args = new HashMap<>();
+        args.put("id", 12);
+        args.put("tab", "a b");
+        assertEquals("/users/12?tab=a+b", Router.reverse("Users.show", args).url);
+
+        args = new HashMap<>();
+        args.put("name", "john doe:1");
+        assertEquals("/users/john%20doe:1", Router.reverse("Users.show", args).url);
+
+        assertEquals("/orders/list", Router.reverse("Orders.list").url);
+
+        // The reverse index follows modifications of the route list
+        Router.prependRoute("GET", "/u/{name}", "Users.show", null, null);
+        args = new HashMap<>();
+        args.put("name", "john");
+        assertEquals("/u/john", Router.reverse("Users.show", args).url);
+    }
+
+    private static void appendRoute(String method, String path, String action) {
+        Router.appendRoute(method, path, action, null, null, null, 0);
+    }
+
     public boolean canRenderFile(Request request){
         try {
             Router.route(request);
@@ -0,0 +1,67 @@
+package play.mvc;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import play.Play;
+import play.mvc.Scope.Session;
+
+/**
+ * Time and bytes allocated per request by the restore and save of a signed session with a few keys.
+ * <p>
+ * Not a unit test: run it with <code>java play.mvc.SessionBenchmark [HmacSHA1|HmacSHA256]</code>.
+ */
+public class SessionBenchmark {
+
+    private static final int ITERATIONS = 200000;
+
+    public static void main(String[] args) throws Exception {
+        Play.configuration = new Properties();
+        if (args.length > 0) {
+            Play.configuration.setProperty("application.signature", args[0]);
+        }
+        Play.secretKey = "7QaeIgBAQMbK1yhHEbp4ZLqu0wvnRMxuzLGFmYn8dHl7fsu0ZW6ixjfcQtgSGYiv";
+        Play.started = true;
+        String cookie = cookie();
+        for (int round = 0; round < 3; round++) {
+            measure(cookie);
+        }
+    }
+
+    private static String cookie() {
+        Http.Request.current.set(new Http.Request());
+        Http.Response.current.set(new Http.Response());
+        Session session = Session.restore();
+        session.put("___ID", "b2b6bbd5-4a5e-4ba4-b3c6-b8b5f5b5a1f3");
+        session.put("username", "alice@example.com");
+        session.put("role", "admin");
+        session.put("lang", "en");
+        session.save();
+        return Http.Response.current().cookies.get(Scope.COOKIE_PREFIX + "_SESSION").value;
+    }
+
+    private static void measure(String value) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        int restored = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            Http.Request request = new Http.Request();
+            Http.Cookie cookie = new Http.Cookie();
+            cookie.name = Scope.COOKIE_PREFIX + "_SESSION";
+            cookie.value = value;
+            request.cookies.put(cookie.name, cookie);
+            Http.Request.current.set(request);
+            Http.Response.current.set(new Http.Response());
+            Session session = Session.restore();
+            restored += session.all().size();
+            session.put("lastSeen", "1487686400");
+            session.save();
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+        System.out.println(String.format("restore+save: %,6d ns and %,6d bytes per request (%d keys)", nanos / ITERATIONS,
+                bytes / ITERATIONS, restored / ITERATIONS));
+    }
+}
@@ -1,7 +1,11 @@
 package play.plugins;
 
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -15,6 +19,7 @@ import play.db.jpa.JPAPlugin;
 import play.i18n.MessagesPlugin;
 import play.jobs.JobsPlugin;
 import play.libs.WS;
+import play.mvc.Http;
 import play.test.TestEngine;
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -163,6 +168,53 @@ public class PluginCollectionTest {
         assertThat(TestEngine.allUnitTests()).contains(PluginUnit.class, PluginUnit2.class);
         assertThat(TestEngine.allFunctionalTests()).contains(PluginFunc.class, PluginFunc2.class);
     }
+
+    @Test
+    public void hooksOnlyCallPluginsOverridingThem() throws Exception {
+        PluginCollection pc = new PluginCollection();
+        InvocationPlugin invocationPlugin = new InvocationPlugin();
+        LegacyBinderPlugin legacyBinderPlugin = new LegacyBinderPlugin();
+        PlayPlugin noopPlugin = new PluginWithTests();
+        pc.addPlugin(invocationPlugin);
+        pc.addPlugin(legacyBinderPlugin);
+        pc.addPlugin(noopPlugin);
+
+        assertThat(pc.getPluginsByHook().get("beforeInvocation")).containsOnly(invocationPlugin);
+        assertThat(pc.getPluginsByHook().get("rawInvocation")).containsOnly(invocationPlugin);
+        assertThat(pc.getPluginsByHook().get("afterInvocation")).isEmpty();
+        assertThat(pc.getPluginsByHook().get("bind")).containsOnly(legacyBinderPlugin);
+        assertThat(pc.getPluginsByHook().get("bindBean")).isEmpty();
+
+        pc.beforeInvocation();
+        assertThat(invocationPlugin.invocations).isEqualTo(1);
+        assertThat(pc.rawInvocation(null, null)).isTrue();
+
+        pc.disablePlugin(invocationPlugin);
+        assertThat(pc.getPluginsByHook().get("beforeInvocation")).isEmpty();
+        pc.beforeInvocation();
+        assertThat(invocationPlugin.invocations).isEqualTo(1);
+        assertThat(pc.rawInvocation(null, null)).isFalse();
+
+        pc.enablePlugin(invocationPlugin);
+        pc.beforeInvocation();
+        assertThat(invocationPlugin.invocations).isEqualTo(2);
+    }
+
+    @Test
+    public void hooksOfTheFrameworkPlugins() {
+        PluginCollection pc = new PluginCollection();
+        pc.loadPlugins();
+        for (Map.Entry<String, List<PlayPlugin>> hook : pc.getPluginsByHook().entrySet()) {
+            for (PlayPlugin plugin : hook.getValue()) {
+                assertThat(pc.getEnabledPlugins()).contains(plugin);
+            }
+        }
+        assertThat(pc.getPluginsByHook().get("beforeInvocation")).containsOnly(pc.getPluginInstance(ValidationPlugin.class),
+                pc.getPluginInstance(Evolutions.class), pc.getPluginInstance(JobsPlugin.class));
+        assertThat(pc.getPluginsByHook().get("rawInvocation")).containsOnly(pc.getPluginInstance(CorePlugin.class),
+                pc.getPluginInstance(DBPlugin.class), pc.getPluginInstance(Evolutions.class));
+        assertThat(pc.getPluginsByHook().get("getMessage")).isEmpty();
+    }
 }
 
 
@@ -214,3 +266,27 @@ class PluginUnit {}
 class PluginUnit2 {}
 class PluginFunc {}
 class PluginFunc2 {}
+
+class InvocationPlugin extends PlayPlugin {
+
+    int invocations;
+
+    @Override
+    public void beforeInvocation() {
+        invocations++;
+    }
+
+    @Override
+    public boolean rawInvocation(Http.Request request, Http.Response response) {
+        return true;
+    }
+}
+
+class LegacyBinderPlugin extends PlayPlugin {
+
+    @SuppressWarnings({"deprecation"})
+    @Override
+    public Object bind(String name, Class clazz, Type type, Annotation[] annotations, Map<String, String[]> params) {
+        return null;
+    }
+}
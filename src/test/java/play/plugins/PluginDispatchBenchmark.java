@@ -0,0 +1,113 @@
+package play.plugins;
+
+import java.lang.reflect.Method;
+
+import play.PlayPlugin;
+import play.mvc.Http;
+import play.mvc.results.Result;
+
+/**
+ * Time spent per request calling the plugin hooks of an invocation, with 25 enabled plugins of which 3 override
+ * some of the hooks and the others inherit the no-ops of PlayPlugin.
+ * <p>
+ * Not a unit test: run it with <code>java play.plugins.PluginDispatchBenchmark</code>.
+ */
+public class PluginDispatchBenchmark {
+
+    private static final int ITERATIONS = 2000000;
+
+    public static void main(String[] args) throws Exception {
+        PluginCollection pc = new PluginCollection();
+        PlayPlugin[] noops = { new Noop1(), new Noop2(), new Noop3(), new Noop4(), new Noop5() };
+        for (int i = 0; i < 22; i++) {
+            PlayPlugin plugin = noops[i % noops.length].getClass().newInstance();
+            plugin.index = i;
+            pc.addPlugin(plugin);
+        }
+        pc.addPlugin(new Invocations());
+        pc.addPlugin(new Actions());
+        pc.addPlugin(new Routing());
+        Method action = PluginDispatchBenchmark.class.getMethod("main", String[].class);
+        for (int round = 0; round < 3; round++) {
+            measure(pc, action);
+        }
+    }
+
+    private static void measure(PluginCollection pc, Method action) throws Exception {
+        Http.Request request = new Http.Request();
+        Http.Response response = new Http.Response();
+        long start = System.nanoTime();
+        int raw = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (pc.rawInvocation(request, response)) {
+                raw++;
+            }
+            pc.routeRequest(request);
+            pc.beforeInvocation();
+            pc.beforeActionInvocation(action);
+            pc.onActionInvocationResult(null);
+            pc.afterActionInvocation();
+            pc.onActionInvocationFinally();
+            pc.afterInvocation();
+            pc.onInvocationSuccess();
+            pc.invocationFinally();
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(String.format("10 hooks: %,5d ns per request (%d raw)", nanos / ITERATIONS, raw));
+    }
+
+    public static class Noop1 extends PlayPlugin {
+    }
+
+    public static class Noop2 extends PlayPlugin {
+    }
+
+    public static class Noop3 extends PlayPlugin {
+    }
+
+    public static class Noop4 extends PlayPlugin {
+    }
+
+    public static class Noop5 extends PlayPlugin {
+    }
+
+    public static class Invocations extends PlayPlugin {
+        int count;
+
+        @Override
+        public void beforeInvocation() {
+            count++;
+        }
+
+        @Override
+        public void afterInvocation() {
+            count++;
+        }
+
+        @Override
+        public void invocationFinally() {
+            count--;
+        }
+    }
+
+    public static class Actions extends PlayPlugin {
+        int count;
+
+        @Override
+        public void beforeActionInvocation(Method actionMethod) {
+            count++;
+        }
+
+        @Override
+        public void onActionInvocationResult(Result result) {
+            count++;
+        }
+    }
+
+    public static class Routing extends PlayPlugin {
+        @Override
+        public boolean rawInvocation(Http.Request request, Http.Response response) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package play.server;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+
+public class ContentCompressorTest {
+
+    @Before
+    public void setUp() {
+        Play.configuration = new Properties();
+        Play.configuration.setProperty("http.compression.minSize", "100");
+    }
+
+    @Test
+    public void onlyLargeEnoughCompressibleResponsesAreCompressed() {
+        ContentCompressor compressor = new ContentCompressor();
+        assertTrue(compressor.shouldCompress(response("text/html; charset=utf-8", 100)));
+        assertFalse(compressor.shouldCompress(response("text/html; charset=utf-8", 99)));
+        assertFalse(compressor.shouldCompress(response("image/png", 1000)));
+    }
+
+    @Test
+    public void chunkedResponsesAreNotCompressed() {
+        HttpResponse response = response("text/html", 1000);
+        response.headers().set("Transfer-Encoding", "chunked");
+        assertFalse(new ContentCompressor().shouldCompress(response));
+    }
+
+    @Test
+    public void filesAndHeadResponsesAreNotCompressed() {
+        Play.configuration.setProperty("http.compression.minSize", "0");
+        ContentCompressor compressor = new ContentCompressor();
+        HttpResponse file = response("text/html", 0);
+        file.headers().set("Content-Length", "5000");
+        assertFalse(compressor.shouldCompress(file));
+
+        HttpResponse partial = response("text/html", 1000);
+        partial.headers().set("Content-Length", "5000");
+        assertFalse(compressor.shouldCompress(partial));
+
+        HttpResponse complete = response("text/html", 1000);
+        complete.headers().set("Content-Length", "1000");
+        assertTrue(compressor.shouldCompress(complete));
+    }
+
+    private static HttpResponse response(String contentType, int length) {
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.headers().set("Content-Type", contentType);
+        response.setContent(ChannelBuffers.wrappedBuffer(new byte[length]));
+        return response;
+    }
+}
@@ -0,0 +1,187 @@
+package play.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Properties;
+
+import javax.net.ssl.SSLContext;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.FileRegion;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.ssl.SslHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import play.Play;
+
+public class FileServiceTest {
+
+    private File file;
+    private RandomAccessFile raf;
+
+    @Before
+    public void setUp() throws Exception {
+        Play.configuration = new Properties();
+        file = File.createTempFile("FileServiceTest", ".txt");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("0123456789abcdefghij".getBytes("UTF-8"));
+        out.close();
+        raf = new RandomAccessFile(file, "r");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        raf.close();
+        file.delete();
+    }
+
+    @Test
+    public void fileRegionsAreOnlyUsedWithoutSsl() throws Exception {
+        assertTrue(FileService.useFileRegion(channel(Channels.pipeline())));
+        ChannelPipeline sslPipeline = Channels.pipeline();
+        sslPipeline.addLast("ssl", new SslHandler(SSLContext.getDefault().createSSLEngine()));
+        assertFalse(FileService.useFileRegion(channel(sslPipeline)));
+
+        Play.configuration.setProperty("play.netty.sendfile", "false");
+        assertFalse(FileService.useFileRegion(channel(Channels.pipeline())));
+    }
+
+    @Test
+    public void wholeFileIsWrittenAsOneRegion() throws Exception {
+        Channel channel = channel(Channels.pipeline());
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        FileService.writeFileRegions(raf, "text/plain", channel, request(null), response);
+
+        List<Object> written = written(channel);
+        assertEquals(2, written.size());
+        assertEquals(response, written.get(0));
+        assertRegion(written.get(1), 0, 20);
+    }
+
+    @Test
+    public void byteRangesAreWrittenAsRegions() throws Exception {
+        Channel channel = channel(Channels.pipeline());
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        FileService.writeFileRegions(raf, "text/plain", channel, request("bytes=2-5"), response);
+
+        List<Object> written = written(channel);
+        assertEquals(HttpResponseStatus.PARTIAL_CONTENT, response.getStatus());
+        assertEquals("bytes 2-5/20", response.headers().get("Content-Range"));
+        assertEquals(2, written.size());
+        assertRegion(written.get(1), 2, 4);
+    }
+
+    @Test
+    public void multipleByteRangesAreWrittenWithTheirPartHeaders() throws Exception {
+        Channel channel = channel(Channels.pipeline());
+        HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        FileService.writeFileRegions(raf, "text/plain", channel, request("bytes=0-1,10-"), response);
+
+        List<Object> written = written(channel);
+        assertEquals(5, written.size());
+        assertTrue(written.get(1) instanceof ChannelBuffer);
+        assertRegion(written.get(2), 0, 2);
+        assertTrue(written.get(3) instanceof ChannelBuffer);
+        assertRegion(written.get(4), 10, 10);
+
+        long length = 0;
+        for (Object part : written.subList(1, written.size())) {
+            length += part instanceof FileRegion ? ((FileRegion) part).getCount() : ((ChannelBuffer) part).readableBytes();
+        }
+        assertEquals(String.valueOf(length), response.headers().get("Content-length"));
+    }
+
+    @Test
+    public void precompressedSiblingIsServedWhenAccepted() throws Exception {
+        File gzip = new File(file.getPath() + ".gz");
+        gzip.createNewFile();
+        gzip.setLastModified(file.lastModified() + 1000);
+        try {
+            HttpRequest request = request(null);
+            request.headers().set("Accept-Encoding", "gzip, deflate");
+            HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            assertEquals(gzip, FileService.negotiateEncoding(file, request, response));
+            assertEquals("gzip", response.headers().get("Content-Encoding"));
+            assertEquals("Accept-Encoding", response.headers().get("Vary"));
+
+            request.headers().set("Accept-Encoding", "gzip;q=0, deflate");
+            response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            assertEquals(file, FileService.negotiateEncoding(file, request, response));
+            assertNull(response.headers().get("Content-Encoding"));
+            assertEquals("Accept-Encoding", response.headers().get("Vary"));
+
+            // A stale sibling is ignored
+            gzip.setLastModified(file.lastModified() - 10000);
+            request.headers().set("Accept-Encoding", "gzip");
+            response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            assertEquals(file, FileService.negotiateEncoding(file, request, response));
+            assertNull(response.headers().get("Vary"));
+        } finally {
+            gzip.delete();
+        }
+    }
+
+    @Test
+    public void acceptEncodingHonoursQualityValues() {
+        assertTrue(FileService.acceptsEncoding("gzip, deflate, br", "br"));
+        assertTrue(FileService.acceptsEncoding("GZIP;q=0.5", "gzip"));
+        assertTrue(FileService.acceptsEncoding("*", "gzip"));
+        assertFalse(FileService.acceptsEncoding("*;q=0", "gzip"));
+        assertFalse(FileService.acceptsEncoding("gzip;q=0, *", "gzip"));
+        assertFalse(FileService.acceptsEncoding("deflate", "gzip"));
+        assertFalse(FileService.acceptsEncoding(null, "gzip"));
+    }
+
+    private static Channel channel(ChannelPipeline pipeline) {
+        Channel channel = mock(Channel.class);
+        when(channel.getPipeline()).thenReturn(pipeline);
+        when(channel.isOpen()).thenReturn(true);
+        when(channel.write(any())).thenReturn(Channels.succeededFuture(channel));
+        return channel;
+    }
+
+    private static HttpRequest request(String range) {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/public/file.txt");
+        if (range != null) {
+            request.headers().set("Range", range);
+        }
+        return request;
+    }
+
+    private static List<Object> written(Channel channel) {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(channel, atLeastOnce()).write(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static void assertRegion(Object written, long position, long count) {
+        assertTrue(written instanceof FileRegion);
+        FileRegion region = (FileRegion) written;
+        assertEquals(position, region.getPosition());
+        assertEquals(count, region.getCount());
+    }
+}
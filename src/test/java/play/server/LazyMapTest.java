@@ -0,0 +1,84 @@
+package play.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.mvc.Http;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LazyMapTest {
+
+    private HttpRequest nettyRequest;
+
+    @Before
+    public void setUp() {
+        nettyRequest = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        nettyRequest.headers().add("Accept", "text/html");
+        nettyRequest.headers().add("X-Forwarded-For", "10.0.0.1");
+        nettyRequest.headers().add("X-Forwarded-For", "10.0.0.2");
+        nettyRequest.headers().add("Cookie", "PLAY_SESSION=abc; lang=fr");
+    }
+
+    @Test
+    public void headersAreReadOneByOne() {
+        LazyMap.Headers headers = new LazyMap.Headers(nettyRequest.headers());
+        Http.Header forwarded = headers.get("x-forwarded-for");
+        assertThat(forwarded.name).isEqualTo("x-forwarded-for");
+        assertThat(forwarded.values).containsExactly("10.0.0.1", "10.0.0.2");
+        assertThat(headers.get("x-forwarded-for")).isSameAs(forwarded);
+        assertThat(headers.get("Accept")).isNull();
+        assertThat(headers.get("referer")).isNull();
+        assertThat(headers.containsKey("accept")).isTrue();
+        assertThat(headers.containsKey("Accept")).isFalse();
+        assertThat(headers.loaded()).isFalse();
+
+        forwarded.values.add("10.0.0.3");
+        assertThat(headers.size()).isEqualTo(3);
+        assertThat(headers.loaded()).isTrue();
+        assertThat(headers.get("x-forwarded-for").values).hasSize(3);
+        assertThat(headers.keySet()).containsOnly("accept", "x-forwarded-for", "cookie");
+    }
+
+    @Test
+    public void headersCanBeChanged() {
+        LazyMap.Headers headers = new LazyMap.Headers(nettyRequest.headers());
+        headers.remove("accept");
+        headers.put("x-custom", new Http.Header("x-custom", "value"));
+        assertThat(headers.get("accept")).isNull();
+        assertThat(headers.get("x-custom").value()).isEqualTo("value");
+        assertThat(nettyRequest.headers().contains("Accept")).isTrue();
+    }
+
+    @Test
+    public void cookiesAreDecodedWhenRead() {
+        LazyMap.Cookies cookies = new LazyMap.Cookies(nettyRequest.headers());
+        assertThat(cookies.loaded()).isFalse();
+        assertThat(cookies.get("PLAY_SESSION").value).isEqualTo("abc");
+        assertThat(cookies).hasSize(2);
+        assertThat(new LazyMap.Cookies(new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/").headers()))
+                .isEmpty();
+    }
+
+    @Test
+    public void mapsAreSerializedAsHashMaps() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(new LazyMap.Headers(nettyRequest.headers()));
+        out.close();
+        Object copy = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertThat(copy).isInstanceOf(HashMap.class);
+        assertThat(((Map<?, ?>) copy).keySet()).containsOnly("accept", "x-forwarded-for", "cookie");
+    }
+}
@@ -0,0 +1,109 @@
+package play.server;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Properties;
+
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+
+import play.Play;
+import play.mvc.Http;
+
+/**
+ * Bytes allocated and time spent by PlayHandler.parseRequest for a typical browser GET, when the action reads two
+ * headers and a cookie, and for a small JSON POST whose body is read.
+ * <p>
+ * Not a unit test: run it with <code>java play.server.ParseRequestBenchmark</code>.
+ */
+public class ParseRequestBenchmark {
+
+    private static final int ITERATIONS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        Play.configuration = new Properties();
+        PlayHandler handler = new PlayHandler();
+        MessageEvent event = new MessageEvent() {
+            private final SocketAddress remoteAddress = new InetSocketAddress("127.0.0.1", 54321);
+
+            @Override
+            public Object getMessage() {
+                return null;
+            }
+
+            @Override
+            public SocketAddress getRemoteAddress() {
+                return remoteAddress;
+            }
+
+            @Override
+            public Channel getChannel() {
+                return null;
+            }
+
+            @Override
+            public ChannelFuture getFuture() {
+                return null;
+            }
+        };
+
+        HttpRequest get = request(HttpMethod.GET, null);
+        HttpRequest post = request(HttpMethod.POST, "{\"name\":\"value\",\"items\":[1,2,3,4,5,6,7,8,9,10]}");
+        for (int round = 0; round < 3; round++) {
+            measure("GET ", handler, get, event);
+            measure("POST", handler, post, event);
+        }
+    }
+
+    private static HttpRequest request(HttpMethod method, String body) throws Exception {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, "/items/42?page=1&sort=name");
+        request.headers().add("Host", "www.example.com");
+        request.headers().add("User-Agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_12_3) AppleWebKit/537.36");
+        request.headers().add("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        request.headers().add("Accept-Language", "en-US,en;q=0.8,fr;q=0.6");
+        request.headers().add("Accept-Encoding", "gzip, deflate, sdch, br");
+        request.headers().add("Cache-Control", "max-age=0");
+        request.headers().add("Connection", "keep-alive");
+        request.headers().add("Upgrade-Insecure-Requests", "1");
+        request.headers().add("Referer", "https://www.example.com/items");
+        request.headers().add("Cookie", "PLAY_SESSION=4d6c3a1f0b8e2c9a7d5e3f1a0b9c8d7e6f5a4b3c-___ID%3A12345; PLAY_FLASH=; _ga=GA1.2.1234567890.1234567890");
+        if (body != null) {
+            byte[] bytes = body.getBytes("UTF-8");
+            request.headers().add("Content-Type", "application/json; charset=utf-8");
+            request.headers().add("Content-Length", bytes.length);
+            request.setContent(ChannelBuffers.wrappedBuffer(bytes));
+        }
+        return request;
+    }
+
+    private static void measure(String name, PlayHandler handler, HttpRequest nettyRequest, MessageEvent event)
+            throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long sink = 0;
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < ITERATIONS; i++) {
+            Http.Request request = handler.parseRequest(null, nettyRequest, event);
+            sink += request.headers.get("accept").value().length();
+            sink += request.headers.get("user-agent").value().length();
+            Http.Cookie session = request.cookies.get("PLAY_SESSION");
+            sink += session == null ? 0 : session.value.length();
+            if (nettyRequest.getMethod() == HttpMethod.POST) {
+                sink += request.body.read(buffer);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+        System.out.println(String.format("%s: %,6d bytes and %,5d ns per request (%d)", name, bytes / ITERATIONS,
+                nanos / ITERATIONS, sink % 10));
+    }
+}
@@ -0,0 +1,111 @@
+package play.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelFuture;
+import org.junit.Test;
+
+public class ResponseBodyTest {
+
+    @Test
+    public void bodyIsKeptInChunks() throws Exception {
+        byte[] data = randomBytes(3 * ResponseBody.CHUNK_SIZE + 10);
+        ResponseBody body = new ResponseBody();
+        body.write(data, 0, 100);
+        body.write(data[100]);
+        body.write(data, 101, data.length - 101);
+
+        assertEquals(data.length, body.size());
+        assertArrayEquals(data, body.toByteArray());
+        ChannelBuffer content = body.content();
+        assertEquals(data.length, content.readableBytes());
+        byte[] sent = new byte[data.length];
+        content.readBytes(sent);
+        assertArrayEquals(data, sent);
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        body.writeTo(copy);
+        assertArrayEquals(data, copy.toByteArray());
+    }
+
+    @Test
+    public void resetEmptiesTheBody() throws Exception {
+        ResponseBody body = new ResponseBody();
+        body.write(randomBytes(20000));
+        body.reset();
+        body.write("hello".getBytes("UTF-8"));
+        assertEquals(5, body.size());
+        assertEquals("hello", body.toString("UTF-8"));
+    }
+
+    @Test
+    public void largeBodyIsFlushedOnceOverTheThreshold() throws Exception {
+        RecordingFlusher flusher = new RecordingFlusher(true);
+        ResponseBody body = new ResponseBody(flusher, 2 * ResponseBody.CHUNK_SIZE);
+        byte[] data = randomBytes(10 * ResponseBody.CHUNK_SIZE + 123);
+
+        body.write(data, 0, ResponseBody.CHUNK_SIZE);
+        assertFalse(body.isCommitted());
+        for (int offset = ResponseBody.CHUNK_SIZE; offset < data.length; offset += 1000) {
+            int length = Math.min(1000, data.length - offset);
+            body.write(data, offset, length);
+            // Never more than the threshold and the chunk being filled in memory
+            assertTrue(offset + length - flusher.sent.size() <= 3 * ResponseBody.CHUNK_SIZE);
+        }
+        assertTrue(body.isCommitted());
+        assertFalse(flusher.ended);
+        body.finish();
+        assertTrue(flusher.ended);
+        assertArrayEquals(data, flusher.sent.toByteArray());
+        assertEquals(data.length, body.size());
+    }
+
+    @Test
+    public void bodyStaysInMemoryWhenTheResponseCantBeCommitted() throws Exception {
+        RecordingFlusher flusher = new RecordingFlusher(false);
+        ResponseBody body = new ResponseBody(flusher, 100);
+        byte[] data = randomBytes(50000);
+        body.write(data);
+        assertFalse(body.isCommitted());
+        assertEquals(0, flusher.sent.size());
+        assertArrayEquals(data, body.toByteArray());
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class RecordingFlusher implements ResponseBody.Flusher {
+
+        private final boolean commit;
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        boolean ended;
+
+        RecordingFlusher(boolean commit) {
+            this.commit = commit;
+        }
+
+        @Override
+        public boolean commit() {
+            return commit;
+        }
+
+        @Override
+        public ChannelFuture write(ChannelBuffer content, boolean last) {
+            byte[] bytes = new byte[content.readableBytes()];
+            content.readBytes(bytes);
+            sent.write(bytes, 0, bytes.length);
+            ended = last;
+            return null;
+        }
+    }
+}
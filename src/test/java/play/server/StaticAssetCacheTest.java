@@ -0,0 +1,153 @@
+package play.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+import play.vfs.VirtualFile;
+
+public class StaticAssetCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        Play.configuration = new Properties();
+        Play.mode = Play.Mode.DEV;
+        dir = File.createTempFile("StaticAssetCacheTest", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Play.mode = Play.Mode.DEV;
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * A cache whose time only moves when told to.
+     */
+    private static class ManualClockCache extends StaticAssetCache {
+
+        long now = 1000000;
+
+        ManualClockCache() {
+            super(1024 * 1024, 64 * 1024);
+        }
+
+        @Override
+        long now() {
+            return now;
+        }
+    }
+
+    @Test
+    public void assetIsServedFromMemory() throws Exception {
+        StaticAssetCache cache = new StaticAssetCache(1024 * 1024, 64 * 1024);
+        File file = file("app.js", 10000);
+        StaticAssetCache.Asset asset = cache.load("/public/app.js", "public/app.js", VirtualFile.open(file));
+        assertNotNull(asset);
+        assertEquals(10000, asset.identity.content.readableBytes());
+        assertEquals("\"" + file.lastModified() + "-" + file.hashCode() + "\"", asset.identity.etag);
+        assertTrue(asset.contentType.contains("javascript"));
+        assertEquals(asset, cache.get("/public/app.js"));
+        assertEquals(10000, cache.size());
+    }
+
+    @Test
+    public void assetIsReloadedInDevModeOnceModified() throws Exception {
+        StaticAssetCache cache = new StaticAssetCache(1024 * 1024, 64 * 1024);
+        File file = file("app.css", 100);
+        cache.load("/public/app.css", "public/app.css", VirtualFile.open(file));
+        file.setLastModified(file.lastModified() - 10000);
+        assertNull(cache.get("/public/app.css"));
+        assertEquals(0, cache.size());
+
+        assertNotNull(cache.load("/public/app.css", "public/app.css", VirtualFile.open(file)));
+        assertNotNull(cache.get("/public/app.css"));
+    }
+
+    @Test
+    public void assetIsReloadedInProdModeOnceOverwritten() throws Exception {
+        Play.mode = Play.Mode.PROD;
+        ManualClockCache cache = new ManualClockCache();
+        File file = file("app.js", 10000);
+        long lastModified = file.lastModified();
+        cache.load("/public/app.js", "public/app.js", VirtualFile.open(file));
+        assertNotNull(cache.get("/public/app.js"));
+
+        // Truncated by a deploy, within the resolution of the modification date: seen within a second
+        file("app.js", 100);
+        file.setLastModified(lastModified);
+        cache.now += 999;
+        assertNotNull(cache.get("/public/app.js"));
+        cache.now += 1;
+        assertNull(cache.get("/public/app.js"));
+        assertEquals(0, cache.size());
+
+        StaticAssetCache.Asset asset = cache.load("/public/app.js", "public/app.js", VirtualFile.open(file));
+        assertEquals(100, asset.identity.content.readableBytes());
+        file.setLastModified(lastModified + 10000);
+        cache.now += 1000;
+        assertNull(cache.get("/public/app.js"));
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        StaticAssetCache cache = new StaticAssetCache();
+        assertNull(cache.load("/public/app.js", "public/app.js", VirtualFile.open(file("app.js", 100))));
+        assertEquals(0, cache.count());
+    }
+
+    @Test
+    public void leastRecentlyServedAssetsAreEvicted() throws Exception {
+        StaticAssetCache cache = new StaticAssetCache(2500, 1000);
+        cache.load("/a", "a", VirtualFile.open(file("a.txt", 1000)));
+        cache.load("/b", "b", VirtualFile.open(file("b.txt", 1000)));
+        cache.get("/a");
+        cache.load("/c", "c", VirtualFile.open(file("c.txt", 1000)));
+
+        assertEquals(2, cache.count());
+        assertNotNull(cache.get("/a"));
+        assertNull(cache.get("/b"));
+        assertNotNull(cache.get("/c"));
+
+        assertNull(cache.load("/d", "d", VirtualFile.open(file("d.txt", 1001))));
+        assertEquals(2000, cache.size());
+    }
+
+    @Test
+    public void precompressedVariantIsPickedFromAcceptEncoding() throws Exception {
+        StaticAssetCache cache = new StaticAssetCache(1024 * 1024, 64 * 1024);
+        File file = file("app.js", 1000);
+        File gzip = file("app.js.gz", 100);
+        gzip.setLastModified(file.lastModified() + 1000);
+        StaticAssetCache.Asset asset = cache.load("/public/app.js", "public/app.js", VirtualFile.open(file));
+
+        assertTrue(asset.varies);
+        assertEquals("gzip", asset.variant("gzip, deflate").encoding);
+        assertEquals(100, asset.variant("gzip").content.readableBytes());
+        assertNull(asset.variant("deflate").encoding);
+        assertEquals(1100, cache.size());
+    }
+
+    private File file(String name, int length) throws Exception {
+        File file = new File(dir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[length]);
+        out.close();
+        return file;
+    }
+}
@@ -0,0 +1,104 @@
+package play.server;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.handler.codec.embedder.DecoderEmbedder;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpRequest;
+import org.jboss.netty.handler.codec.http.HttpChunk;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpMessage;
+import org.jboss.netty.handler.codec.http.HttpMethod;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.Play;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StreamChunkAggregatorTest {
+
+    private File tmpDir;
+    private DecoderEmbedder<HttpMessage> embedder;
+
+    @Before
+    public void setUp() throws Exception {
+        Play.configuration = new Properties();
+        tmpDir = File.createTempFile("StreamChunkAggregatorTest", "");
+        tmpDir.delete();
+        tmpDir.mkdirs();
+        Play.tmpDir = tmpDir;
+        embedder = new DecoderEmbedder<>(new StreamChunkAggregator());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Play.tmpDir = null;
+        FileUtils.deleteDirectory(tmpDir);
+    }
+
+    private static HttpRequest chunkedRequest() {
+        HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/api");
+        request.setChunked(true);
+        request.headers().set(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+        return request;
+    }
+
+    private static HttpChunk chunk(byte[] content) {
+        return new DefaultHttpChunk(ChannelBuffers.wrappedBuffer(content));
+    }
+
+    @Test
+    public void smallBodiesStayInMemory() throws Exception {
+        embedder.offer(chunkedRequest());
+        embedder.offer(chunk("{\"name\":".getBytes("UTF-8")));
+        embedder.offer(chunk("\"value\"}".getBytes("UTF-8")));
+        assertThat(embedder.peek()).isNull();
+        embedder.offer(HttpChunk.LAST_CHUNK);
+
+        HttpMessage message = embedder.poll();
+        assertThat(message.getContent() instanceof FileChannelBuffer).isFalse();
+        assertThat(message.getContent().toString(Charset.forName("UTF-8"))).isEqualTo("{\"name\":\"value\"}");
+        assertThat(message.headers().get(HttpHeaders.Names.CONTENT_LENGTH)).isEqualTo("16");
+        assertThat(message.headers().contains(HttpHeaders.Names.TRANSFER_ENCODING)).isFalse();
+        assertThat(tmpDir.list()).isEmpty();
+    }
+
+    @Test
+    public void largeBodiesAreSpooledToAFile() throws Exception {
+        byte[] part = new byte[40 * 1024];
+        Arrays.fill(part, (byte) 'a');
+        embedder.offer(chunkedRequest());
+        embedder.offer(chunk(part));
+        assertThat(tmpDir.list()).isEmpty();
+        embedder.offer(chunk(part));
+        assertThat(tmpDir.list()).hasSize(1);
+        embedder.offer(HttpChunk.LAST_CHUNK);
+
+        HttpMessage message = embedder.poll();
+        assertThat(message.getContent()).isInstanceOf(FileChannelBuffer.class);
+        assertThat(IOUtils.toByteArray(((FileChannelBuffer) message.getContent()).getInputStream())).hasSize(80 * 1024);
+        assertThat(message.headers().get(HttpHeaders.Names.CONTENT_LENGTH)).isEqualTo(String.valueOf(80 * 1024));
+        ((FileChannelBuffer) message.getContent()).getInputStream().close();
+        assertThat(tmpDir.list()).isEmpty();
+    }
+
+    @Test
+    public void incompleteBodiesAreDeleted() throws Exception {
+        byte[] part = new byte[100 * 1024];
+        embedder.offer(chunkedRequest());
+        embedder.offer(chunk(part));
+        assertThat(tmpDir.list()).hasSize(1);
+        embedder.finish();
+        assertThat(tmpDir.list()).isEmpty();
+    }
+}
@@ -0,0 +1,135 @@
+package play.templates;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.PlayBuilder;
+import play.cache.Cache;
+import play.cache.CacheImpl;
+import play.cache.ShardedCacheImpl;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FragmentCacheTest {
+
+    private CacheImpl previous;
+
+    /**
+     * The body of the fragment, counting its renderings and optionally blocking in them.
+     */
+    public static class Body {
+
+        final AtomicInteger renderings = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        public String render() throws InterruptedException {
+            int rendering = renderings.incrementAndGet();
+            entered.countDown();
+            release.await();
+            return "rendering " + rendering;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        new PlayBuilder().build();
+        previous = Cache.cacheImpl;
+        Cache.cacheImpl = new ShardedCacheImpl(1024 * 1024, 1);
+    }
+
+    @After
+    public void tearDown() {
+        FragmentCache.reset();
+        Cache.cacheImpl = previous;
+    }
+
+    private static GroovyTemplate template(String src) {
+        GroovyTemplate template = new GroovyTemplate("Template_fragment", src);
+        new GroovyTemplateCompiler().compile(template);
+        return template;
+    }
+
+    private static Thread render(final GroovyTemplate template, final Body body, final AtomicReference<String> result) {
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                Map<String, Object> args = new HashMap<>();
+                args.put("body", body);
+                result.set(template.render(args));
+            }
+        };
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING) {
+            assertThat(thread.isAlive()).isTrue();
+            Thread.yield();
+        }
+    }
+
+    @Test
+    public void missingFragmentIsRenderedOnce() throws Exception {
+        GroovyTemplate template = template("#{cache 'fragment', for:'1h'}${body.render()}#{/cache}");
+        Body body = new Body();
+        body.release = new CountDownLatch(1);
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+
+        Thread renderer = render(template, body, first);
+        body.entered.await();
+        Thread waiter = render(template, body, second);
+        awaitWaiting(waiter);
+        body.release.countDown();
+        renderer.join();
+        waiter.join();
+
+        assertThat(body.renderings.get()).isEqualTo(1);
+        assertThat(first.get()).isEqualTo("rendering 1");
+        assertThat(second.get()).isEqualTo("rendering 1");
+    }
+
+    @Test
+    public void staleFragmentIsServedWhileRenderedAgain() throws Exception {
+        GroovyTemplate template = template("#{cache 'fragment', for:'1h', stale:'1h'}${body.render()}#{/cache}");
+        Cache.set("fragment", new FragmentCache.Fragment("stale", "utf-8", System.currentTimeMillis() - 1), "1h");
+        Body body = new Body();
+        body.release = new CountDownLatch(1);
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+
+        Thread renderer = render(template, body, first);
+        body.entered.await();
+        // Not waiting for the rendering in progress
+        render(template, body, second).join();
+        assertThat(second.get()).isEqualTo("stale");
+
+        body.release.countDown();
+        renderer.join();
+        assertThat(first.get()).isEqualTo("rendering 1");
+        render(template, body, second).join();
+        assertThat(second.get()).isEqualTo("rendering 1");
+        assertThat(body.renderings.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void otherValuesUnderTheKeyAreMisses() throws Exception {
+        GroovyTemplate template = template("#{cache 'fragment', for:'1h'}${body.render()}#{/cache}");
+        Cache.set("fragment", 42, "1h");
+        Body body = new Body();
+        AtomicReference<String> result = new AtomicReference<>();
+
+        render(template, body, result).join();
+        assertThat(result.get()).isEqualTo("rendering 1");
+        assertThat(Cache.get("fragment")).isInstanceOf(FragmentCache.Fragment.class);
+    }
+}
@@ -3,8 +3,17 @@ package play.templates;
 import org.junit.Before;
 import org.junit.Test;
 
+import play.Play;
 import play.PlayBuilder;
-
+import play.cache.Cache;
+import play.cache.CacheImpl;
+import play.cache.ShardedCacheImpl;
+import play.vfs.VirtualFile;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -124,4 +133,75 @@ public class GroovyTemplateTest {
         new GroovyTemplateCompiler().compile(groovyTemplate);
         assertEquals("123", groovyTemplate.render());
     }
+
+    @Test
+    public void verifyStreamingRendering() {
+        // Well above the output kept in memory before streaming
+        String groovySrc = "#{list items:1..1000, as:'i'}line ${i}: ${name}\n#{/list}";
+        GroovyTemplate t = new GroovyTemplate("Template_123", groovySrc);
+        new GroovyTemplateCompiler().compile(t);
+
+        Map<String, Object> args = new HashMap<>();
+        args.put("name", "Morten");
+        StringWriter out = new StringWriter();
+        t.render(args, out);
+        assertEquals(t.render(args), out.toString());
+    }
+
+    @Test
+    public void verifyStreamingRenderingWithLayout() throws Exception {
+        File dir = Files.createTempDirectory("templates").toFile();
+        try {
+            Files.write(new File(dir, "layout.html").toPath(), "  <html>#{doLayout /}</html>\n".getBytes("UTF-8"));
+            String page = "#{extends 'layout.html' /}\n#{list items:0..999, as:'i'}<p>${name} ${i}</p>\n#{/list}";
+            Files.write(new File(dir, "page.html").toPath(), page.getBytes("UTF-8"));
+            Play.templatesPath = Arrays.asList(VirtualFile.open(dir));
+
+            Template t = TemplateLoader.load("page.html");
+            Map<String, Object> args = new HashMap<>();
+            args.put("name", "Morten");
+            StringWriter out = new StringWriter();
+            t.render(args, out);
+            String expected = t.render(args);
+            assertThat(expected).startsWith("<html><p>Morten 0</p>").endsWith("<p>Morten 999</p>\n</html>");
+            assertEquals(expected, out.toString());
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void verifyCachedFragments() {
+        CacheImpl previous = Cache.cacheImpl;
+        Cache.cacheImpl = new ShardedCacheImpl(1024 * 1024, 1);
+        try {
+            String groovySrc = "#{cache 'fragment', for:'1h'}hello ${name}#{/cache}";
+            GroovyTemplate t = new GroovyTemplate("Template_123", groovySrc);
+            new GroovyTemplateCompiler().compile(t);
+
+            Map<String, Object> args = new HashMap<>();
+            args.put("name", "Morten");
+            assertThat(t.render(args)).isEqualTo("hello Morten");
+            assertThat(Cache.get("fragment")).isInstanceOf(FragmentCache.Fragment.class);
+            args.put("name", "Guillaume");
+            assertThat(t.render(args)).isEqualTo("hello Morten");
+
+            // Kept in process until the local copy expires
+            Play.configuration.setProperty("play.template.cache.l1.maxSize", "1048576");
+            FragmentCache.reset();
+            Cache.delete("fragment");
+            assertThat(t.render(args)).isEqualTo("hello Guillaume");
+            // Documented: deleting the key does not reach the in-process copy before it expires
+            Cache.delete("fragment");
+            args.put("name", "Nicolas");
+            assertThat(t.render(args)).isEqualTo("hello Guillaume");
+        } finally {
+            Play.configuration.remove("play.template.cache.l1.maxSize");
+            FragmentCache.reset();
+            Cache.cacheImpl = previous;
+        }
+    }
 }
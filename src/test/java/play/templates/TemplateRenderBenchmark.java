@@ -0,0 +1,109 @@
+package play.templates;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import play.Play;
+import play.PlayBuilder;
+import play.server.ResponseBody;
+import play.vfs.VirtualFile;
+
+/**
+ * Memory used to send a 5 MB page with a layout, rendered into a String as before or streamed into the response body.
+ * <p>
+ * Not a unit test: run it with <code>java play.templates.TemplateRenderBenchmark</code> on a HotSpot JVM.
+ */
+public class TemplateRenderBenchmark {
+
+    private static final int ROWS = 50000;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        new PlayBuilder().build();
+        File dir = Files.createTempDirectory("templates").toFile();
+        try {
+            Files.write(new File(dir, "layout.html").toPath(),
+                    "<html><body>#{doLayout /}</body></html>".getBytes("UTF-8"));
+            Files.write(new File(dir, "page.html").toPath(), ("#{extends 'layout.html' /}\n"
+                    + "#{list items:rows, as:'row'}<tr><td>${row}</td><td>${name}</td><td>Lorem ipsum dolor sit amet, consectetur adipiscing elit</td></tr>\n#{/list}")
+                            .getBytes("UTF-8"));
+            Play.templatesPath = Arrays.asList(VirtualFile.open(dir));
+            Template template = TemplateLoader.load("page.html");
+
+            Map<String, Object> params = new HashMap<>();
+            params.put("rows", range());
+            params.put("name", "Morten");
+
+            for (int i = 0; i < RUNS; i++) {
+                // Warm up
+                renderToString(template, params);
+                renderToBody(template, params);
+            }
+            measure("String   ", template, params, false);
+            measure("streaming", template, params, true);
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    private static Object range() {
+        Integer[] rows = new Integer[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            rows[i] = i;
+        }
+        return Arrays.asList(rows);
+    }
+
+    private static void measure(String mode, Template template, Map<String, Object> params, boolean streaming) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = 0;
+        long elapsed = 0;
+        int size = 0;
+        for (int i = 0; i < RUNS; i++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            long start = System.nanoTime();
+            size = streaming ? renderToBody(template, params) : renderToString(template, params);
+            elapsed += System.nanoTime() - start;
+            allocated += threads.getThreadAllocatedBytes(thread) - before;
+        }
+        System.out.println(String.format("%s: %d bytes page, %d KB allocated and %d ms per rendering", mode, size,
+                allocated / RUNS / 1024, elapsed / RUNS / 1000000));
+    }
+
+    /**
+     * What RenderTemplate and PlayHandler did: String, byte array, ByteArrayOutputStream, then a copy for Netty.
+     */
+    private static int renderToString(Template template, Map<String, Object> params) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(template.render(new HashMap<>(params)).getBytes("UTF-8"));
+        ChannelBuffer content = ChannelBuffers.copiedBuffer(out.toByteArray());
+        return content.readableBytes();
+    }
+
+    /**
+     * Template written through an encoder straight into the pooled chunks of the response body.
+     */
+    private static int renderToBody(Template template, Map<String, Object> params) throws Exception {
+        ResponseBody out = new ResponseBody();
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        template.render(new HashMap<>(params), writer);
+        writer.flush();
+        int size = out.content().readableBytes();
+        out.releaseAfter(null);
+        return size;
+    }
+}